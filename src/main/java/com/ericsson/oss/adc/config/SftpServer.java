@@ -16,6 +16,9 @@
 package com.ericsson.oss.adc.config;
 
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,6 +45,43 @@ public class SftpServer {
         return null;
     }
 
+    /**
+     * Opens more SFTP channels on the session of a connected channel.
+     *
+     * @param sftpConnection a connected channel
+     * @param count the number of channels to open
+     * @return the channels opened, fewer than asked for if the server refuses more
+     */
+    public static List<ChannelSftp> openChannels(final ChannelSftp sftpConnection, final int count) {
+        try {
+            return openChannels(sftpConnection.getSession(), count);
+        } catch (final JSchException jSchException) {
+            LOGGER.error("{}: Error opening SFTP channels, no session", jSchException.getMessage());
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Opens SFTP channels on a connected session.
+     *
+     * @param jschSession a connected session
+     * @param count the number of channels to open
+     * @return the channels opened, fewer than asked for if the server refuses more
+     */
+    public static List<ChannelSftp> openChannels(final Session jschSession, final int count) {
+        final List<ChannelSftp> channels = new ArrayList<>();
+        try {
+            while (channels.size() < count) {
+                final ChannelSftp channelSftp = (ChannelSftp) jschSession.openChannel("sftp");
+                channelSftp.connect();
+                channels.add(channelSftp);
+            }
+        } catch (final JSchException jSchException) {
+            LOGGER.error("{}: Error opening SFTP channel {} of {} on the session", jSchException.getMessage(), channels.size() + 1, count);
+        }
+        return channels;
+    }
+
     public static Session connect(final String sftpUser, final String sftpHost, final int sftpPort, final String sftpPassword, final int timeoutInMs)
             throws JSchException {
 
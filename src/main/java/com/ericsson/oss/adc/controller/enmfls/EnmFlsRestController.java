@@ -18,23 +18,45 @@ package com.ericsson.oss.adc.controller.enmfls;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.ericsson.oss.adc.api.SampleApi;
+import com.ericsson.oss.adc.enums.MetaDataField;
 import com.ericsson.oss.adc.handler.FileHandler;
+import com.ericsson.oss.adc.handler.NewFileNotifier;
 import com.ericsson.oss.adc.models.MetaData;
+import com.ericsson.oss.adc.models.NotificationStore;
 import com.ericsson.oss.adc.models.ResponseData;
+import com.ericsson.oss.adc.models.StreamingResponseData;
 import com.ericsson.oss.adc.services.AuthenticationService;
+import com.ericsson.oss.adc.services.ConsumerTracker;
 
 /**
  * Implementation of SampleApi generated by open api generator.
@@ -43,12 +65,65 @@ import com.ericsson.oss.adc.services.AuthenticationService;
 public class EnmFlsRestController implements SampleApi {
     private static final Logger LOG = LoggerFactory.getLogger(EnmFlsRestController.class);
 
+    private static final String WAIT_MS = "waitMs";
+
     @Autowired
     AuthenticationService authenticationService;
 
     @Autowired
     FileHandler fileHandler;
 
+    @Autowired
+    HttpServletRequest request;
+
+    @Autowired
+    NewFileNotifier newFileNotifier;
+
+    @Autowired
+    ConsumerTracker consumerTracker;
+
+    @Value("${fls.maxPageSize:10000}")
+    private int maxPageSize;
+
+    @Value("${fls.longPoll.maxWaitMs:30000}")
+    private long maxWaitMs;
+
+    @Value("${fls.sse.timeoutMs:3600000}")
+    private long sseTimeoutMs;
+
+    @Value("${fls.sse.senders:8}")
+    private int sseSenders;
+
+    @Value("${fls.sse.maxPendingSends:1000}")
+    private int sseMaxPendingSends;
+
+    @Value("${fls.sse.sendTimeoutMs:30000}")
+    private long sseSendTimeoutMs;
+
+    @Value("${fls.consumer.idHeader:X-Client-Id}")
+    private String consumerIdHeader;
+
+    private final FilterParamsCache filterParamsCache = new FilterParamsCache();
+
+    // sends the events of the streams, so that a slow client never holds up the new file notifier
+    private ExecutorService eventStreamSender;
+
+    @PostConstruct
+    public void init() {
+        final AtomicInteger threadCount = new AtomicInteger();
+        eventStreamSender = new ThreadPoolExecutor(Math.max(1, sseSenders), Math.max(1, sseSenders), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, sseMaxPendingSends)), runnable -> {
+                    final Thread thread = new Thread(runnable, "fls-event-stream-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        eventStreamSender.shutdownNow();
+    }
+
     @Override
     public ResponseEntity<String> sample() {
         LOG.info("Sample service called sample.");
@@ -78,14 +153,134 @@ public class EnmFlsRestController implements SampleApi {
      * Filtering is done by id and dataType.
      * http://enm1:443/file/v1/files?filter=dataType%3D%3DPM_STATISTICAL;nodeType%3D%3DRadioNode;id%3Dgt%3D0&select=id,nodeName,dataType,nodeType,fileLocation&offset=0&orderBy=id%20asc
      * Filtering is done by id, nodeType and dataType.
+     * <p>
+     * The filter is RSQL over id, nodeName, dataType, nodeType and fileLocation, see {@link RsqlParser}. It must
+     * constrain dataType and give an id to start after, for example to subscribe to several dataTypes at once:
+     * dataType=in=(PM_STATISTICAL,PM_CELLTRACE);id=gt=0
+     * <p>
+     * Ordinary queries are paged: at most limit files, capped at fls.maxPageSize, are returned after
+     * skipping offset matching files. When more files match, the response carries a nextCursor which
+     * is passed as cursor to get the next page. The files are streamed into the response as they are
+     * read from the store.
+     * <p>
+     * Ordinary query responses carry an ETag; a poll with the same ETag in If-None-Match gets 304 Not Modified
+     * until a new file of a dataType the filter matches is stored. The check comes after the query is parsed and acknowledged, and before
+     * any file is read.
      *
      * @param filter contains the required dataType and flsId
-     * @param select columns to be included in the response
-     * @param offset
+     * @param select columns to be included in the response, all of them when empty
+     * @param offset number of matching files to skip, ignored when a cursor is given
+     * @param limit maximum number of files in the response
      * @param orderBy asc for ordinary query, desc for initial query
+     * @param cursor nextCursor of the previous page
      */
     @Override
-    public ResponseEntity<Object> getFiles(final String filter, final String select, final String offset, final String orderBy) {
+    public ResponseEntity<Object> getFiles(final String filter, final String select, final String offset, final String limit,
+                                           final String orderBy, final String cursor) {
+        return queryFiles(filter, select, offset, limit, orderBy, cursor, request.getHeader(HttpHeaders.IF_NONE_MATCH),
+                identifyConsumer());
+    }
+
+    /**
+     * Handles /file/v1/files with the waitMs parameter, the long-poll form of {@link #getFiles}.
+     * <p>
+     * When no file matches an ordinary query yet, the request is parked, without holding a servlet thread,
+     * until a matching file is stored or waitMs, capped at fls.longPoll.maxWaitMs, expires. The response is
+     * then the one {@link #getFiles} gives at that moment. A waitMs of 0 is answered straight away, a negative
+     * one is a bad request.
+     *
+     * @param waitMs how long to wait for a matching file
+     */
+    @GetMapping(value = "/file/v1/files", params = WAIT_MS)
+    public DeferredResult<ResponseEntity<Object>> getFilesWhenAvailable(
+            @RequestParam(value = "filter", required = false) final String filter,
+            @RequestParam(value = "select", required = false) final String select,
+            @RequestParam(value = "offset", required = false) final String offset,
+            @RequestParam(value = "limit", required = false) final String limit,
+            @RequestParam(value = "orderBy", required = false) final String orderBy,
+            @RequestParam(value = "cursor", required = false) final String cursor,
+            @RequestParam(WAIT_MS) final long waitMs) {
+        final String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        final String consumer = identifyConsumer();
+        final Supplier<ResponseEntity<Object>> query = () -> queryFiles(filter, select, offset, limit, orderBy, cursor, ifNoneMatch,
+                consumer);
+        if (waitMs < 0) {
+            LOG.error("Invalid URL parameter waitMs: {}", waitMs);
+            final DeferredResult<ResponseEntity<Object>> result = new DeferredResult<>();
+            result.setResult(new ResponseEntity<>(new ResponseData(new ArrayList<>()), HttpStatus.BAD_REQUEST));
+            return result;
+        }
+        final long timeoutMs = maxWaitMs > 0 ? Math.min(waitMs, maxWaitMs) : waitMs;
+        final NotificationStore notificationStore = fileHandler.getNotificationStore();
+        final FilterParams filterParams = parseFilter(filter);
+        final PageParams pageParams = parsePageParams(offset, limit, orderBy, cursor);
+        if (timeoutMs == 0 || !authenticationService.isLoggedIn() || pageParams == null || pageParams.isDescending()
+                || filterParams == null) {
+            // nothing to wait for, answered straight away; a timeout of 0 would not time out at all
+            final DeferredResult<ResponseEntity<Object>> result = new DeferredResult<>();
+            result.setResult(query.get());
+            return result;
+        }
+        final DeferredResult<ResponseEntity<Object>> result = new DeferredResult<>(timeoutMs, query);
+        final long startAfter = pageParams.startAfter(filterParams.getStartAfter());
+        final NewFileNotifier.Listener listener = () -> {
+            if (!result.isSetOrExpired() && filterParams.iterateFiles(notificationStore, startAfter, pageParams.getOffset(), 1).hasNext()) {
+                result.setResult(query.get());
+            }
+            return result.isSetOrExpired();
+        };
+        result.onCompletion(() -> newFileNotifier.unregister(listener));
+        newFileNotifier.register(listener);
+        return result;
+    }
+
+    /**
+     * Streams the files matching a filter as Server-Sent Events, as they are stored.
+     * <p>
+     * Each event is named 'files', carries the new matching files in the same JSON as a /file/v1/files
+     * response and has the id of its last file as event id. A reconnecting client sends that id back as
+     * Last-Event-ID to resume after it.
+     *
+     * @param filter contains the required dataType and flsId
+     * @param select columns to be included in the events, all of them when empty
+     * @param lastEventId id of the last file received before reconnecting
+     */
+    @GetMapping(value = "/file/v1/files/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamFiles(@RequestParam(value = "filter") final String filter,
+                                                  @RequestParam(value = "select", required = false) final String select,
+                                                  @RequestHeader(value = "Last-Event-ID", required = false) final String lastEventId) {
+        if (!authenticationService.isLoggedIn()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        final FilterParams filterParams = parseFilter(filter);
+        if (filterParams == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        long startAfter = filterParams.getStartAfter();
+        if (lastEventId != null) {
+            try {
+                startAfter = Math.max(startAfter, Long.parseLong(lastEventId.trim()));
+            } catch (final NumberFormatException exception) {
+                LOG.error("Invalid Last-Event-ID: {}", lastEventId);
+                return ResponseEntity.badRequest().build();
+            }
+        }
+        LOG.info("FLS event stream opened with filter: {} select: {} starting after: {}", filter, select, startAfter);
+        final String consumer = identifyConsumer();
+        consumerTracker.acknowledge(consumer, filterParams.getDataTypeMatcher(), startAfter);
+        final SseEmitter emitter = new SseEmitter(sseTimeoutMs);
+        final FileEventStream eventStream = new FileEventStream(emitter, eventStreamSender, sseSendTimeoutMs,
+                fileHandler.getNotificationStore(), filterParams, MetaDataField.parseSelect(select),
+                maxPageSize > 0 ? maxPageSize : Integer.MAX_VALUE, startAfter,
+                sentId -> consumerTracker.acknowledge(consumer, filterParams.getDataTypeMatcher(), sentId),
+                newFileNotifier::unregister);
+        newFileNotifier.register(eventStream);
+        return ResponseEntity.ok(emitter);
+    }
+
+    private ResponseEntity<Object> queryFiles(final String filter, final String select, final String offset, final String limit,
+                                              final String orderBy, final String cursor, final String ifNoneMatch,
+                                              final String consumer) {
 
         // Redirect to login page when not authenticated
         if (!authenticationService.isLoggedIn()) {
@@ -93,44 +288,75 @@ public class EnmFlsRestController implements SampleApi {
             headers.add("Content-Type", "text/html; charset=UTF-8");
             return new ResponseEntity<>("login page - text/html page", headers, HttpStatus.OK);
         }
-        if (orderBy.contains("desc")) {
+        final PageParams pageParams = parsePageParams(offset, limit, orderBy, cursor);
+        if (pageParams == null) {
+            return new ResponseEntity<>(new ResponseData(new ArrayList<>()), HttpStatus.BAD_REQUEST);
+        }
+        if (pageParams.isDescending()) {
             LOG.info("Initial query called.");
             final ResponseData responseData = new ResponseData(Arrays.asList(new MetaData(fileHandler.getIdCounter().get())));
             return new ResponseEntity<>(responseData, HttpStatus.OK);
         }
-        List<Object> responseList = new ArrayList<>();
-        FilterParams filterParams = new FilterParams(filter);
-        if (filterParams.getDataType() != null && filterParams.getId() != null) {
-            synchronized (fileHandler) {
-                responseList = fileHandler.getAvailableFiles().stream().filter(u -> {
-                    final String filterParamDataType = filterParams.getDataType();
-                    final String filterParamNodeType = filterParams.getNodeType();
-                    final String filterParamId = filterParams.getId();
-                    final MetaData metaData = (MetaData) u;
-                    return metaData.getId() > Long.valueOf(filterParamId) && isFilterMatch(filterParamDataType, filterParamNodeType, metaData);
-                }).collect(Collectors.toList());
-            }
-            LOG.info("FLS endpoint called with filter: {} select: {} offset: {} orderBy: {}", filter, select, offset, orderBy);
-            LOG.info("Response contains {} files", responseList.size());
-            return new ResponseEntity<>(new ResponseData(responseList), HttpStatus.OK);
-        } else {
-            LOG.error("Cannot parse dataType and id from URL parameter filter.");
-            return new ResponseEntity<>(new ResponseData(responseList), HttpStatus.BAD_REQUEST);
+        final FilterParams filterParams = parseFilter(filter);
+        if (filterParams == null) {
+            return new ResponseEntity<>(new ResponseData(new ArrayList<>()), HttpStatus.BAD_REQUEST);
+        }
+        final long startAfter = pageParams.startAfter(filterParams.getStartAfter());
+        // polling after an id acknowledges every file up to it
+        consumerTracker.acknowledge(consumer, filterParams.getDataTypeMatcher(), startAfter);
+        final String eTag = QueryETag.of(fileHandler.getNotificationStore().getLastId(filterParams.getDataTypeMatcher()), filter, select,
+                offset, limit, orderBy, cursor);
+        if (QueryETag.isMatchedBy(ifNoneMatch, eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
         }
+        // one extra file tells whether there is a next page
+        final int pageLimit = pageParams.getLimit();
+        final Iterator<MetaData> files = filterParams.iterateFiles(fileHandler.getNotificationStore(), startAfter,
+                pageParams.getOffset(), pageLimit == Integer.MAX_VALUE ? pageLimit : pageLimit + 1);
+        LOG.info("FLS endpoint called with filter: {} select: {} offset: {} limit: {} orderBy: {} cursor: {}",
+                filter, select, offset, limit, orderBy, cursor);
+        return ResponseEntity.ok().eTag(eTag).body(new StreamingResponseData(files, MetaDataField.parseSelect(select), pageLimit,
+                PageParams::encodeCursor));
     }
 
-    boolean isFilterMatch(final String filterParamDataType, final String filterParamNodeType, final MetaData metaData) {
-        return isFilterMatchByParam(filterParamDataType, metaData.getDataType())
-                && isFilterMatchByParam(filterParamNodeType, metaData.getNodeType());
+    /**
+     * Identifies the consumer of the current request by the client id header, else by its address. The
+     * session cookie is not used: the stub hands the same one to every client, and the id is exported
+     * as a metric tag. Consumers sharing a host are told apart by the header only.
+     *
+     * @return the consumer id
+     */
+    private String identifyConsumer() {
+        final String clientId = request.getHeader(consumerIdHeader);
+        if (clientId != null && !clientId.isBlank()) {
+            return clientId.trim();
+        }
+        return request.getRemoteAddr();
     }
 
-    private boolean isFilterMatchByParam(final String filterParamName, final String metaDataName) {
-        if (metaDataName == null) {
-            return false;
+    private FilterParams parseFilter(final String filter) {
+        if (filter == null) {
+            LOG.error("Missing URL parameter filter.");
+            return null;
         }
-        if (filterParamName == null) {
-            return true;
+        try {
+            final FilterParams filterParams = filterParamsCache.get(filter);
+            if (filterParams.isComplete()) {
+                return filterParams;
+            }
+            LOG.error("Cannot parse dataType and id from URL parameter filter.");
+        } catch (final IllegalArgumentException exception) {
+            LOG.error("Cannot parse URL parameter filter: {}", exception.getMessage());
+        }
+        return null;
+    }
+
+    private PageParams parsePageParams(final String offset, final String limit, final String orderBy, final String cursor) {
+        try {
+            return new PageParams(offset, limit, orderBy, cursor, maxPageSize);
+        } catch (final IllegalArgumentException exception) {
+            LOG.error("Cannot parse paging parameters: {}", exception.getMessage());
+            return null;
         }
-        return metaDataName.matches(filterParamName.replace("*", "(.*)"));
     }
 }
@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.controller.enmfls;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.ericsson.oss.adc.enums.MetaDataField;
+import com.ericsson.oss.adc.handler.NewFileNotifier;
+import com.ericsson.oss.adc.models.MetaData;
+import com.ericsson.oss.adc.models.NotificationStore;
+import com.ericsson.oss.adc.models.StreamingResponseData;
+
+/**
+ * Server-Sent Events stream of the files matching a filter. Whenever new files are stored, the ones
+ * after the last sent file are sent in events of at most a page of files each.
+ * <p>
+ * The {@link NewFileNotifier} thread only hands the sending over to an executor. Signals arriving while
+ * the stream is sending are coalesced, so a stream takes at most one thread of the executor at a time.
+ * A stream still blocked in a send after sendTimeoutMs when new files arrive is dropped, and so is a
+ * stream the executor has no room for, so that slow clients cannot take the executor over.
+ */
+class FileEventStream implements NewFileNotifier.Listener {
+    static final String EVENT_NAME = "files";
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileEventStream.class);
+
+    private final SseEmitter emitter;
+    private final Executor sender;
+    private final long sendTimeoutNanos;
+    // new files signalled and not yet looked for
+    private final AtomicBoolean signalled = new AtomicBoolean();
+    // a task of the stream is queued or running on the executor
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final NotificationStore notificationStore;
+    private final FilterParams filterParams;
+    private final Set<MetaDataField> fields;
+    private final int pageSize;
+    private final LongConsumer sentListener;
+    private volatile long lastSentId;
+    // when the send in progress started, 0 when not sending
+    private volatile long sendingSinceNanos;
+    private volatile boolean closed;
+
+    FileEventStream(final SseEmitter emitter, final Executor sender, final long sendTimeoutMs,
+                    final NotificationStore notificationStore, final FilterParams filterParams, final Set<MetaDataField> fields,
+                    final int pageSize, final long startAfter, final LongConsumer sentListener,
+                    final Consumer<NewFileNotifier.Listener> closeListener) {
+        this.emitter = emitter;
+        this.sender = sender;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        this.notificationStore = notificationStore;
+        this.filterParams = filterParams;
+        this.fields = fields;
+        this.pageSize = pageSize;
+        this.lastSentId = startAfter;
+        this.sentListener = sentListener;
+        // the stream stops being signalled as soon as it is closed, not on the next new file
+        emitter.onCompletion(() -> close(closeListener));
+        emitter.onTimeout(() -> close(closeListener));
+        emitter.onError(error -> close(closeListener));
+    }
+
+    @Override
+    public boolean onNewFiles() {
+        if (closed) {
+            return true;
+        }
+        final long sendingSince = sendingSinceNanos;
+        if (sendingSince != 0 && System.nanoTime() - sendingSince > sendTimeoutNanos) {
+            // the emitter is not completed here, its methods wait for the blocked send; the send fails
+            // once the container gives up on the connection
+            LOG.warn("Dropping FLS event stream which has been blocked in a send for over {} ms",
+                    TimeUnit.NANOSECONDS.toMillis(sendTimeoutNanos));
+            closed = true;
+            return true;
+        }
+        signalled.set(true);
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                sender.execute(this::sendWhileSignalled);
+            } catch (final RejectedExecutionException exception) {
+                // shutting down, or too many streams have sends pending
+                LOG.warn("Dropping FLS event stream, no sender available: {}", exception.getMessage());
+                closed = true;
+                emitter.complete();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void sendWhileSignalled() {
+        do {
+            while (signalled.getAndSet(false) && !closed) {
+                sendNewFiles();
+            }
+            scheduled.set(false);
+            // a signal may have come after the last check and before scheduled was cleared
+        } while (signalled.get() && scheduled.compareAndSet(false, true));
+    }
+
+    private void sendNewFiles() {
+        try {
+            List<MetaData> files;
+            do {
+                files = new ArrayList<>();
+                filterParams.iterateFiles(notificationStore, lastSentId, 0, pageSize).forEachRemaining(files::add);
+                if (!files.isEmpty()) {
+                    final long sentId = files.get(files.size() - 1).getId();
+                    sendingSinceNanos = System.nanoTime();
+                    emitter.send(SseEmitter.event()
+                            .id(Long.toString(sentId))
+                            .name(EVENT_NAME)
+                            .data(new StreamingResponseData(files.iterator(), fields, files.size(), PageParams::encodeCursor),
+                                    MediaType.APPLICATION_JSON));
+                    sendingSinceNanos = 0;
+                    lastSentId = sentId;
+                    sentListener.accept(sentId);
+                }
+            } while (files.size() == pageSize);
+        } catch (final IOException | IllegalStateException exception) {
+            // the client has gone away
+            sendingSinceNanos = 0;
+            closed = true;
+            emitter.completeWithError(exception);
+        }
+    }
+
+    private void close(final Consumer<NewFileNotifier.Listener> closeListener) {
+        closed = true;
+        closeListener.accept(this);
+    }
+
+    long getLastSentId() {
+        return lastSentId;
+    }
+}
@@ -0,0 +1,280 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.controller.enmfls;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import com.ericsson.oss.adc.enums.MetaDataField;
+import com.ericsson.oss.adc.models.MetaData;
+
+/**
+ * A node of a parsed RSQL filter: a comparison of one field with one or more arguments, or a
+ * conjunction (';') or disjunction (',') of other nodes.
+ * <p>
+ * A node is compiled twice: into a predicate that decides on a single notification, and into a
+ * {@link FilterPlan} that lets the store skip the notifications that cannot match.
+ */
+abstract class FilterNode {
+
+    /**
+     * Gets the predicate deciding whether a notification matches this node.
+     *
+     * @return the predicate
+     */
+    abstract Predicate<MetaData> toPredicate();
+
+    /**
+     * Gets the plan running this node against the store.
+     *
+     * @return the plan
+     */
+    abstract FilterPlan plan();
+
+    /**
+     * Tells whether this node is a disjunction, whose last alternative alone a term appended with ';'
+     * would narrow.
+     *
+     * @return whether this is a disjunction
+     */
+    boolean isDisjunction() {
+        return false;
+    }
+
+    /**
+     * Conjunction or disjunction of nodes.
+     */
+    static final class Junction extends FilterNode {
+        private final boolean and;
+        private final List<FilterNode> children;
+
+        Junction(final boolean and, final List<FilterNode> children) {
+            this.and = and;
+            this.children = Collections.unmodifiableList(new ArrayList<>(children));
+        }
+
+        @Override
+        Predicate<MetaData> toPredicate() {
+            Predicate<MetaData> predicate = children.get(0).toPredicate();
+            for (final FilterNode child : children.subList(1, children.size())) {
+                predicate = and ? predicate.and(child.toPredicate()) : predicate.or(child.toPredicate());
+            }
+            return predicate;
+        }
+
+        @Override
+        FilterPlan plan() {
+            final List<FilterPlan> plans = children.stream().map(FilterNode::plan).collect(Collectors.toList());
+            return and ? FilterPlan.and(plans) : FilterPlan.or(plans, toPredicate());
+        }
+
+        @Override
+        boolean isDisjunction() {
+            return !and;
+        }
+    }
+
+    /**
+     * Comparison of a field with its arguments, for example {@code dataType=in=(PM_STATISTICAL,PM_CELLTRACE)}.
+     */
+    static final class Comparison extends FilterNode {
+        private final MetaDataField field;
+        private final Operator operator;
+        private final List<String> arguments;
+
+        /**
+         * Creates a comparison.
+         *
+         * @param field the field compared
+         * @param operator the operator, for example '==' or '=gt='
+         * @param arguments the arguments, at least one
+         * @throws IllegalArgumentException if the operator does not apply to the field or the arguments
+         */
+        Comparison(final MetaDataField field, final String operator, final List<String> arguments) {
+            this.field = field;
+            this.operator = Operator.of(operator);
+            this.arguments = Collections.unmodifiableList(new ArrayList<>(arguments));
+            if (this.operator.ordering && field != MetaDataField.ID) {
+                throw new IllegalArgumentException("Operator " + operator + " only applies to id, not to " + field.getFieldName());
+            }
+            if (!this.operator.multiValued && arguments.size() != 1) {
+                throw new IllegalArgumentException("Operator " + operator + " takes a single argument");
+            }
+            if (field == MetaDataField.ID) {
+                idArguments();
+            }
+        }
+
+        @Override
+        Predicate<MetaData> toPredicate() {
+            if (field == MetaDataField.ID) {
+                final LongPredicate idPredicate = idPredicate();
+                return metaData -> idPredicate.test(metaData.getId());
+            }
+            final Predicate<String> matcher = isDictionaryEncoded() ? valueMatcher(compiled -> compiled)
+                    : valueMatcher(compiled -> compiled::matches);
+            switch (field) {
+                case NODE_NAME:
+                    return metaData -> matcher.test(metaData.getNodeName());
+                case FILE_LOCATION:
+                    return metaData -> matcher.test(metaData.getFileLocation());
+                case DATA_TYPE:
+                    return metaData -> matcher.test(metaData.getDataType());
+                default:
+                    return metaData -> matcher.test(metaData.getNodeType());
+            }
+        }
+
+        @Override
+        FilterPlan plan() {
+            switch (field) {
+                case ID:
+                    return idPlan();
+                case DATA_TYPE:
+                    return new FilterPlan(Long.MIN_VALUE, Long.MAX_VALUE, valueMatcher(compiled -> compiled), null, null);
+                case NODE_TYPE:
+                    return new FilterPlan(Long.MIN_VALUE, Long.MAX_VALUE, null, valueMatcher(compiled -> compiled), null);
+                default:
+                    return new FilterPlan(Long.MIN_VALUE, Long.MAX_VALUE, null, null, toPredicate());
+            }
+        }
+
+        private boolean isDictionaryEncoded() {
+            // dataType and nodeType have few distinct values, so their matchers remember their decisions
+            return field == MetaDataField.DATA_TYPE || field == MetaDataField.NODE_TYPE;
+        }
+
+        private Predicate<String> valueMatcher(final Function<ValueMatcher, Predicate<String>> check) {
+            Predicate<String> matcher = null;
+            for (final String argument : arguments) {
+                final Predicate<String> argumentMatcher = check.apply(ValueMatcher.compile(argument));
+                matcher = matcher == null ? argumentMatcher : matcher.or(argumentMatcher);
+            }
+            return operator.negated ? negate(matcher) : matcher;
+        }
+
+        private static Predicate<String> negate(final Predicate<String> matcher) {
+            return value -> value != null && !matcher.test(value);
+        }
+
+        private FilterPlan idPlan() {
+            final long[] ids = idArguments();
+            final long id = ids[0];
+            switch (operator) {
+                case GREATER_THAN:
+                    return new FilterPlan(id, Long.MAX_VALUE, null, null, null);
+                case GREATER_OR_EQUAL:
+                    return new FilterPlan(id == Long.MIN_VALUE ? id : id - 1, Long.MAX_VALUE, null, null, null);
+                case LESS_THAN:
+                    return new FilterPlan(Long.MIN_VALUE, id == Long.MIN_VALUE ? id : id - 1, null, null, null);
+                case LESS_OR_EQUAL:
+                    return new FilterPlan(Long.MIN_VALUE, id, null, null, null);
+                case EQUAL:
+                case IN:
+                    long min = Long.MAX_VALUE;
+                    long max = Long.MIN_VALUE;
+                    for (final long each : ids) {
+                        min = Math.min(min, each);
+                        max = Math.max(max, each);
+                    }
+                    return new FilterPlan(min == Long.MIN_VALUE ? min : min - 1, max, null, null,
+                            ids.length == 1 ? null : toPredicate());
+                default:
+                    return new FilterPlan(Long.MIN_VALUE, Long.MAX_VALUE, null, null, toPredicate());
+            }
+        }
+
+        private LongPredicate idPredicate() {
+            final long[] ids = idArguments();
+            final long id = ids[0];
+            switch (operator) {
+                case GREATER_THAN:
+                    return value -> value > id;
+                case GREATER_OR_EQUAL:
+                    return value -> value >= id;
+                case LESS_THAN:
+                    return value -> value < id;
+                case LESS_OR_EQUAL:
+                    return value -> value <= id;
+                default:
+                    final LongPredicate in = value -> {
+                        for (final long each : ids) {
+                            if (each == value) {
+                                return true;
+                            }
+                        }
+                        return false;
+                    };
+                    return operator.negated ? in.negate() : in;
+            }
+        }
+
+        private long[] idArguments() {
+            final long[] ids = new long[arguments.size()];
+            for (int index = 0; index < ids.length; index++) {
+                try {
+                    ids[index] = Long.parseLong(arguments.get(index));
+                } catch (final NumberFormatException exception) {
+                    throw new IllegalArgumentException("Invalid id: " + arguments.get(index));
+                }
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * The RSQL comparison operators, with their FIQL aliases.
+     */
+    enum Operator {
+        EQUAL(false, false, false, "=="),
+        NOT_EQUAL(true, false, false, "!="),
+        IN(false, true, false, "=in="),
+        NOT_IN(true, true, false, "=out="),
+        GREATER_THAN(false, false, true, "=gt=", ">"),
+        GREATER_OR_EQUAL(false, false, true, "=ge=", ">="),
+        LESS_THAN(false, false, true, "=lt=", "<"),
+        LESS_OR_EQUAL(false, false, true, "=le=", "<=");
+
+        private final boolean negated;
+        private final boolean multiValued;
+        private final boolean ordering;
+        private final String[] symbols;
+
+        Operator(final boolean negated, final boolean multiValued, final boolean ordering, final String... symbols) {
+            this.negated = negated;
+            this.multiValued = multiValued;
+            this.ordering = ordering;
+            this.symbols = symbols;
+        }
+
+        static Operator of(final String symbol) {
+            for (final Operator operator : values()) {
+                for (final String each : operator.symbols) {
+                    if (each.equals(symbol)) {
+                        return operator;
+                    }
+                }
+            }
+            throw new IllegalArgumentException("Unknown operator: " + symbol);
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * COPYRIGHT Ericsson 2021
+ * COPYRIGHT Ericsson 2022
  *
  *
  *
@@ -16,33 +16,103 @@
 
 package com.ericsson.oss.adc.controller.enmfls;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
 
-import lombok.Getter;
+import com.ericsson.oss.adc.models.MetaData;
+import com.ericsson.oss.adc.models.NotificationStore;
 
-@Getter
+/**
+ * The filter of a /file/v1/files query, parsed by {@link RsqlParser} and planned into the id range,
+ * index lookups and residual predicate the {@link NotificationStore} runs.
+ */
 class FilterParams {
-    private static final Pattern filterPatternDataType = Pattern.compile("dataType==(.*?);");
-    private static final Pattern filterPatternNodeType = Pattern.compile("nodeType==(.*?);");
-    private static final Pattern filterPatternId = Pattern.compile("id=gt=(\\d+)");
-    private String dataType;
-    private String nodeType;
-    private String id;
-
-    public FilterParams(final String filter) {
-        final Matcher matcherDataType = filterPatternDataType.matcher(filter);
-        final Matcher matcherNodeType = filterPatternNodeType.matcher(filter);
-        final Matcher matcherId = filterPatternId.matcher(filter);
-
-        if (matcherDataType.find()) {
-            dataType = matcherDataType.group(1);
-        }
-        if (matcherNodeType.find()) {
-            nodeType = matcherNodeType.group(1);
-        }
-        if (matcherId.find()) {
-            id = matcherId.group(1);
+    private static final Predicate<String> ANY = value -> true;
+    private final FilterPlan plan;
+    private final boolean disjunction;
+
+    /**
+     * Parses and plans a filter.
+     *
+     * @param filter the RSQL filter
+     * @throws IllegalArgumentException if the filter cannot be parsed
+     */
+    FilterParams(final String filter) {
+        final FilterNode node = RsqlParser.parse(filter);
+        plan = node.plan();
+        disjunction = node.isDisjunction();
+    }
+
+    private FilterParams(final FilterPlan plan) {
+        this.plan = plan;
+        this.disjunction = false;
+    }
+
+    /**
+     * Gets the parameters of this filter joined with 'id=gt=' an id, without parsing or compiling
+     * anything again.
+     *
+     * @param id the id to start after
+     * @return the filter parameters
+     * @throws IllegalStateException if this filter is a disjunction, whose last alternative alone the id
+     *         would narrow
+     */
+    FilterParams startingAfter(final long id) {
+        if (disjunction) {
+            throw new IllegalStateException("The id of a disjunction only narrows its last alternative");
         }
+        return new FilterParams(FilterPlan.and(List.of(plan, new FilterPlan(id, Long.MAX_VALUE, null, null, null))));
+    }
+
+    boolean isDisjunction() {
+        return disjunction;
+    }
+
+    /**
+     * Tells whether the filter gives what ENM FLS requires of a query: the dataTypes to return
+     * and an id to start after.
+     *
+     * @return whether the filter can be run
+     */
+    boolean isComplete() {
+        return plan.getDataTypeMatcher() != null && plan.getStartAfter() != Long.MIN_VALUE;
+    }
+
+    long getStartAfter() {
+        return plan.getStartAfter();
+    }
+
+    Predicate<String> getDataTypeMatcher() {
+        return plan.getDataTypeMatcher() == null ? ANY : plan.getDataTypeMatcher();
+    }
+
+    Predicate<String> getNodeTypeMatcher() {
+        return plan.getNodeTypeMatcher() == null ? ANY : plan.getNodeTypeMatcher();
+    }
+
+    /**
+     * Tells whether the store answers the filter from its indexes alone, without evaluating a
+     * residual predicate on each notification.
+     *
+     * @return whether the filter is fully pushed down to the store
+     */
+    boolean isIndexOnly() {
+        return plan.getResidual() == null;
+    }
+
+    /**
+     * Iterates over a page of the matching notifications in the store.
+     *
+     * @param notificationStore the store
+     * @param startAfter the id to start after, if later than the one in the filter
+     * @param offset the number of matching notifications to skip
+     * @param limit the maximum number of notifications to return
+     * @return the iterator over the page of matching notifications
+     */
+    Iterator<MetaData> iterateFiles(final NotificationStore notificationStore, final long startAfter, final int offset,
+                                    final int limit) {
+        return notificationStore.iterateFilesBetween(Math.max(startAfter, plan.getStartAfter()), plan.getUpTo(),
+                getDataTypeMatcher(), getNodeTypeMatcher(), plan.getResidual(), offset, limit);
     }
 }
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.controller.enmfls;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Bounded least recently used cache of {@link FilterParams}, keyed by the filter query without the
+ * 'id=gt=' term which starts or ends it. Consumers repeat the same filters on every poll with a new id,
+ * so each filter is parsed and compiled only once, and only the id is joined to it on each poll.
+ * Filters giving the id in any other way are keyed as they are.
+ */
+class FilterParamsCache {
+
+    static final int DEFAULT_MAX_SIZE = 256;
+
+    private static final Pattern START_AFTER_LAST = Pattern.compile("(.+);id=gt=(\\d{1,18});?");
+
+    private static final Pattern START_AFTER_FIRST = Pattern.compile("id=gt=(\\d{1,18});(.+)");
+
+    private final Map<String, FilterParams> cache;
+
+    FilterParamsCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    FilterParamsCache(final int maxSize) {
+        cache = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, FilterParams> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Gets the compiled parameters of a filter, compiling them if the filter is not cached.
+     *
+     * @param filter the raw filter query
+     * @return the filter parameters
+     */
+    synchronized FilterParams get(final String filter) {
+        Matcher matcher = START_AFTER_LAST.matcher(filter);
+        if (matcher.matches()) {
+            return get(filter, matcher.group(1), matcher.group(2));
+        }
+        matcher = START_AFTER_FIRST.matcher(filter);
+        if (matcher.matches()) {
+            return get(filter, matcher.group(2), matcher.group(1));
+        }
+        return cache.computeIfAbsent(filter, FilterParams::new);
+    }
+
+    private FilterParams get(final String filter, final String withoutId, final String id) {
+        final FilterParams filterParams = cache.computeIfAbsent(withoutId, FilterParams::new);
+        if (filterParams.isDisjunction()) {
+            // ';' binds tighter than ',', the id belongs to the last alternative only
+            return cache.computeIfAbsent(filter, FilterParams::new);
+        }
+        return filterParams.startingAfter(Long.parseLong(id));
+    }
+
+    synchronized int size() {
+        return cache.size();
+    }
+}
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.controller.enmfls;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+import com.ericsson.oss.adc.models.MetaData;
+
+/**
+ * How a filter is run against the notification store: an id range and dataType and nodeType
+ * matchers, which the store answers from its id order and its bitmap indexes, and a residual
+ * predicate for whatever they cannot express, evaluated on each notification they select.
+ * <p>
+ * The range and the matchers are always necessary conditions of the filter. The plan is exact when
+ * there is no residual predicate.
+ */
+final class FilterPlan {
+
+    static final FilterPlan ALL = new FilterPlan(Long.MIN_VALUE, Long.MAX_VALUE, null, null, null);
+
+    private final long startAfter;
+    private final long upTo;
+    private final Predicate<String> dataTypeMatcher;
+    private final Predicate<String> nodeTypeMatcher;
+    private final Predicate<MetaData> residual;
+
+    /**
+     * Creates a plan, a null matcher or residual stands for no condition.
+     *
+     * @param startAfter the id the matching notifications come after
+     * @param upTo the id of the newest matching notification
+     * @param dataTypeMatcher the matching dataType values
+     * @param nodeTypeMatcher the matching nodeType values
+     * @param residual the condition left to evaluate on each notification
+     */
+    FilterPlan(final long startAfter, final long upTo, final Predicate<String> dataTypeMatcher,
+               final Predicate<String> nodeTypeMatcher, final Predicate<MetaData> residual) {
+        this.startAfter = startAfter;
+        this.upTo = upTo;
+        this.dataTypeMatcher = dataTypeMatcher;
+        this.nodeTypeMatcher = nodeTypeMatcher;
+        this.residual = residual;
+    }
+
+    /**
+     * Combines the plans of the terms of a conjunction. Each condition narrows the others, so the
+     * result is exact when all the plans are.
+     *
+     * @param plans the plans of the terms
+     * @return the plan of the conjunction
+     */
+    static FilterPlan and(final List<FilterPlan> plans) {
+        long startAfter = Long.MIN_VALUE;
+        long upTo = Long.MAX_VALUE;
+        Predicate<String> dataTypeMatcher = null;
+        Predicate<String> nodeTypeMatcher = null;
+        Predicate<MetaData> residual = null;
+        for (final FilterPlan plan : plans) {
+            startAfter = Math.max(startAfter, plan.startAfter);
+            upTo = Math.min(upTo, plan.upTo);
+            dataTypeMatcher = and(dataTypeMatcher, plan.dataTypeMatcher);
+            nodeTypeMatcher = and(nodeTypeMatcher, plan.nodeTypeMatcher);
+            residual = and(residual, plan.residual);
+        }
+        return new FilterPlan(startAfter, upTo, dataTypeMatcher, nodeTypeMatcher, residual);
+    }
+
+    /**
+     * Combines the plans of the terms of a disjunction. Alternatives on one and the same column,
+     * such as several dataTypes, merge into one matcher and stay exact. Otherwise the result keeps
+     * what all the alternatives have in common to narrow the search and evaluates the whole
+     * disjunction as its residual.
+     *
+     * @param plans the plans of the terms
+     * @param disjunction the predicate of the whole disjunction
+     * @return the plan of the disjunction
+     */
+    static FilterPlan or(final List<FilterPlan> plans, final Predicate<MetaData> disjunction) {
+        long startAfter = Long.MAX_VALUE;
+        long upTo = Long.MIN_VALUE;
+        Predicate<String> dataTypeMatcher = plans.get(0).dataTypeMatcher;
+        Predicate<String> nodeTypeMatcher = plans.get(0).nodeTypeMatcher;
+        boolean dataTypeOnly = true;
+        boolean nodeTypeOnly = true;
+        for (final FilterPlan plan : plans) {
+            startAfter = Math.min(startAfter, plan.startAfter);
+            upTo = Math.max(upTo, plan.upTo);
+            dataTypeMatcher = or(dataTypeMatcher, plan.dataTypeMatcher);
+            nodeTypeMatcher = or(nodeTypeMatcher, plan.nodeTypeMatcher);
+            dataTypeOnly &= plan.dataTypeMatcher != null && plan.nodeTypeMatcher == null && plan.hasMatchersOnly();
+            nodeTypeOnly &= plan.nodeTypeMatcher != null && plan.dataTypeMatcher == null && plan.hasMatchersOnly();
+        }
+        if (dataTypeOnly) {
+            return new FilterPlan(startAfter, upTo, dataTypeMatcher, null, null);
+        }
+        if (nodeTypeOnly) {
+            return new FilterPlan(startAfter, upTo, null, nodeTypeMatcher, null);
+        }
+        return new FilterPlan(startAfter, upTo, dataTypeMatcher, nodeTypeMatcher, disjunction);
+    }
+
+    long getStartAfter() {
+        return startAfter;
+    }
+
+    long getUpTo() {
+        return upTo;
+    }
+
+    Predicate<String> getDataTypeMatcher() {
+        return dataTypeMatcher;
+    }
+
+    Predicate<String> getNodeTypeMatcher() {
+        return nodeTypeMatcher;
+    }
+
+    Predicate<MetaData> getResidual() {
+        return residual;
+    }
+
+    private boolean hasMatchersOnly() {
+        return residual == null && startAfter == Long.MIN_VALUE && upTo == Long.MAX_VALUE;
+    }
+
+    private static <T> Predicate<T> and(final Predicate<T> first, final Predicate<T> second) {
+        if (first == null) {
+            return second;
+        }
+        return second == null ? first : first.and(second);
+    }
+
+    private static <T> Predicate<T> or(final Predicate<T> first, final Predicate<T> second) {
+        if (first == null || second == null) {
+            return null;
+        }
+        return first == second ? first : first.or(second);
+    }
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.controller.enmfls;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import lombok.Getter;
+
+/**
+ * Paging parameters of a /file/v1/files query, complementing the {@link FilterParams} parsed from
+ * the filter. Unlike the filter these change on every request, so they are not cached.
+ * <p>
+ * The next page is addressed by an opaque cursor which encodes the id of the last file returned.
+ */
+@Getter
+class PageParams {
+    private static final String CURSOR_PREFIX = "id:";
+    private final int offset;
+    private final int limit;
+    private final boolean descending;
+    private final Long cursorId;
+
+    /**
+     * Parses the paging parameters.
+     *
+     * @param offset number of matching files to skip, ignored when a cursor is given
+     * @param limit maximum number of files to return
+     * @param orderBy for example 'id asc' or 'id desc'
+     * @param cursor the nextCursor of the previous page
+     * @param maxPageSize the maximum number of files in a page, not capped when zero or less
+     * @throws IllegalArgumentException if a parameter cannot be parsed
+     */
+    PageParams(final String offset, final String limit, final String orderBy, final String cursor, final int maxPageSize) {
+        final int pageSize = maxPageSize > 0 ? maxPageSize : Integer.MAX_VALUE;
+        final int requestedLimit = isBlank(limit) ? pageSize : parseNonNegative("limit", limit);
+        this.limit = Math.min(requestedLimit, pageSize);
+        this.cursorId = isBlank(cursor) ? null : decodeCursor(cursor);
+        this.offset = isBlank(offset) || cursorId != null ? 0 : parseNonNegative("offset", offset);
+        this.descending = orderBy != null && orderBy.contains("desc");
+    }
+
+    /**
+     * Gets the id the page starts after, the later of the id in the filter and the id in the cursor.
+     *
+     * @param filterId the id=gt= value of the filter
+     * @return the id to start after
+     */
+    long startAfter(final long filterId) {
+        return cursorId == null ? filterId : Math.max(filterId, cursorId);
+    }
+
+    static String encodeCursor(final long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((CURSOR_PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static long decodeCursor(final String cursor) {
+        try {
+            final String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (decoded.startsWith(CURSOR_PREFIX)) {
+                return Long.parseLong(decoded.substring(CURSOR_PREFIX.length()));
+            }
+        } catch (final IllegalArgumentException exception) {
+            // NumberFormatException included, reported below
+        }
+        throw new IllegalArgumentException("Invalid cursor: " + cursor);
+    }
+
+    private static int parseNonNegative(final String name, final String value) {
+        try {
+            final int parsed = Integer.parseInt(value.trim());
+            if (parsed >= 0) {
+                return parsed;
+            }
+        } catch (final NumberFormatException exception) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Invalid " + name + ": " + value);
+    }
+
+    private static boolean isBlank(final String value) {
+        return value == null || value.trim().isEmpty();
+    }
+}
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.controller.enmfls;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * Entity tags of /file/v1/files responses. A response only changes when a newer notification of a
+ * dataType the query matches is stored, so the tag is the id of the newest such notification with a
+ * SHA-256 digest of the query, and a poll which repeats the tag of the previous response can be
+ * answered with 304 Not Modified without reading its files from the store. The query is parsed and
+ * acknowledged first all the same.
+ */
+final class QueryETag {
+
+    private static final String WILDCARD = "*";
+
+    private static final String WEAK_PREFIX = "W/";
+
+    private QueryETag() {
+    }
+
+    /**
+     * Builds the tag of a query.
+     *
+     * @param lastId the id of the newest stored notification of a dataType the query matches
+     * @param queryParams the query parameters which decide the response
+     * @return the quoted tag
+     */
+    static String of(final long lastId, final String... queryParams) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("SHA-256 not available", exception);
+        }
+        for (final String queryParam : queryParams) {
+            // the length first, so that no two lists of parameters digest the same bytes, a missing one as -1
+            final byte[] bytes = queryParam == null ? new byte[0] : queryParam.getBytes(StandardCharsets.UTF_8);
+            final int length = queryParam == null ? -1 : bytes.length;
+            digest.update(new byte[] {(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length});
+            digest.update(bytes);
+        }
+        return '"' + Long.toHexString(lastId) + '-' + Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest()) + '"';
+    }
+
+    /**
+     * Checks whether an If-None-Match header lists the given tag.
+     *
+     * @param ifNoneMatch the header value, may be null
+     * @param eTag the quoted tag of the current response
+     * @return true if the client already has the current response
+     */
+    static boolean isMatchedBy(final String ifNoneMatch, final String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (final String candidate : ifNoneMatch.split(",")) {
+            final String tag = candidate.trim();
+            if (tag.equals(WILDCARD) || tag.equals(eTag) || tag.equals(WEAK_PREFIX + eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.controller.enmfls;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ericsson.oss.adc.enums.MetaDataField;
+
+/**
+ * Recursive descent parser of the RSQL filters of FLS queries, for example
+ * {@code dataType=in=(PM_STATISTICAL,PM_CELLTRACE);nodeType==RadioNode;id=gt=43}.
+ * <p>
+ * ';' (and) binds tighter than ',' (or), parentheses group. The selectors are the {@link MetaDataField}
+ * names. The FIQL operators '&lt;', '&lt;=', '&gt;' and '&gt;=' are accepted for =lt=, =le=, =gt= and =ge=.
+ * Arguments may be quoted with ' or ", with '\' escaping the next character. A trailing ';' is ignored,
+ * as ENM FLS clients commonly send one.
+ */
+final class RsqlParser {
+
+    private static final String RESERVED = "\"'();,=!~<> ";
+
+    private final String filter;
+
+    private int position;
+
+    private RsqlParser(final String filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Parses a filter.
+     *
+     * @param filter the filter
+     * @return the root node of the filter
+     * @throws IllegalArgumentException if the filter is not valid RSQL or uses an unknown selector
+     */
+    static FilterNode parse(final String filter) {
+        final RsqlParser parser = new RsqlParser(filter);
+        final FilterNode root = parser.parseOr();
+        parser.skipWhitespace();
+        if (parser.position < filter.length()) {
+            throw parser.error("Unexpected '" + filter.charAt(parser.position) + "'");
+        }
+        return root;
+    }
+
+    private FilterNode parseOr() {
+        final List<FilterNode> nodes = new ArrayList<>();
+        nodes.add(parseAnd());
+        while (accept(',')) {
+            nodes.add(parseAnd());
+        }
+        return nodes.size() == 1 ? nodes.get(0) : new FilterNode.Junction(false, nodes);
+    }
+
+    private FilterNode parseAnd() {
+        final List<FilterNode> nodes = new ArrayList<>();
+        nodes.add(parseConstraint());
+        while (accept(';')) {
+            if (isAtEndOfGroup()) {
+                break;
+            }
+            nodes.add(parseConstraint());
+        }
+        return nodes.size() == 1 ? nodes.get(0) : new FilterNode.Junction(true, nodes);
+    }
+
+    private FilterNode parseConstraint() {
+        if (accept('(')) {
+            final FilterNode group = parseOr();
+            expect(')');
+            return group;
+        }
+        final int selectorStart = position;
+        final String selector = parseUnreserved();
+        final MetaDataField field = MetaDataField.fromFieldName(selector);
+        if (field == null) {
+            position = selectorStart;
+            throw error("Unknown selector '" + selector + "'");
+        }
+        final String operator = parseOperator();
+        final List<String> arguments = new ArrayList<>();
+        if (accept('(')) {
+            do {
+                arguments.add(parseArgument());
+            } while (accept(','));
+            expect(')');
+        } else {
+            arguments.add(parseArgument());
+        }
+        return new FilterNode.Comparison(field, operator, arguments);
+    }
+
+    private String parseOperator() {
+        skipWhitespace();
+        final int start = position;
+        if (peek() == '<' || peek() == '>') {
+            position++;
+            accept('=');
+        } else if (peek() == '!') {
+            position++;
+            expect('=');
+        } else {
+            expect('=');
+            while (Character.isLetter(peek())) {
+                position++;
+            }
+            expect('=');
+        }
+        return filter.substring(start, position);
+    }
+
+    private String parseArgument() {
+        skipWhitespace();
+        final char quote = peek();
+        if (quote != '\'' && quote != '"') {
+            return parseUnreserved();
+        }
+        position++;
+        final StringBuilder argument = new StringBuilder();
+        while (position < filter.length() && filter.charAt(position) != quote) {
+            if (filter.charAt(position) == '\\') {
+                position++;
+            }
+            if (position < filter.length()) {
+                argument.append(filter.charAt(position++));
+            }
+        }
+        expect(quote);
+        return argument.toString();
+    }
+
+    private String parseUnreserved() {
+        skipWhitespace();
+        final int start = position;
+        while (position < filter.length() && RESERVED.indexOf(filter.charAt(position)) < 0) {
+            position++;
+        }
+        if (position == start) {
+            throw error("Expected a selector or an argument");
+        }
+        return filter.substring(start, position);
+    }
+
+    private boolean isAtEndOfGroup() {
+        skipWhitespace();
+        return position == filter.length() || peek() == ')' || peek() == ',';
+    }
+
+    private boolean accept(final char expected) {
+        skipWhitespace();
+        if (peek() == expected) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(final char expected) {
+        if (!accept(expected)) {
+            throw error("Expected '" + expected + "'");
+        }
+    }
+
+    private char peek() {
+        return position < filter.length() ? filter.charAt(position) : 0;
+    }
+
+    private void skipWhitespace() {
+        while (position < filter.length() && Character.isWhitespace(filter.charAt(position))) {
+            position++;
+        }
+    }
+
+    private IllegalArgumentException error(final String message) {
+        return new IllegalArgumentException(message + " at position " + position + " of filter: " + filter);
+    }
+}
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.controller.enmfls;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * A filter value such as {@code PM_CELLTRACE_*}, compiled once into the cheapest check that gives
+ * the same result as matching the value against the filter with '*' read as '(.*)'.
+ * <p>
+ * Decisions are remembered per value, the columns that are filtered on only have a handful of
+ * distinct values.
+ */
+class ValueMatcher implements Predicate<String> {
+
+    private static final String WILDCARD = "*";
+
+    private static final Pattern REGEX_SYNTAX = Pattern.compile("[\\\\.\\[\\]{}()+?^$|]");
+
+    private enum Kind {
+        ANY, EXACT, PREFIX, SUFFIX, CONTAINS, REGEX
+    }
+
+    private final Kind kind;
+
+    private final String literal;
+
+    private final Pattern regex;
+
+    private final Map<String, Boolean> decisions = new ConcurrentHashMap<>();
+
+    private ValueMatcher(final Kind kind, final String literal, final Pattern regex) {
+        this.kind = kind;
+        this.literal = literal;
+        this.regex = regex;
+    }
+
+    /**
+     * Compiles a filter value.
+     *
+     * @param filterValue the filter value, null matches any value
+     * @return the matcher
+     */
+    static ValueMatcher compile(final String filterValue) {
+        if (filterValue == null || filterValue.replace(WILDCARD, "").isEmpty()) {
+            return new ValueMatcher(Kind.ANY, null, null);
+        }
+        if (REGEX_SYNTAX.matcher(filterValue).find()) {
+            return new ValueMatcher(Kind.REGEX, null, Pattern.compile(filterValue.replace(WILDCARD, "(.*)")));
+        }
+        final int firstWildcard = filterValue.indexOf(WILDCARD);
+        final int lastWildcard = filterValue.lastIndexOf(WILDCARD);
+        if (firstWildcard < 0) {
+            return new ValueMatcher(Kind.EXACT, filterValue, null);
+        }
+        if (firstWildcard == lastWildcard && lastWildcard == filterValue.length() - 1) {
+            return new ValueMatcher(Kind.PREFIX, filterValue.substring(0, firstWildcard), null);
+        }
+        if (firstWildcard == lastWildcard && firstWildcard == 0) {
+            return new ValueMatcher(Kind.SUFFIX, filterValue.substring(1), null);
+        }
+        if (firstWildcard == 0 && lastWildcard == filterValue.length() - 1) {
+            final String inner = filterValue.substring(1, lastWildcard);
+            if (!inner.contains(WILDCARD)) {
+                return new ValueMatcher(Kind.CONTAINS, inner, null);
+            }
+        }
+        return new ValueMatcher(Kind.REGEX, null, Pattern.compile(filterValue.replace(WILDCARD, "(.*)")));
+    }
+
+    @Override
+    public boolean test(final String value) {
+        if (value == null) {
+            return false;
+        }
+        return decisions.computeIfAbsent(value, this::evaluate);
+    }
+
+    /**
+     * Matches a value without remembering the decision, for columns with many distinct values such as
+     * nodeName and fileLocation.
+     *
+     * @param value the value, null never matches
+     * @return whether the value matches
+     */
+    boolean matches(final String value) {
+        return value != null && evaluate(value);
+    }
+
+    private boolean evaluate(final String value) {
+        switch (kind) {
+            case ANY:
+                return true;
+            case EXACT:
+                return value.equals(literal);
+            case PREFIX:
+                return value.startsWith(literal);
+            case SUFFIX:
+                return value.endsWith(literal);
+            case CONTAINS:
+                return value.contains(literal);
+            default:
+                return regex.matcher(value).matches();
+        }
+    }
+}
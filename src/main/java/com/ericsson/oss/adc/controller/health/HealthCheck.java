@@ -70,6 +70,17 @@ public final class HealthCheck implements HealthIndicator {
         this.errorMessage = errorMessage;
     }
 
+    /**
+     * Clear the error message set by {@link #failHealthCheck}, unless another error message replaced it since.
+     *
+     * @param errorMessage Error message which no longer applies.
+     */
+    public void clearHealthCheck(final String errorMessage) {
+        if (errorMessage != null && errorMessage.equals(this.errorMessage)) {
+            this.errorMessage = null;
+        }
+    }
+
     /**
      * Getter method for error message.
      *
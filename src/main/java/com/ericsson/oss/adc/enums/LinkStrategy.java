@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.enums;
+
+import java.util.Locale;
+
+/**
+ * How the files of a ROP are produced from the files in the bin directory, selected with
+ * sftp.generation.linkStrategy.
+ */
+public enum LinkStrategy {
+    /** A symlink to the bin file, the file parsers open through the link. */
+    SYMLINK(0120000),
+    /** A hardlink to the file the bin file resolves to, an inode shared with every ROP. */
+    HARDLINK(0100000),
+    /** A copy of the bin file made on the server, an inode of its own for each file. */
+    COPY(0100000);
+
+    private final int fileType;
+
+    LinkStrategy(final int fileType) {
+        this.fileType = fileType;
+    }
+
+    /**
+     * Checks the permissions of an existing path, file type included, against the files this strategy
+     * creates.
+     *
+     * @param permissions the permissions of the path, not following symlinks, -1 if there are none
+     * @return true if the path is such a file
+     */
+    public boolean isCreatedFile(final int permissions) {
+        return permissions >= 0 && (permissions & 0170000) == fileType;
+    }
+
+    /**
+     * @return the name in the configuration and the metrics, for example 'hardlink'
+     */
+    public String getName() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Gets the strategy of a name in the configuration.
+     *
+     * @param name for example 'symlink', in any case
+     * @return the strategy
+     * @throws IllegalArgumentException if there is no such strategy
+     */
+    public static LinkStrategy fromName(final String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+package com.ericsson.oss.adc.enums;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The Enum MetaDataField, the columns of a file notification which can be selected in an FLS query.
+ */
+public enum MetaDataField {
+    ID("id"), NODE_NAME("nodeName"), DATA_TYPE("dataType"), NODE_TYPE("nodeType"), FILE_LOCATION("fileLocation");
+
+    private final String fieldName;
+
+    /**
+     * Instantiates a new meta data field.
+     *
+     * @param fieldName
+     *            the name of the field in the JSON response
+     */
+    MetaDataField(final String fieldName) {
+        this.fieldName = fieldName;
+    }
+
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    /**
+     * Gets the field with a given name.
+     *
+     * @param fieldName
+     *            the name of the field in the JSON response
+     * @return the field, or null if no field has that name
+     */
+    public static MetaDataField fromFieldName(final String fieldName) {
+        for (final MetaDataField field : values()) {
+            if (field.fieldName.equals(fieldName)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the fields listed in the select parameter of an FLS query, for example 'id,nodeName,fileLocation'.
+     * Unknown names are ignored; all fields are selected when the parameter is empty or names none.
+     *
+     * @param select
+     *            the comma separated field names
+     * @return the selected fields, in response order
+     */
+    public static Set<MetaDataField> parseSelect(final String select) {
+        final Set<MetaDataField> fields = EnumSet.noneOf(MetaDataField.class);
+        if (select != null) {
+            for (final String name : select.split(",")) {
+                final MetaDataField field = fromFieldName(name.trim());
+                if (field != null) {
+                    fields.add(field);
+                }
+            }
+        }
+        return fields.isEmpty() ? EnumSet.allOf(MetaDataField.class) : fields;
+    }
+}
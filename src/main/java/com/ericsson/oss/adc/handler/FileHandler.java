@@ -19,11 +19,12 @@ package com.ericsson.oss.adc.handler;
 import lombok.Data;
 import org.springframework.stereotype.Component;
 
-import java.util.ArrayList;
+import com.ericsson.oss.adc.models.NotificationStore;
+
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Stores the list of files that are ready for sending, and counts their flsId.
+ * Stores the files that are ready for sending, ordered by their flsId, and counts their flsId.
  */
 @Component
 @Data
@@ -31,6 +32,6 @@ public class FileHandler {
 
     private AtomicLong idCounter = new AtomicLong(System.currentTimeMillis());
 
-    private final ArrayList<Object> availableFiles = new ArrayList<>();
+    private final NotificationStore notificationStore = new NotificationStore();
 
 }
@@ -29,13 +29,23 @@ import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.time.format.TextStyle;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
 
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
@@ -54,12 +64,16 @@ import com.ericsson.oss.adc.enums.FileFormats;
 import com.ericsson.oss.adc.enums.FileType;
 import com.ericsson.oss.adc.exceptions.FileHandlingException;
 import com.ericsson.oss.adc.exceptions.NoSftpConnectionException;
+import com.ericsson.oss.adc.handler.RopGenerationEngine.SymlinkTask;
 import com.ericsson.oss.adc.models.FileNotificationDTO;
 import com.ericsson.oss.adc.models.MetaData;
+import com.ericsson.oss.adc.models.NotificationStore;
 import com.ericsson.oss.adc.models.SizedQueue;
+import com.ericsson.oss.adc.services.SftpExecService;
 import com.ericsson.oss.adc.services.SftpService;
 import com.ericsson.oss.adc.utils.DependencyCheckSftp;
 import com.ericsson.oss.adc.utils.Utilities;
+import com.jcraft.jsch.SftpATTRS;
 import com.jcraft.jsch.SftpException;
 
 import io.micrometer.core.instrument.MeterRegistry;
@@ -84,6 +98,8 @@ public class FileNotificationHandler {
 
     private static final String UNDER_SCORE = "_";
 
+    private static final String GENERATION_BACKEND_EXEC = "exec";
+
     private final AtomicLong numSftpFilesRenamedPerRop;
 
     private final AtomicLong numSftpFilesUploadedPerRop;
@@ -102,6 +118,12 @@ public class FileNotificationHandler {
 
     private final AtomicLong timeMsSftpFilesUploadedPerRop;
 
+    private final AtomicLong numNotificationsEvictedPerRop;
+
+    private final AtomicLong numNotificationsRetained;
+
+    private final AtomicLong numNotificationBytesRetained;
+
     // A map of FileType enums to their respective DataType.
     // Used in the notification sent to kafka
     private final Map<FileType, DataType> mapFileTypeToDataType = new HashMap<>();
@@ -127,6 +149,11 @@ public class FileNotificationHandler {
     // directory
     private Map<String, FileType> mapUploadedBinFilePathToFileType = new HashMap<>();
 
+    // A map of the newest symlink found on the SFTP server at startup per node file, keyed by its
+    // path without the ROP time (see getNodeFileKey)
+    // Used by the initial generation of files to take over the symlinks instead of creating them again
+    private Map<String, String> mapNodeFileKeyToReconciledFilePath = new HashMap<>();
+
     // A map of FileType enums to the number of nodes that need to be generated for
     // them
     // Used to keep a track of the number of nodes needed per file type,
@@ -137,6 +164,10 @@ public class FileNotificationHandler {
     // to be stored for retention purposes
     private SizedQueue<Map<String, FileType>> filesWindow;
 
+    // Window of the last notification id of each ROP, the notifications of a ROP
+    // are evicted when its id leaves the notification retention period
+    private SizedQueue<Long> notificationsWindow;
+
     @Autowired
     private SftpService sftpService;
 
@@ -144,6 +175,12 @@ public class FileNotificationHandler {
         return sftpService;
     }
 
+    @Autowired
+    private SftpExecService sftpExecService;
+
+    @Autowired
+    private RetentionCleaner retentionCleaner;
+
     @Autowired
     private DependencyCheckSftp dependencyCheckSftp;
 
@@ -180,6 +217,24 @@ public class FileNotificationHandler {
     @Value("${sftp.retentionPeriodMinutes}")
     private int retentionPeriodMinutes;
 
+    @Value("${fls.notificationRetentionPeriodMinutes:0}")
+    private int notificationRetentionPeriodMinutes;
+
+    @Value("${sftp.startup.reconcile:false}")
+    private boolean reconcileAtStartup;
+
+    @Value("${sftp.startup.sync:false}")
+    private boolean syncAtStartup;
+
+    @Value("${sftp.generation.backend:sftp}")
+    private String generationBackend;
+
+    @Value("${sftp.generation.workers:1}")
+    private int generationWorkers;
+
+    @Value("${sftp.generation.nodesPerUnit:250}")
+    private int generationNodesPerUnit;
+
     @Value("${sftp.connection.timeoutInMs}")
     private int connectionTimeoutInMs;
 
@@ -191,6 +246,10 @@ public class FileNotificationHandler {
 
     private String lastFormattedLocalDateTime;
 
+    private RopGenerationEngine ropGenerationEngine;
+
+    private final SymlinkLedger symlinkLedger = new SymlinkLedger();
+
     private final String binSubDirectory = "bin/";
 
     private int expectedTotalNumberOfFiles;
@@ -231,6 +290,15 @@ public class FileNotificationHandler {
         timeMsSftpFilesRenamedPerRop = meterRegistry.gauge(
                 "eric.oss.file.notification.enm.stub:sftp.files.renamed.per.rop.time",
                 new AtomicLong(0));
+        numNotificationsEvictedPerRop = meterRegistry.gauge(
+                "eric.oss.file.notification.enm.stub:fls.notifications.evicted.per.rop",
+                new AtomicLong(0));
+        numNotificationsRetained = meterRegistry.gauge(
+                "eric.oss.file.notification.enm.stub:fls.notifications.retained",
+                new AtomicLong(0));
+        numNotificationBytesRetained = meterRegistry.gauge(
+                "eric.oss.file.notification.enm.stub:fls.notifications.retained.bytes",
+                new AtomicLong(0));
     }
 
     /**
@@ -240,6 +308,9 @@ public class FileNotificationHandler {
     @EventListener(ApplicationReadyEvent.class)
     public void initMisc() {
         filesWindow = new SizedQueue<>(ropPeriodMinutes, retentionPeriodMinutes);
+        // notifications follow the files window unless given their own retention period
+        notificationsWindow = new SizedQueue<>(ropPeriodMinutes,
+                notificationRetentionPeriodMinutes > 0 ? notificationRetentionPeriodMinutes : retentionPeriodMinutes);
 
         mapFileTypeToNodeCount.put(FileType.PMCOUNTER, numberOfNodesFileTrans);
         mapFileTypeToNodeCount.put(FileType.PMCOUNTER_EBS, numberOfNodesFileTransEbs);
@@ -259,6 +330,18 @@ public class FileNotificationHandler {
         mapFileTypeToSftpFilesRenamedPerRopMetric.put(FileType.PMCOUNTER_CORE, numSftpFilesRenamedPmCounterCorePerRop);
         mapFileTypeToSftpFilesRenamedPerRopMetric.put(FileType.EVENT4G, numSftpFilesRenamedEvent4gPerRop);
         mapFileTypeToSftpFilesRenamedPerRopMetric.put(FileType.EVENT5G, numSftpFilesRenamedEvent5gPerRop);
+
+        ropGenerationEngine = new RopGenerationEngine(sftpService, generationWorkers, generationNodesPerUnit);
+    }
+
+    /**
+     * Stops the workers of the ROP generation engine.
+     */
+    @PreDestroy
+    public void close() {
+        if (ropGenerationEngine != null) {
+            ropGenerationEngine.close();
+        }
     }
 
     /**
@@ -293,6 +376,7 @@ public class FileNotificationHandler {
         if (!sftpService.sftpConnectionPresent()) {
             LOG.error("{}: No SFTP Server connection found ", RENAME);
             dependencyCheckSftp.deploySftp(connectionTimeoutInMs, connectionRetryCountMax);
+            symlinkLedger.clear(); // the symlinks may be gone with the server
             if (!sftpService.sftpConnectionPresent()) {
                 logStpServerError(RENAME);
                 return false;
@@ -311,6 +395,7 @@ public class FileNotificationHandler {
             final LocalDateTime now = LocalDateTime.now();
             final Map<String, FileType> shallowCopyMap = new HashMap<>(mapUploadedFilePathToFileType);
             lastFormattedLocalDateTime = "Not_Set";
+            final List<SymlinkTask> tasks = new ArrayList<>(shallowCopyMap.size());
             for (final Map.Entry<String, FileType> entry : shallowCopyMap.entrySet()) {
                 String newFilePath;
                 try {
@@ -320,21 +405,32 @@ public class FileNotificationHandler {
                             RENAME, entry.getKey(), now, e.getMessage());
                     continue;
                 }
+                tasks.add(new SymlinkTask(mapUploadedFilePathToBinFilePath.get(entry.getKey()), newFilePath, entry.getValue(),
+                        entry.getKey()));
+            }
 
-                final SymlinkResult symlinkResult = sftpService.symlink(mapUploadedFilePathToBinFilePath.get(entry.getKey()), newFilePath, sftpPermissions);
-                if (symlinkResult == SymlinkResult.FAILED) {
-                    return false;
+            // the symlinks are created in parallel, their results applied here in the order they were planned
+            final boolean allLinked = createSymlinks(tasks, now);
+            final List<SymlinkTask> created = new ArrayList<>(tasks.size());
+            for (final SymlinkTask task : tasks) {
+                final SymlinkResult symlinkResult = task.getResult();
+                if (symlinkResult == null || symlinkResult == SymlinkResult.FAILED) {
+                    continue;
                 }
-                final FileType fileType = entry.getValue();
-                mapFileTypeToSftpFilesRenamedPerRopMetric.get(fileType).incrementAndGet();
+                mapFileTypeToSftpFilesRenamedPerRopMetric.get(task.getFileType()).incrementAndGet();
                 numSftpFilesRenamedPerRop.incrementAndGet();
                 if (symlinkResult == SymlinkResult.EXIST) {
                     continue;
                 }
-                mapUploadedFilePathToBinFilePath.put(newFilePath,
-                        mapUploadedFilePathToBinFilePath.remove(entry.getKey()));
-                mapUploadedFilePathToFileType.put(newFilePath, mapUploadedFilePathToFileType.remove(entry.getKey()));
-                storeNewFilePath(fileType, newFilePath);
+                mapUploadedFilePathToBinFilePath.put(task.getLinkedFile(),
+                        mapUploadedFilePathToBinFilePath.remove(task.getPreviousFilePath()));
+                mapUploadedFilePathToFileType.put(task.getLinkedFile(),
+                        mapUploadedFilePathToFileType.remove(task.getPreviousFilePath()));
+                created.add(task);
+            }
+            storeNewFilePaths(created);
+            if (!allLinked) {
+                return false;
             }
 
             // maintain window of files in the retention period and delete files that are
@@ -344,6 +440,7 @@ public class FileNotificationHandler {
             if (toBeDeleted != null) {
                 cleanupFiles(toBeDeleted);
             }
+            evictNotifications();
             timeMsSftpFilesRenamedPerRop.set(Duration.between(startTime, Instant.now()).toMillis());
             LOG.info("{}: Updated File DateTime to '{}' for {} Files took {} ms", RENAME, lastFormattedLocalDateTime,
                     numSftpFilesRenamedPerRop.get(),
@@ -415,7 +512,7 @@ public class FileNotificationHandler {
         final Instant startTime = Instant.now();
         LOG.info("UPLOAD: Initial file generation sequence started");
         final Map<String, FileType> filteredMapFilePathToFileType = new HashMap<>(mapUploadedBinFilePathToFileType.size());
-        int localTotalUploaded = 0;
+        final List<SymlinkTask> tasks = new ArrayList<>(expectedTotalNumberOfFiles);
 
         for (final FileType fileType : FileType.values()) {
             if (fileType == FileType.UNKNOWN) {
@@ -436,7 +533,7 @@ public class FileNotificationHandler {
             }
 
             int fileNumberToUpload = 0;
-            int localNumUploaded = 0;
+            int localNumReconciled = 0;
             for (int i = 1; i <= mapFileTypeToNodeCount.get(fileType); i++) {
                 final Object[] filePaths = filteredMapFilePathToFileType.keySet().toArray();
                 if (fileNumberToUpload >= filePaths.length) { // round-robin to iterate through files
@@ -452,59 +549,206 @@ public class FileNotificationHandler {
                     return false;
                 }
 
-                final SymlinkResult symlinkResult = sftpService.symlink(filepath, newFilePath, sftpPermissions); // these links will not be removed
-                if (symlinkResult == SymlinkResult.FAILED) {
-                    return false;
-                }
-                if (symlinkResult == SymlinkResult.EXIST) {
+                final String reconciledFilePath = mapNodeFileKeyToReconciledFilePath.remove(getNodeFileKey(newFilePath));
+                if (reconciledFilePath != null) {
+                    // already on the SFTP server from before a restart, taken over as it is
+                    mapUploadedFilePathToBinFilePath.put(reconciledFilePath, filepath);
+                    mapUploadedFilePathToFileType.put(reconciledFilePath, filteredMapFilePathToFileType.get(filepath));
+                    localNumReconciled++;
                     continue;
                 }
-                mapUploadedFilePathToBinFilePath.put(newFilePath, filepath);
-                mapUploadedFilePathToFileType.put(newFilePath, filteredMapFilePathToFileType.get(filepath));
-                storeNewFilePath(fileType, newFilePath);
-                numSftpFilesUploadedPerRop.incrementAndGet();
-                mapFileTypeToSftpFilesRenamedPerRopMetric.get(fileType).incrementAndGet();
-                localNumUploaded++;
-                localTotalUploaded++;
+                tasks.add(new SymlinkTask(filepath, newFilePath, fileType, null)); // these links will not be removed
+            }
+            LOG.info("UPLOAD: Reconciled {} existing {} Files", localNumReconciled, fileType);
+        }
+
+        // the symlinks are created in parallel, their results applied here in the order they were planned
+        final boolean allLinked = createSymlinks(tasks, LocalDateTime.now());
+        final Map<FileType, Integer> mapFileTypeToNumUploaded = new EnumMap<>(FileType.class);
+        final List<SymlinkTask> created = new ArrayList<>(tasks.size());
+        for (final SymlinkTask task : tasks) {
+            if (task.getResult() != SymlinkResult.SUCCESS) {
+                continue;
             }
-            LOG.info("UPLOAD: Uploaded {} {} Files ", localNumUploaded, fileType);
+            mapUploadedFilePathToBinFilePath.put(task.getLinkedFile(), task.getSourceFile());
+            mapUploadedFilePathToFileType.put(task.getLinkedFile(), task.getFileType());
+            created.add(task);
+            numSftpFilesUploadedPerRop.incrementAndGet();
+            mapFileTypeToSftpFilesRenamedPerRopMetric.get(task.getFileType()).incrementAndGet();
+            mapFileTypeToNumUploaded.merge(task.getFileType(), 1, Integer::sum);
         }
+        storeNewFilePaths(created);
+        mapFileTypeToNumUploaded.forEach((fileType, numUploaded) -> LOG.info("UPLOAD: Uploaded {} {} Files", numUploaded, fileType));
+        if (!allLinked) {
+            return false;
+        }
+        mapNodeFileKeyToReconciledFilePath.clear();
         if (LOG.isDebugEnabled()) {
             LOG.debug("UPLOAD: mapUploadedFilePathToFileType {} ", mapUploadedFilePathToFileType);
         }
         timeMsSftpFilesUploadedPerRop.set(Duration.between(startTime, Instant.now()).toMillis());
-        LOG.info("UPLOAD: Uploaded {} Files (total) in {} mS", localTotalUploaded, timeMsSftpFilesUploadedPerRop.get());
+        LOG.info("UPLOAD: Uploaded {} Files (total) in {} mS", created.size(), timeMsSftpFilesUploadedPerRop.get());
         return true;
     }
 
+    private void evictNotifications() {
+        final NotificationStore notificationStore = fileHandler.getNotificationStore();
+        final Long toBeEvicted = notificationsWindow.addWithRemove(fileHandler.getIdCounter().get());
+        numNotificationsEvictedPerRop.set(toBeEvicted == null ? 0 : notificationStore.evictUpTo(toBeEvicted));
+        numNotificationsRetained.set(notificationStore.size());
+        numNotificationBytesRetained.set(notificationStore.getRetainedBytes());
+        LOG.info("{}: Evicted {} notifications, {} notifications retained", RENAME, numNotificationsEvictedPerRop.get(),
+                numNotificationsRetained.get());
+    }
+
     private void cleanupFiles(final Map<String, FileType> map) {
+        if (retentionCleaner != null) {
+            // removed in the background, not adding to the time to publish the ROP
+            retentionCleaner.submit(map.keySet());
+            return;
+        }
         map.keySet().forEach(filePath -> sftpService.rm(filePath));
     }
 
-    private void storeNewFilePath(final FileType fileType, final String newFilePath) {
-        if (mapFileTypeToDataType.get(fileType) != null) {
-            final FileNotificationDTO fileNotificationDTO =
-                constructFileNotificationDto(newFilePath, mapFileTypeToDataType.get(fileType).toString());
-            synchronized(fileHandler){
-                fileHandler.getAvailableFiles().add(new MetaData(fileNotificationDTO,fileHandler.getIdCounter().incrementAndGet()));
+    private boolean isExecBackend() {
+        return GENERATION_BACKEND_EXEC.equalsIgnoreCase(generationBackend) && sftpExecService != null;
+    }
+
+    private boolean createSymlinks(final List<SymlinkTask> tasks, final LocalDateTime time) {
+        // symlinks already created in this ROP, when generated again in manual mode, are not checked on the server
+        symlinkLedger.startRop(getRopStartTime(time));
+        final List<SymlinkTask> pending = new ArrayList<>(tasks.size());
+        for (final SymlinkTask task : tasks) {
+            if (symlinkLedger.contains(task.getLinkedFile())) {
+                task.setResult(SymlinkResult.EXIST);
+            } else {
+                pending.add(task);
+            }
+        }
+        final boolean allLinked;
+        if (isExecBackend()) {
+            // one script for the whole ROP
+            final List<SymlinkResult> results = sftpExecService.linkAll(pending, sftpPermissions);
+            for (int i = 0; i < pending.size(); i++) {
+                pending.get(i).setResult(results.get(i));
+            }
+            allLinked = results.stream().allMatch(result -> result == SymlinkResult.SUCCESS || result == SymlinkResult.EXIST);
+        } else {
+            allLinked = ropGenerationEngine.run(pending, sftpPermissions);
+        }
+        for (final SymlinkTask task : pending) {
+            if (task.getResult() == SymlinkResult.SUCCESS || task.getResult() == SymlinkResult.EXIST) {
+                symlinkLedger.add(task.getLinkedFile());
+            }
+        }
+        return allLinked;
+    }
+
+    private void storeNewFilePaths(final List<SymlinkTask> created) {
+        final List<FileNotificationDTO> fileNotificationDTOs = new ArrayList<>(created.size());
+        for (final SymlinkTask task : created) {
+            final DataType dataType = mapFileTypeToDataType.get(task.getFileType());
+            if (dataType != null) {
+                fileNotificationDTOs.add(constructFileNotificationDto(task.getLinkedFile(), dataType.toString()));
+            }
+        }
+        // keeps ids in store order across writers, readers of the store do not take this lock
+        synchronized(fileHandler){
+            for (final FileNotificationDTO fileNotificationDTO : fileNotificationDTOs) {
+                fileHandler.getNotificationStore().append(new MetaData(fileNotificationDTO,fileHandler.getIdCounter().incrementAndGet()));
             }
         }
     }
 
     private boolean uploadLocalFilesToSftpServer(final String callingLocation) throws SftpException, NoSftpConnectionException {
         LOG.info("{}: Upload local files to SFTP server", callingLocation);
-        if (sftpRemoteDirectory != null) { // default is $HOME, if one provided move to that instead
+        if (sftpRemoteDirectory != null) { // default is $HOME, if one provided the files go below it
             LOG.info("{}: Creating remote directory structure '{}' with permissions '{}'", callingLocation, sftpRemoteDirectory, sftpPermissions);
             sftpService.mkdirRemotePath(sftpRemoteDirectory, sftpPermissions);
-            sftpService.cdToRemotePath(sftpRemoteDirectory);
         } else {
             LOG.error("{}: ERROR Creating remote directory structure '{}' with permissions '{}'."
                     + " sftpRemoteDirectory is NULL, No Files will be transferred. ", callingLocation, sftpRemoteDirectory, sftpPermissions);
             return false;
         }
         final String localPath = "files-to-upload";
+        final Map<String, SftpATTRS> remoteFiles = reconcileAtStartup ? listRemoteFiles(callingLocation) : Collections.emptyMap();
         LOG.info("{}: Transferring files from '{}' to '{}'", callingLocation, localPath, sftpRemoteDirectory);
-        return uploadLocalFilesToRemoteBin(localPath, sftpRemoteDirectory, sftpPermissions);
+        if (!uploadLocalFilesToRemoteBin(localPath, sftpRemoteDirectory, sftpPermissions, remoteFiles)) {
+            return false;
+        }
+        if (reconcileAtStartup) {
+            reconcileSymlinks(remoteFiles.entrySet().stream().filter(entry -> entry.getValue().isLink())
+                    .map(Map.Entry::getKey).collect(Collectors.toList()));
+        }
+        return true;
+    }
+
+    private Map<String, SftpATTRS> listRemoteFiles(final String callingLocation) {
+        final Instant startTime = Instant.now();
+        final Map<String, SftpATTRS> remoteFiles = new HashMap<>();
+        // keyed by normalized path, the upload paths may hold duplicate separators
+        sftpService.listRemoteFiles(sftpRemoteDirectory).forEach((path, attrs) -> remoteFiles.put(normalizePath(path), attrs));
+        LOG.info("{}: Listed {} files already on the SFTP server in {} ms", callingLocation, remoteFiles.size(),
+                Duration.between(startTime, Instant.now()).toMillis());
+        return remoteFiles;
+    }
+
+    /**
+     * Rebuilds the state of the generated files from the symlinks already on the SFTP server, after a restart.
+     * The symlinks are grouped by ROP time into the files window, so they are cleaned up at the end of the
+     * retention period, and the newest symlink of each node file is taken over by the initial generation of
+     * files instead of being created again. Symlinks in the bin directory are ignored.
+     *
+     * @param remoteSymlinkPaths the paths of the symlinks on the SFTP server
+     */
+    public void reconcileSymlinks(final Collection<String> remoteSymlinkPaths) {
+        final String binDirectory = normalizePath(sftpRemoteDirectory + UNIX_PATH_SEPARATOR + binSubDirectory) + UNIX_PATH_SEPARATOR;
+        // ROP times sort as text, so the windows are added oldest first
+        final Map<String, Map<String, FileType>> mapRopTimeToFiles = new TreeMap<>();
+        mapNodeFileKeyToReconciledFilePath.clear();
+        for (final String remoteSymlinkPath : remoteSymlinkPaths) {
+            final String filePath = normalizePath(remoteSymlinkPath);
+            final String nodeFileKey = getNodeFileKey(filePath);
+            if (filePath.startsWith(binDirectory) || nodeFileKey == null) {
+                continue;
+            }
+            final String ropTime = getRopTime(filePath);
+            mapRopTimeToFiles.computeIfAbsent(ropTime, key -> new HashMap<>()).put(filePath, getFileType(filePath));
+            mapNodeFileKeyToReconciledFilePath.merge(nodeFileKey, filePath,
+                    (current, other) -> getRopTime(current).compareTo(getRopTime(other)) >= 0 ? current : other);
+        }
+        for (final Map<String, FileType> ropFiles : mapRopTimeToFiles.values()) {
+            final Map<String, FileType> toBeDeleted = filesWindow.addWithRemove(ropFiles);
+            if (toBeDeleted != null) {
+                cleanupFiles(toBeDeleted);
+            }
+        }
+        LOG.info("{}: Reconciled {} symlinks of {} ROPs, {} node files to take over", STARTUP, remoteSymlinkPaths.size(),
+                mapRopTimeToFiles.size(), mapNodeFileKeyToReconciledFilePath.size());
+    }
+
+    /**
+     * Gets the path of a generated file without its ROP time, which is the same for every ROP of a node file.
+     *
+     * @param filePath the path of the file
+     * @return the key, or null if the file name has no ROP time
+     */
+    private String getNodeFileKey(final String filePath) {
+        final String fileName = getFileName(filePath);
+        final String fileNameAfterRopTime = getRemoteFilename(fileName);
+        if (fileNameAfterRopTime == null) {
+            return null;
+        }
+        return filePath.substring(0, filePath.length() - fileName.length()) + fileNameAfterRopTime;
+    }
+
+    private String getRopTime(final String filePath) {
+        // without the leading A or B, the start and end time of the ROP
+        return getFileName(filePath).split(NAMING_DELIMITER, 2)[0].substring(1);
+    }
+
+    private static String normalizePath(final String path) {
+        return toUnixPathSeparator(String.valueOf(Paths.get(path)));
     }
 
     private FileNotificationDTO constructFileNotificationDto(String path, final String dataType) {
@@ -721,6 +965,10 @@ public class FileNotificationHandler {
         return time;
     }
 
+    private LocalDateTime getRopStartTime(final LocalDateTime time) {
+        return getNewTime(time.minusMinutes(30)).truncatedTo(ChronoUnit.MINUTES);
+    }
+
     private String getFormattedLocalDateTime(final char firstChar, final LocalDateTime time) {
         // return time with format "{firstChar}yyyyMMdd.HHmm-<HHmm + 15 mins>"
         final ZoneOffset zoneOffset = time.atZone(ZoneId.systemDefault()).getOffset();
@@ -728,7 +976,7 @@ public class FileNotificationHandler {
         if (offset.equalsIgnoreCase("Z")) { // UTC, GMT Zone is offset of 00:00, represented by 'Z'
             offset = "+0000";
         }
-        final LocalDateTime startTime = getNewTime(time.minusMinutes(30));
+        final LocalDateTime startTime = getRopStartTime(time);
         final LocalDateTime endTime = getNewTime(startTime.plusMinutes(1));
 
         return firstChar + startTime.format(DateTimeFormatter.ofPattern("yyyyMMdd.HHmm"))
@@ -753,9 +1001,12 @@ public class FileNotificationHandler {
      *                    directory (user home).
      * @param permissions The new permission pattern. This may be modified by a
      *                    current mask before being applied.
+     * @param remoteFiles The files already on the SFTP server keyed by normalized path, those which are
+     *                    the upload of the local file are not uploaded again, see {@link #isUploadOf}.
      * @return true, if successful
      */
-    private boolean uploadLocalFilesToRemoteBin(final String localPath, String remotePath, final String permissions) {
+    private boolean uploadLocalFilesToRemoteBin(final String localPath, String remotePath, final String permissions,
+                                                final Map<String, SftpATTRS> remoteFiles) {
         final String editedLocalPath = toUnixPathSeparator(localPath);
         remotePath = toUnixPathSeparator(remotePath);
         if (!remotePath.endsWith(UNIX_PATH_SEPARATOR)) {
@@ -770,18 +1021,59 @@ public class FileNotificationHandler {
         }
 
         final Collection<File> localFiles = FileUtils.listFiles(new File(editedLocalPath), null, true);
+        if (syncAtStartup) {
+            return syncLocalFilesToRemoteBin(localFiles, editedLocalPath, editedRemotePath, permissions);
+        }
+        int numSkipped = 0;
         for (final File file : localFiles) {
             final String localFilePath = toUnixPathSeparator(file.getAbsolutePath());
             final String remoteFilePath = editedRemotePath
                     + toUnixPathSeparator(file.getPath().replace(editedLocalPath, ""));
-            if (!sftpService.upload(localFilePath, remoteFilePath, permissions)) {
+            final SftpATTRS remoteFile = remoteFiles.get(normalizePath(remoteFilePath));
+            if (isUploadOf(remoteFile, file)) {
+                numSkipped++;
+            } else if (!sftpService.upload(localFilePath, remoteFilePath, permissions)) {
                 LOG.info("Error uploading local files from '{}' to remote bin directory '{}'", editedLocalPath,
                         editedRemotePath);
                 return false;
             }
             mapUploadedBinFilePathToFileType.put(remoteFilePath, getFileType(localFilePath));
         }
-        LOG.info("Successfully uploaded local files from '{}' to remote bin directory '{}'", editedLocalPath, editedRemotePath);
+        LOG.info("Successfully uploaded local files from '{}' to remote bin directory '{}', {} already present", editedLocalPath,
+                editedRemotePath, numSkipped);
+        return true;
+    }
+
+    /**
+     * Tells whether a remote bin file is the upload of a local file. Uploads keep the size and the modification
+     * time of the local file, so a template changed since, even keeping its size, is uploaded again.
+     *
+     * @param remoteFile the attributes of the remote file, null when there is none
+     * @param localFile the local file
+     * @return true if the remote file need not be uploaded again
+     */
+    static boolean isUploadOf(final SftpATTRS remoteFile, final File localFile) {
+        return remoteFile != null && !remoteFile.isLink() && remoteFile.getSize() == localFile.length()
+                && remoteFile.getMTime() == (int) (localFile.lastModified() / 1000);
+    }
+
+    private boolean syncLocalFilesToRemoteBin(final Collection<File> localFiles, final String localPath, final String binPath,
+                                              final String permissions) {
+        final Map<String, File> mapRelativePathToLocalFile = new LinkedHashMap<>();
+        for (final File file : localFiles) {
+            String relativePath = toUnixPathSeparator(file.getPath().replace(localPath, ""));
+            while (relativePath.startsWith(UNIX_PATH_SEPARATOR)) {
+                relativePath = relativePath.substring(1);
+            }
+            mapRelativePathToLocalFile.put(relativePath, file);
+        }
+        if (!new TemplateSync(sftpService, generationWorkers).sync(mapRelativePathToLocalFile, binPath, permissions)) {
+            LOG.info("Error synchronising local files from '{}' to remote bin directory '{}'", localPath, binPath);
+            return false;
+        }
+        // the same paths as when uploaded, the ROP files are named after them
+        localFiles.forEach(file -> mapUploadedBinFilePathToFileType.put(binPath + toUnixPathSeparator(file.getPath().replace(localPath, "")),
+                getFileType(toUnixPathSeparator(file.getAbsolutePath()))));
         return true;
     }
 
@@ -814,6 +1106,9 @@ public class FileNotificationHandler {
                 + ", numberOfNodesFileTrans=" + numberOfNodesFileTrans
                 + ", numberOfNodesFileTransEbs=" + numberOfNodesFileTransEbs
                 + ", numberOfNodesFileTransCore=" + numberOfNodesFileTransCore
+                + ", notificationRetentionPeriodMinutes=" + notificationRetentionPeriodMinutes
+                + ", reconcileAtStartup=" + reconcileAtStartup
+                + ", syncAtStartup=" + syncAtStartup
                 + ", connectionTimeoutInMs=" + connectionTimeoutInMs
                 + ", connectionRetryCountAtStartupMax=" + connectionRetryCountAtStartupMax
                 + ", connectionRetryCountMax=" + connectionRetryCountMax + "]";
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.handler;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.ericsson.oss.adc.models.NotificationJournal;
+import com.ericsson.oss.adc.models.NotificationStore;
+
+/**
+ * Recovers the notifications from the {@link NotificationJournal} when the application starts, if a
+ * journal directory is configured, and attaches the journal to the store so every new notification is
+ * journaled.
+ * <p>
+ * Only the notifications of the notification retention period are replayed into the store, the older
+ * ones stay in the journal as its cold tier. The journal itself keeps the notifications as long as the
+ * files. The id counter continues after the newest journaled id, so ids keep growing across restarts
+ * even if the clock went back.
+ */
+@Component
+public class JournalHandler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JournalHandler.class);
+
+    @Autowired
+    private FileHandler fileHandler;
+
+    @Value("${fls.journal.directory:}")
+    private String directory;
+
+    @Value("${fls.journal.recordBytes:" + NotificationJournal.DEFAULT_RECORD_BYTES + "}")
+    private int recordBytes;
+
+    @Value("${fls.journal.recordsPerSegment:" + NotificationJournal.DEFAULT_RECORDS_PER_SEGMENT + "}")
+    private int recordsPerSegment;
+
+    @Value("${sftp.retentionPeriodMinutes}")
+    private int retentionPeriodMinutes;
+
+    @Value("${fls.notificationRetentionPeriodMinutes:0}")
+    private int notificationRetentionPeriodMinutes;
+
+    private NotificationJournal journal;
+
+    @PostConstruct
+    public void recover() {
+        if (directory == null || directory.trim().isEmpty()) {
+            LOG.info("JOURNAL: No journal directory configured, notifications are kept in memory only");
+            return;
+        }
+        final long startMillis = System.currentTimeMillis();
+        final NotificationStore notificationStore = fileHandler.getNotificationStore();
+        try {
+            journal = new NotificationJournal(Paths.get(directory.trim()), recordBytes, recordsPerSegment,
+                    TimeUnit.MINUTES.toMillis(Math.max(retentionPeriodMinutes, notificationRetentionPeriodMinutes)));
+        } catch (final IOException | IllegalArgumentException exception) {
+            LOG.error("JOURNAL: Cannot open the journal in '{}', notifications are kept in memory only", directory, exception);
+            return;
+        }
+        final int hotMinutes = notificationRetentionPeriodMinutes > 0 ? notificationRetentionPeriodMinutes : retentionPeriodMinutes;
+        final AtomicInteger skipped = new AtomicInteger();
+        final int replayed = journal.replay(startMillis - TimeUnit.MINUTES.toMillis(hotMinutes), (metaData, appendMillis) -> {
+            try {
+                notificationStore.append(metaData, appendMillis);
+            } catch (final IllegalArgumentException exception) {
+                // a record the store cannot take must not stop the stub from starting
+                LOG.error("JOURNAL: Skipped journaled notification: {}", exception.getMessage());
+                skipped.incrementAndGet();
+            }
+        });
+        // attached after the replay, so the replayed notifications are not journaled again
+        notificationStore.setJournal(journal);
+        final long lastId = journal.getLastId();
+        fileHandler.getIdCounter().accumulateAndGet(lastId, Math::max);
+        LOG.info("JOURNAL: Replayed {} of {} journaled notifications from '{}' in {} ms, last id {}", replayed - skipped.get(),
+                journal.size(), directory, System.currentTimeMillis() - startMillis, lastId);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (journal != null) {
+            fileHandler.getNotificationStore().setJournal(null);
+            journal.close();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.handler;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Wakes the FLS consumers waiting for new files, the long-polls and the event streams.
+ * <p>
+ * Every stored notification signals the notifier. Signals are coalesced: while the listeners are
+ * being checked, any number of new signals cause one more check, so a large ROP does not queue up
+ * a check per file. The listeners are checked on a single thread of their own, never on the thread
+ * generating the ROP or on a request thread.
+ */
+@Component
+public class NewFileNotifier {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NewFileNotifier.class);
+
+    /**
+     * A consumer waiting for new files.
+     */
+    @FunctionalInterface
+    public interface Listener {
+
+        /**
+         * Called when new files may have been stored.
+         *
+         * @return true when the listener is done and should be removed
+         */
+        boolean onNewFiles();
+    }
+
+    private final Queue<Listener> listeners = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean checkPending = new AtomicBoolean();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "new-file-notifier");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    private FileHandler fileHandler;
+
+    @PostConstruct
+    public void init() {
+        fileHandler.getNotificationStore().addAppendListener(this::notifyNewFiles);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Adds a listener and checks it straight away, in case the files it waits for are already stored.
+     *
+     * @param listener the listener
+     */
+    public void register(final Listener listener) {
+        listeners.add(listener);
+        requestCheck();
+    }
+
+    public void unregister(final Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Signals that new files have been stored.
+     */
+    public void notifyNewFiles() {
+        if (!listeners.isEmpty()) {
+            requestCheck();
+        }
+    }
+
+    public int getListenerCount() {
+        return listeners.size();
+    }
+
+    private void requestCheck() {
+        if (checkPending.compareAndSet(false, true)) {
+            executor.execute(this::checkListeners);
+        }
+    }
+
+    private void checkListeners() {
+        checkPending.set(false);
+        for (final Listener listener : listeners) {
+            try {
+                if (listener.onNewFiles()) {
+                    listeners.remove(listener);
+                }
+            } catch (final RuntimeException exception) {
+                LOG.error("Removing new file listener which failed: {}", exception.getMessage());
+                listeners.remove(listener);
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.handler;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.ericsson.oss.adc.services.SftpExecService;
+import com.ericsson.oss.adc.services.SftpService;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Removes the files which left the retention period, in the background.
+ * <p>
+ * The ROP generation only queues the files, so the time to publish a ROP does not depend on how many
+ * files expire with it. The queue is drained on a single thread of its own, in batches removed with
+ * pipelined SFTP requests on a channel of their own, or with one script when exec is the generation
+ * backend. Files which could not be removed are queued again after a delay, a given number of times.
+ */
+@Component
+public class RetentionCleaner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RetentionCleaner.class);
+
+    private static final String GENERATION_BACKEND_EXEC = "exec";
+
+    private final BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+
+    // attempts of the files which failed before, the others have none
+    private final Map<String, Integer> mapFilePathToFailedAttempts = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean drainPending = new AtomicBoolean();
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "retention-cleaner");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Counter numFilesDeleted;
+
+    private final Counter numFilesNotDeleted;
+
+    private final AtomicLong timeMsLastBatch;
+
+    @Autowired
+    private SftpService sftpService;
+
+    @Autowired
+    private SftpExecService sftpExecService;
+
+    @Value("${sftp.generation.backend:sftp}")
+    private String generationBackend;
+
+    @Value("${sftp.cleanup.batchSize:1000}")
+    private int batchSize;
+
+    @Value("${sftp.cleanup.maxAttempts:3}")
+    private int maxAttempts;
+
+    @Value("${sftp.cleanup.retryDelayMs:30000}")
+    private long retryDelayMs;
+
+    /**
+     * Constructor to build the metrics.
+     *
+     * @param meterRegistry
+     *            The meter registry
+     */
+    public RetentionCleaner(final MeterRegistry meterRegistry) {
+        meterRegistry.gauge("eric.oss.file.notification.enm.stub:sftp.cleanup.queue.depth", queue, BlockingQueue::size);
+        numFilesDeleted = meterRegistry.counter("eric.oss.file.notification.enm.stub:sftp.cleanup.files.deleted");
+        numFilesNotDeleted = meterRegistry.counter("eric.oss.file.notification.enm.stub:sftp.cleanup.files.not.deleted");
+        timeMsLastBatch = meterRegistry.gauge("eric.oss.file.notification.enm.stub:sftp.cleanup.batch.time", new AtomicLong(0));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        if (!queue.isEmpty()) {
+            LOG.warn("{} expired files not removed at shutdown", queue.size());
+        }
+    }
+
+    /**
+     * Queues files to be removed.
+     *
+     * @param filePaths the remote files
+     */
+    public void submit(final Collection<String> filePaths) {
+        if (!filePaths.isEmpty()) {
+            queue.addAll(filePaths);
+            requestDrain();
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    private void requestDrain() {
+        if (drainPending.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        drainPending.set(false);
+        final List<String> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, Math.max(1, batchSize)) > 0) {
+            final Instant startTime = Instant.now();
+            final List<String> notRemoved = remove(batch);
+            numFilesDeleted.increment(batch.size() - notRemoved.size());
+            timeMsLastBatch.set(Duration.between(startTime, Instant.now()).toMillis());
+            retryLater(notRemoved);
+            if (!mapFilePathToFailedAttempts.isEmpty()) {
+                batch.removeAll(notRemoved);
+                batch.forEach(mapFilePathToFailedAttempts::remove);
+            }
+            batch.clear();
+        }
+    }
+
+    private List<String> remove(final List<String> batch) {
+        if (GENERATION_BACKEND_EXEC.equalsIgnoreCase(generationBackend)) {
+            return sftpExecService.rmAll(batch); // falls back to SFTP for itself
+        }
+        return sftpService.rmAll(batch);
+    }
+
+    private void retryLater(final List<String> notRemoved) {
+        final List<String> retries = new ArrayList<>(notRemoved.size());
+        for (final String filePath : notRemoved) {
+            final int attempts = mapFilePathToFailedAttempts.getOrDefault(filePath, 0) + 1;
+            if (attempts < maxAttempts) {
+                mapFilePathToFailedAttempts.put(filePath, attempts);
+                retries.add(filePath);
+            } else {
+                mapFilePathToFailedAttempts.remove(filePath);
+                LOG.error("Expired file '{}' not removed after {} attempts", filePath, attempts);
+                numFilesNotDeleted.increment();
+            }
+        }
+        if (!retries.isEmpty()) {
+            LOG.warn("{} expired files not removed, retrying in {} ms", retries.size(), retryDelayMs);
+            executor.schedule(() -> submit(retries), retryDelayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+}
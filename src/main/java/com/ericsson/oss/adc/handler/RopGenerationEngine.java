@@ -0,0 +1,216 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.handler;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ericsson.oss.adc.enums.FileType;
+import com.ericsson.oss.adc.services.LinkSpec;
+import com.ericsson.oss.adc.services.SftpService;
+
+/**
+ * Creates the symlinks of a ROP in parallel.
+ * <p>
+ * The symlinks are planned by the caller as {@link SymlinkTask}s, split into work units of one
+ * {@link FileType} and a range of nodes, and the units run on a bounded pool of workers. Each unit
+ * is created in one batch by {@link SftpService#linkAll} on a channel of its own from the SFTP
+ * channel pool.
+ * <p>
+ * The results are left on the tasks for the caller to apply on its own thread, so the maps of the
+ * caller are never touched by the workers.
+ * <p>
+ * Once a symlink fails the workers start no further units of the run, as the SFTP server is most
+ * likely gone; the tasks not attempted are left without a result.
+ */
+public class RopGenerationEngine implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RopGenerationEngine.class);
+
+    private final SftpService sftpService;
+
+    private final int nodesPerUnit;
+
+    // null when the units run on the calling thread
+    private final ExecutorService executor;
+
+    /**
+     * A symlink to create.
+     */
+    public static final class SymlinkTask implements LinkSpec {
+
+        private final String sourceFile;
+
+        private final String linkedFile;
+
+        private final FileType fileType;
+
+        private final String previousFilePath;
+
+        private SymlinkResult result;
+
+        /**
+         * @param sourceFile the file in the bin directory
+         * @param linkedFile the symlink to create
+         * @param fileType the type of the file
+         * @param previousFilePath the symlink of the previous ROP the new one replaces, null if none
+         */
+        public SymlinkTask(final String sourceFile, final String linkedFile, final FileType fileType, final String previousFilePath) {
+            this.sourceFile = sourceFile;
+            this.linkedFile = linkedFile;
+            this.fileType = fileType;
+            this.previousFilePath = previousFilePath;
+        }
+
+        @Override
+        public String getSourceFile() {
+            return sourceFile;
+        }
+
+        @Override
+        public String getLinkedFile() {
+            return linkedFile;
+        }
+
+        public FileType getFileType() {
+            return fileType;
+        }
+
+        public String getPreviousFilePath() {
+            return previousFilePath;
+        }
+
+        /**
+         * Gets the result of the symlink, read by the caller once {@link RopGenerationEngine#run} returns.
+         *
+         * @return the result, or null if the symlink was not attempted
+         */
+        public SymlinkResult getResult() {
+            return result;
+        }
+
+        void setResult(final SymlinkResult result) {
+            this.result = result;
+        }
+    }
+
+    /**
+     * Creates an engine.
+     *
+     * @param sftpService the service creating the symlinks
+     * @param workers the number of symlinks created at the same time, the units run on the calling thread
+     *                when one or less
+     * @param nodesPerUnit the number of symlinks of a work unit
+     */
+    public RopGenerationEngine(final SftpService sftpService, final int workers, final int nodesPerUnit) {
+        this.sftpService = sftpService;
+        this.nodesPerUnit = Math.max(1, nodesPerUnit);
+        if (workers > 1) {
+            final AtomicInteger threadCount = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(workers, runnable -> {
+                final Thread thread = new Thread(runnable, "rop-generation-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.executor = null;
+        }
+    }
+
+    /**
+     * Creates the symlinks of the tasks and waits for all of them.
+     *
+     * @param tasks the symlinks to create
+     * @param permissions the permissions of the directories created for the symlinks
+     * @return true if every symlink was created or already existed
+     */
+    public boolean run(final List<SymlinkTask> tasks, final String permissions) {
+        final List<List<SymlinkTask>> units = split(tasks, nodesPerUnit);
+        final AtomicBoolean failed = new AtomicBoolean();
+        if (executor == null || units.size() <= 1) {
+            units.forEach(unit -> runUnit(unit, permissions, failed));
+            return !failed.get();
+        }
+        final List<Future<?>> futures = new ArrayList<>(units.size());
+        units.forEach(unit -> futures.add(executor.submit(() -> runUnit(unit, permissions, failed))));
+        for (final Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (final ExecutionException exception) {
+                LOG.error("GENERATION: Error creating symlinks", exception.getCause());
+                failed.set(true);
+            } catch (final InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                futures.forEach(pending -> pending.cancel(true));
+                failed.set(true);
+                break;
+            }
+        }
+        return !failed.get();
+    }
+
+    /**
+     * Splits tasks into work units of one file type and at most a given number of tasks, keeping their order.
+     *
+     * @param tasks the tasks
+     * @param nodesPerUnit the maximum number of tasks of a unit
+     * @return the units
+     */
+    static List<List<SymlinkTask>> split(final List<SymlinkTask> tasks, final int nodesPerUnit) {
+        final Map<FileType, List<SymlinkTask>> tasksByFileType = new LinkedHashMap<>();
+        tasks.forEach(task -> tasksByFileType.computeIfAbsent(task.getFileType(), fileType -> new ArrayList<>()).add(task));
+        final List<List<SymlinkTask>> units = new ArrayList<>();
+        for (final List<SymlinkTask> fileTypeTasks : tasksByFileType.values()) {
+            for (int from = 0; from < fileTypeTasks.size(); from += nodesPerUnit) {
+                units.add(fileTypeTasks.subList(from, Math.min(from + nodesPerUnit, fileTypeTasks.size())));
+            }
+        }
+        return units;
+    }
+
+    private void runUnit(final List<SymlinkTask> unit, final String permissions, final AtomicBoolean failed) {
+        if (failed.get() || Thread.currentThread().isInterrupted()) {
+            return;
+        }
+        final List<SymlinkResult> results = sftpService.linkAll(unit, permissions);
+        for (int i = 0; i < unit.size(); i++) {
+            unit.get(i).result = results.get(i);
+            if (results.get(i) == SymlinkResult.FAILED) {
+                failed.set(true);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.handler;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The symlinks created in the current ROP, so that a ROP generated again in the same ROP period, as in
+ * manual mode, does not check each symlink on the SFTP server.
+ * <p>
+ * Only a 64-bit hash of each path is kept, in an open addressing table which is emptied when the ROP
+ * changes. Not thread safe, used by the thread generating the ROPs.
+ */
+class SymlinkLedger {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final long EMPTY = 0;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private LocalDateTime ropStartTime;
+
+    private long[] table = new long[INITIAL_CAPACITY];
+
+    private int size;
+
+    /**
+     * Starts recording the symlinks of a ROP, forgetting those of any other ROP.
+     *
+     * @param ropStartTime the start time of the ROP
+     */
+    void startRop(final LocalDateTime ropStartTime) {
+        if (!Objects.equals(this.ropStartTime, ropStartTime)) {
+            clear();
+            this.ropStartTime = ropStartTime;
+        }
+    }
+
+    /**
+     * Forgets every symlink, for example when the SFTP server may have changed.
+     */
+    void clear() {
+        if (size > 0) {
+            table = new long[INITIAL_CAPACITY];
+            size = 0;
+        }
+        ropStartTime = null;
+    }
+
+    /**
+     * Records that a symlink exists on the SFTP server.
+     *
+     * @param path the path of the symlink
+     */
+    void add(final String path) {
+        if ((size + 1) * 2 > table.length) {
+            resize();
+        }
+        if (insert(table, hash(path))) {
+            size++;
+        }
+    }
+
+    /**
+     * Checks if a symlink was recorded in the current ROP.
+     *
+     * @param path the path of the symlink
+     * @return true if recorded
+     */
+    boolean contains(final String path) {
+        final long hash = hash(path);
+        final int mask = table.length - 1;
+        for (int slot = mix(hash) & mask; table[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (table[slot] == hash) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void resize() {
+        final long[] resized = new long[table.length * 2];
+        Arrays.stream(table).filter(hash -> hash != EMPTY).forEach(hash -> insert(resized, hash));
+        table = resized;
+    }
+
+    private static boolean insert(final long[] table, final long hash) {
+        final int mask = table.length - 1;
+        int slot = mix(hash) & mask;
+        while (table[slot] != EMPTY) {
+            if (table[slot] == hash) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = hash;
+        return true;
+    }
+
+    private static int mix(final long hash) {
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * FNV-1a over the UTF-8 bytes of the path, never {@value #EMPTY}.
+     */
+    static long hash(final String path) {
+        long hash = FNV_OFFSET_BASIS;
+        for (final byte b : path.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return hash == EMPTY ? 1 : hash;
+    }
+}
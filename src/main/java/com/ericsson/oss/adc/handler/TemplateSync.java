@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.handler;
+
+import static com.ericsson.oss.adc.utils.Utilities.UNIX_PATH_SEPARATOR;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ericsson.oss.adc.services.SftpService;
+
+/**
+ * Brings the template files of the remote bin directory up to date with the local ones, uploading only
+ * what changed since the last start.
+ * <p>
+ * The contents are stored once each under their SHA-256 in the objects directory of the bin directory,
+ * and every template in the bin directory is a symlink to its content. A manifest in the bin directory
+ * records the content of each template, so a template is linked again only when its content changed,
+ * and a content is uploaded only when it is not in the objects directory yet. A content is uploaded under
+ * a temporary name and renamed once complete, so the objects directory never holds a partial content under
+ * its hash. A template is linked again by renaming a new link over it, so it is never missing. Uploads
+ * and links run in parallel on the channels of the SFTP channel pool.
+ */
+class TemplateSync {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TemplateSync.class);
+
+    static final String OBJECTS_DIRECTORY = ".objects";
+
+    static final String MANIFEST = ".manifest";
+
+    static final String PARTIAL_SUFFIX = ".part";
+
+    private final SftpService sftpService;
+
+    private final int workers;
+
+    /**
+     * @param sftpService the service transferring the files
+     * @param workers the number of transfers at the same time
+     */
+    TemplateSync(final SftpService sftpService, final int workers) {
+        this.sftpService = sftpService;
+        this.workers = Math.max(1, workers);
+    }
+
+    /**
+     * Synchronises the templates.
+     *
+     * @param mapRelativePathToLocalFile the local templates, keyed by their path relative to the bin directory
+     * @param binDirectory the remote bin directory, ending with a separator
+     * @param permissions the permissions of the files and directories created
+     * @return true if every template is up to date on the SFTP server
+     */
+    boolean sync(final Map<String, File> mapRelativePathToLocalFile, final String binDirectory, final String permissions) {
+        final Instant startTime = Instant.now();
+        final String objectsDirectory = binDirectory + OBJECTS_DIRECTORY + UNIX_PATH_SEPARATOR;
+        final ExecutorService executor = Executors.newFixedThreadPool(workers, runnable -> {
+            final Thread thread = new Thread(runnable, "template-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            final Map<String, String> mapRelativePathToHash = new TreeMap<>();
+            final List<Callable<Boolean>> hashing = new ArrayList<>();
+            mapRelativePathToLocalFile.forEach((relativePath, file) -> hashing.add(() -> {
+                final String hash = hash(file);
+                synchronized (mapRelativePathToHash) {
+                    mapRelativePathToHash.put(relativePath, hash);
+                }
+                return true;
+            }));
+            if (!runAll(executor, hashing)) {
+                return false;
+            }
+
+            final Map<String, String> manifest = parseManifest(sftpService.download(binDirectory + MANIFEST));
+            final Set<String> existingObjects = new HashSet<>();
+            sftpService.listRemoteFilePaths(objectsDirectory).forEach(path -> existingObjects.add(path.substring(path.lastIndexOf('/') + 1)));
+
+            // one upload for each content not there yet, whatever the number of templates holding it
+            final Map<String, File> mapHashToLocalFile = new LinkedHashMap<>();
+            mapRelativePathToHash.forEach((relativePath, hash) -> {
+                if (!existingObjects.contains(hash)) {
+                    mapHashToLocalFile.putIfAbsent(hash, mapRelativePathToLocalFile.get(relativePath));
+                }
+            });
+            final List<Callable<Boolean>> uploads = new ArrayList<>();
+            // an object only gets its name once complete, so an upload cut short is never taken for the content
+            mapHashToLocalFile.forEach((hash, file) -> uploads.add(() -> {
+                final String partialPath = objectsDirectory + hash + PARTIAL_SUFFIX;
+                if (sftpService.upload(file.getAbsolutePath(), partialPath, permissions)
+                        && sftpService.rename(partialPath, objectsDirectory + hash)) {
+                    return true;
+                }
+                sftpService.rm(partialPath);
+                return false;
+            }));
+            if (!runAll(executor, uploads)) {
+                return false;
+            }
+
+            final boolean posixRename = sftpService.isPosixRenameSupported();
+            final List<Callable<Boolean>> links = new ArrayList<>();
+            mapRelativePathToHash.forEach((relativePath, hash) -> {
+                if (!hash.equals(manifest.get(relativePath))) {
+                    links.add(() -> relink(objectsDirectory + hash, binDirectory + relativePath, permissions, posixRename));
+                }
+            });
+            if (!runAll(executor, links)) {
+                return false;
+            }
+
+            if (!mapRelativePathToHash.equals(manifest)
+                    && !sftpService.upload(formatManifest(mapRelativePathToHash), binDirectory + MANIFEST, permissions)) {
+                return false;
+            }
+            LOG.info("Synchronised {} templates in {} ms: {} contents uploaded, {} templates linked, {} unchanged",
+                    mapRelativePathToHash.size(), Duration.between(startTime, Instant.now()).toMillis(), uploads.size(),
+                    links.size(), mapRelativePathToHash.size() - links.size());
+            return true;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Points a bin file at an object. The new link is made under a temporary name and renamed over the bin
+     * file, so that the ROP files linked to the bin file never dangle. A server without posix rename cannot
+     * rename over a file, so the old bin file is only removed once the new link exists.
+     */
+    private boolean relink(final String objectPath, final String binFilePath, final String permissions, final boolean posixRename) {
+        final String partialPath = binFilePath + PARTIAL_SUFFIX;
+        // a link left by a sync cut short is made again, it may point at another object
+        if (!sftpService.rm(partialPath) || sftpService.symlink(objectPath, partialPath, permissions) != SymlinkResult.SUCCESS) {
+            return false;
+        }
+        if (posixRename) {
+            if (sftpService.rename(partialPath, binFilePath)) {
+                return true;
+            }
+            sftpService.rm(partialPath);
+            return false;
+        }
+        if (!sftpService.rm(binFilePath)) {
+            sftpService.rm(partialPath);
+            return false;
+        }
+        // the bin file is only missing for this one request, and the next sync links it again if it fails
+        return sftpService.rename(partialPath, binFilePath);
+    }
+
+    private static boolean runAll(final ExecutorService executor, final List<Callable<Boolean>> tasks) {
+        boolean success = true;
+        try {
+            for (final Future<Boolean> future : executor.invokeAll(tasks)) {
+                success &= future.get();
+            }
+        } catch (final ExecutionException exception) {
+            LOG.error("Error synchronising templates", exception.getCause());
+            return false;
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return success;
+    }
+
+    static String hash(final File file) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception); // every JVM has SHA-256
+        }
+        final byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            for (int read = in.read(buffer); read > 0; read = in.read(buffer)) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        final StringBuilder hex = new StringBuilder(64);
+        for (final byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Parses the manifest, a line '&lt;hash&gt; &lt;relative path&gt;' for each template.
+     */
+    static Map<String, String> parseManifest(final byte[] content) {
+        final Map<String, String> manifest = new TreeMap<>();
+        if (content != null) {
+            for (final String line : new String(content, StandardCharsets.UTF_8).split("\n")) {
+                final int separator = line.indexOf(' ');
+                if (separator > 0) {
+                    manifest.put(line.substring(separator + 1), line.substring(0, separator));
+                }
+            }
+        }
+        return manifest;
+    }
+
+    static byte[] formatManifest(final Map<String, String> mapRelativePathToHash) {
+        final StringBuilder manifest = new StringBuilder();
+        mapRelativePathToHash.forEach((relativePath, hash) -> manifest.append(hash).append(' ').append(relativePath).append('\n'));
+        return manifest.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
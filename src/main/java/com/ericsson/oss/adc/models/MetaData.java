@@ -16,7 +16,12 @@
 
 package com.ericsson.oss.adc.models;
 
+import com.ericsson.oss.adc.enums.MetaDataField;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.core.io.SerializedString;
 import lombok.*;
 import org.springframework.lang.Nullable;
 
@@ -39,6 +44,16 @@ public class MetaData {
     @Nullable
     private String fileLocation;
 
+    /**
+     * The UTF-8 encoded JSON '"name":value' fragment of each field, indexed by {@link MetaDataField} ordinal.
+     * Encoded when first needed, or shared from the dictionaries of the store the notification is read from.
+     */
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient SerializableString[] jsonFragments;
+
     public MetaData(FileNotificationDTO fileNotificationDTO,long id){
         this.id = id;
         this.nodeName=fileNotificationDTO.getNodeName();
@@ -51,4 +66,109 @@ public class MetaData {
         this.id = id;
     }
 
+    /**
+     * Creates a view of a stored notification.
+     *
+     * @param jsonFragments the fragments known from the dictionaries of the store, indexed by
+     *                      {@link MetaDataField} ordinal, null for the ones to encode when needed
+     */
+    MetaData(final long id, final String nodeName, final String dataType, final String nodeType, final String fileLocation,
+             final SerializableString[] jsonFragments) {
+        this.id = id;
+        this.nodeName = nodeName;
+        this.dataType = dataType;
+        this.nodeType = nodeType;
+        this.fileLocation = fileLocation;
+        this.jsonFragments = jsonFragments;
+    }
+
+    /**
+     * Encodes the JSON fragments of the fields, so responses can be written without serializing this object.
+     */
+    public void encodeJsonFragments() {
+        final SerializableString[] fragments = new SerializableString[MetaDataField.values().length];
+        for (final MetaDataField field : MetaDataField.values()) {
+            fragments[field.ordinal()] = encodeJsonFragment(field);
+        }
+        jsonFragments = fragments;
+    }
+
+    /**
+     * Gets the JSON fragment of a field, encoding it if it is not encoded yet.
+     *
+     * @param field the field
+     * @return the fragment, or null if the field has no value
+     */
+    public SerializableString getJsonFragment(final MetaDataField field) {
+        SerializableString[] fragments = jsonFragments;
+        if (fragments == null) {
+            fragments = new SerializableString[MetaDataField.values().length];
+            jsonFragments = fragments;
+        }
+        SerializableString fragment = fragments[field.ordinal()];
+        if (fragment == null) {
+            fragment = encodeJsonFragment(field);
+            fragments[field.ordinal()] = fragment;
+        }
+        return fragment;
+    }
+
+    /**
+     * Encodes the JSON fragment of a string value of a field.
+     *
+     * @param field the field
+     * @param value the value
+     * @return the fragment, or null if the value is null
+     */
+    static SerializableString encodeJsonFragment(final MetaDataField field, final String value) {
+        return toJsonFragment(field, quote(value));
+    }
+
+    /**
+     * Extends the JSON fragment of a string value with more characters, for example the fragment of a
+     * directory with the name of a file in it.
+     *
+     * @param fragment the fragment of the start of the value
+     * @param suffix the rest of the value
+     * @return the fragment of the whole value
+     */
+    static SerializableString extendJsonFragment(final SerializableString fragment, final String suffix) {
+        final String start = fragment.getValue();
+        return new SerializedString(start.substring(0, start.length() - 1) + quote(suffix).substring(1));
+    }
+
+    private SerializableString encodeJsonFragment(final MetaDataField field) {
+        final String value;
+        switch (field) {
+            case ID:
+                value = String.valueOf(id);
+                break;
+            case NODE_NAME:
+                value = quote(nodeName);
+                break;
+            case DATA_TYPE:
+                value = quote(dataType);
+                break;
+            case NODE_TYPE:
+                value = quote(nodeType);
+                break;
+            default:
+                value = quote(fileLocation);
+                break;
+        }
+        return toJsonFragment(field, value);
+    }
+
+    private static SerializableString toJsonFragment(final MetaDataField field, final String value) {
+        if (value == null) {
+            return null;
+        }
+        final SerializedString fragment = new SerializedString('"' + field.getFieldName() + "\":" + value);
+        fragment.asUnquotedUTF8(); // encoded now rather than on the first poll
+        return fragment;
+    }
+
+    private static String quote(final String value) {
+        return value == null ? null : '"' + new String(JsonStringEncoder.getInstance().quoteAsString(value)) + '"';
+    }
 }
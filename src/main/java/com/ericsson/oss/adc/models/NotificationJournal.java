@@ -0,0 +1,549 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.models;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only journal of file notifications on disk, so the notifications survive a restart.
+ * <p>
+ * The journal is a directory of segment files, each a fixed number of fixed-width records which is
+ * memory-mapped when the segment is opened. Appending is a copy into the mapping, left to the operating
+ * system to write back, and replaying is a sequential read of the mappings. A record holds the id, the
+ * append time and the UTF-8 bytes of nodeName, dataType, nodeType and fileLocation; the id is written
+ * last and a zero id marks a free record, so a record is either whole or absent after a crash of the
+ * process. Notifications too large for a record are logged and not journaled.
+ * <p>
+ * Ids only grow, so the records are ordered by id and a record is found by binary search. Whole
+ * segments are deleted once their newest notification is older than the retention period, checked
+ * each time a new segment is started.
+ * <p>
+ * Appends are serialized. Readers take no lock: a segment publishes its size through a volatile field
+ * after each append, and the list of segments is replaced as a whole when it changes.
+ */
+public class NotificationJournal implements Closeable {
+
+    public static final int DEFAULT_RECORD_BYTES = 512;
+
+    public static final int DEFAULT_RECORDS_PER_SEGMENT = 65536;
+
+    private static final Logger LOG = LoggerFactory.getLogger(NotificationJournal.class);
+
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    private static final int MAGIC = 0x464c534a; // FLSJ
+
+    private static final int VERSION = 1;
+
+    // magic, version, record bytes and records per segment
+    private static final int FILE_HEADER_BYTES = 16;
+
+    // id (8), append time (8) and the lengths of the four values (4 * 2), -1 for a null value
+    private static final int RECORD_HEADER_BYTES = 24;
+
+    private static final int VALUE_COUNT = 4;
+
+    private final Path directory;
+
+    private final int recordBytes;
+
+    private final int recordsPerSegment;
+
+    private final long retentionMillis;
+
+    private volatile List<Segment> segments = new ArrayList<>();
+
+    private volatile long lastId = Long.MIN_VALUE;
+
+    private long nextSequence;
+
+    /**
+     * Opens the journal in a directory, creating the directory if needed. Existing segments are kept
+     * with the record layout they were written with.
+     *
+     * @param directory the directory of the segment files
+     * @param recordBytes the size of a record of a new segment
+     * @param recordsPerSegment the number of records of a new segment
+     * @param retentionMillis how long the notifications are kept, forever when zero or less
+     * @throws IOException if the directory or a segment cannot be read
+     */
+    public NotificationJournal(final Path directory, final int recordBytes, final int recordsPerSegment,
+                               final long retentionMillis) throws IOException {
+        if (recordBytes <= RECORD_HEADER_BYTES || recordsPerSegment <= 0
+                || FILE_HEADER_BYTES + (long) recordBytes * recordsPerSegment > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid journal segment layout: " + recordsPerSegment
+                    + " records of " + recordBytes + " bytes");
+        }
+        this.directory = directory;
+        this.recordBytes = recordBytes;
+        this.recordsPerSegment = recordsPerSegment;
+        this.retentionMillis = retentionMillis;
+        Files.createDirectories(directory);
+        final List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(paths::add);
+        }
+        // the names are zero padded sequence numbers, so name order is append order
+        paths.sort(null);
+        final List<Segment> opened = new ArrayList<>();
+        for (final Path path : paths) {
+            final Segment segment = Segment.open(path);
+            opened.add(segment);
+            nextSequence = Math.max(nextSequence, segment.sequence + 1);
+            if (segment.size > 0) {
+                lastId = segment.getId(segment.size - 1);
+            }
+        }
+        segments = opened;
+    }
+
+    /**
+     * Appends a notification to the end of the journal.
+     *
+     * @param metaData the notification, its id must be greater than the id of every journaled notification
+     * @param appendMillis when the notification is appended
+     * @return true if the notification is journaled, false if it does not fit a record or cannot be written
+     */
+    public synchronized boolean append(final MetaData metaData, final long appendMillis) {
+        if (metaData.getId() <= lastId) {
+            throw new IllegalArgumentException("Notification id " + metaData.getId()
+                    + " is not greater than the last journaled id " + lastId);
+        }
+        final byte[][] values = {encode(metaData.getNodeName()), encode(metaData.getDataType()),
+                encode(metaData.getNodeType()), encode(metaData.getFileLocation())};
+        int length = RECORD_HEADER_BYTES;
+        for (final byte[] value : values) {
+            length += value == null ? 0 : value.length;
+        }
+        final List<Segment> current = segments;
+        Segment tail = current.isEmpty() ? null : current.get(current.size() - 1);
+        final boolean full = tail == null || tail.size == tail.capacity;
+        if (length > (full ? recordBytes : tail.recordBytes)) {
+            LOG.warn("Notification {} of {} bytes does not fit a journal record, not journaled", metaData.getId(), length);
+            return false;
+        }
+        if (full) {
+            try {
+                tail = Segment.create(directory.resolve(String.format("%019d%s", nextSequence, SEGMENT_SUFFIX)),
+                        nextSequence, recordBytes, recordsPerSegment);
+            } catch (final IOException exception) {
+                LOG.error("Cannot create journal segment {}, notification {} not journaled", nextSequence,
+                        metaData.getId(), exception);
+                return false;
+            }
+            nextSequence++;
+            final List<Segment> grown = new ArrayList<>(current);
+            grown.add(tail);
+            segments = grown;
+            if (retentionMillis > 0) {
+                expireBefore(appendMillis - retentionMillis);
+            }
+        }
+        tail.append(metaData.getId(), appendMillis, values);
+        lastId = metaData.getId();
+        return true;
+    }
+
+    /**
+     * Deletes the segments whose newest notification was appended before a given time. The segment
+     * being appended to is never deleted.
+     *
+     * @param appendMillis the append time to keep notifications from
+     * @return the number of deleted notifications
+     */
+    public synchronized int expireBefore(final long appendMillis) {
+        final List<Segment> current = segments;
+        int expired = 0;
+        int deleted = 0;
+        while (expired < current.size() - 1) {
+            final Segment segment = current.get(expired);
+            if (segment.size > 0 && segment.getAppendMillis(segment.size - 1) >= appendMillis) {
+                break;
+            }
+            segment.close();
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (final IOException exception) {
+                LOG.warn("Cannot delete expired journal segment {}", segment.path, exception);
+            }
+            deleted += segment.size;
+            expired++;
+        }
+        if (expired > 0) {
+            segments = new ArrayList<>(current.subList(expired, current.size()));
+            LOG.info("Expired {} journal segments holding {} notifications", expired, deleted);
+        }
+        return deleted;
+    }
+
+    /**
+     * Passes the journaled notifications appended at or after a given time to a consumer, in id order.
+     *
+     * @param fromMillis the append time to replay from
+     * @param consumer takes each notification with its append time
+     * @return the number of replayed notifications
+     */
+    public int replay(final long fromMillis, final ObjLongConsumer<MetaData> consumer) {
+        int replayed = 0;
+        for (final Segment segment : segments) {
+            final int size = segment.size;
+            if (size == 0 || segment.getAppendMillis(size - 1) < fromMillis) {
+                continue;
+            }
+            final ByteBuffer buffer = segment.buffer.duplicate();
+            for (int position = 0; position < size; position++) {
+                final long appendMillis = segment.getAppendMillis(position);
+                if (appendMillis >= fromMillis) {
+                    consumer.accept(segment.read(buffer, position), appendMillis);
+                    replayed++;
+                }
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Iterates over the journaled notifications with an id greater than one id and up to another which
+     * pass a filter, in id order. Notifications journaled after the iterator is created are not returned.
+     *
+     * @param id the id to start after
+     * @param upTo the id of the newest notification to return
+     * @param filter decides whether a notification matches, null if all do
+     * @return the iterator over the matching notifications
+     */
+    public Iterator<MetaData> iterateFilesBetween(final long id, final long upTo, final Predicate<MetaData> filter) {
+        // the last id is published after its record, so every record up to it is readable
+        final long lastJournaledId = lastId;
+        return new JournalIterator(segments, id, Math.min(upTo, lastJournaledId), filter);
+    }
+
+    /**
+     * Gets the id of the newest journaled notification.
+     *
+     * @return the newest id, or {@link Long#MIN_VALUE} if the journal is empty
+     */
+    public long getLastId() {
+        return lastId;
+    }
+
+    /**
+     * Gets the id of the oldest journaled notification.
+     *
+     * @return the oldest id, or {@link Long#MIN_VALUE} if the journal is empty
+     */
+    public long getFirstId() {
+        for (final Segment segment : segments) {
+            if (segment.size > 0) {
+                return segment.getId(0);
+            }
+        }
+        return Long.MIN_VALUE;
+    }
+
+    public long size() {
+        long size = 0;
+        for (final Segment segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Writes the journal back to disk and closes the segment files.
+     */
+    @Override
+    public synchronized void close() {
+        for (final Segment segment : segments) {
+            segment.buffer.force();
+            segment.close();
+        }
+    }
+
+    private static byte[] encode(final String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * One memory-mapped segment file. The mapping stays valid after the file is closed or deleted, so
+     * readers holding an expired segment can finish with it.
+     */
+    private static final class Segment {
+
+        private final Path path;
+
+        private final long sequence;
+
+        private final FileChannel channel;
+
+        private final MappedByteBuffer buffer;
+
+        private final int recordBytes;
+
+        private final int capacity;
+
+        // number of written records, only grown by the writer after the record is complete
+        private volatile int size;
+
+        private Segment(final Path path, final long sequence, final FileChannel channel, final MappedByteBuffer buffer,
+                        final int recordBytes, final int capacity) {
+            this.path = path;
+            this.sequence = sequence;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.recordBytes = recordBytes;
+            this.capacity = capacity;
+        }
+
+        private static Segment create(final Path path, final long sequence, final int recordBytes, final int capacity)
+                throws IOException {
+            final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            // mapping past the end grows the file, zero filled, so every record starts out free
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    FILE_HEADER_BYTES + (long) recordBytes * capacity);
+            buffer.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, recordBytes).putInt(12, capacity);
+            return new Segment(path, sequence, channel, buffer, recordBytes, capacity);
+        }
+
+        private static Segment open(final Path path) throws IOException {
+            final String name = path.getFileName().toString();
+            final long sequence;
+            try {
+                sequence = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+            } catch (final NumberFormatException exception) {
+                throw new IOException("Unexpected journal segment name: " + path, exception);
+            }
+            final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            final MappedByteBuffer buffer;
+            try {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                if (buffer.capacity() < FILE_HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                    throw new IOException("Not a journal segment: " + path);
+                }
+                final int recordBytes = buffer.getInt(8);
+                final int capacity = buffer.getInt(12);
+                if (recordBytes <= RECORD_HEADER_BYTES || capacity <= 0
+                        || FILE_HEADER_BYTES + (long) recordBytes * capacity > buffer.capacity()) {
+                    throw new IOException("Truncated journal segment: " + path);
+                }
+                final Segment segment = new Segment(path, sequence, channel, buffer, recordBytes, capacity);
+                segment.size = segment.findSize();
+                return segment;
+            } catch (final IOException exception) {
+                channel.close();
+                throw exception;
+            }
+        }
+
+        private int findSize() {
+            // records are written in order, so the written ones are a prefix of non zero ids
+            int low = 0;
+            int high = capacity;
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (getId(middle) != 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private void append(final long id, final long appendMillis, final byte[][] values) {
+            final int offset = offsetOf(size);
+            buffer.putLong(offset + 8, appendMillis);
+            final ByteBuffer record = buffer.duplicate();
+            record.position(offset + RECORD_HEADER_BYTES);
+            for (int index = 0; index < VALUE_COUNT; index++) {
+                final byte[] value = values[index];
+                buffer.putShort(offset + 16 + 2 * index, value == null ? -1 : (short) value.length);
+                if (value != null) {
+                    record.put(value);
+                }
+            }
+            // the id last, it marks the record as written
+            buffer.putLong(offset, id);
+            size++;
+        }
+
+        private long getId(final int position) {
+            return buffer.getLong(offsetOf(position));
+        }
+
+        private long getAppendMillis(final int position) {
+            return buffer.getLong(offsetOf(position) + 8);
+        }
+
+        /**
+         * Reads a record through a duplicate of the mapping owned by the caller.
+         */
+        private MetaData read(final ByteBuffer view, final int position) {
+            final int offset = offsetOf(position);
+            view.position(offset + RECORD_HEADER_BYTES);
+            final String[] values = new String[VALUE_COUNT];
+            for (int index = 0; index < VALUE_COUNT; index++) {
+                final int length = view.getShort(offset + 16 + 2 * index);
+                if (length >= 0) {
+                    final byte[] bytes = new byte[length];
+                    view.get(bytes);
+                    values[index] = new String(bytes, StandardCharsets.UTF_8);
+                }
+            }
+            return new MetaData(view.getLong(offset), values[0], values[1], values[2], values[3], null);
+        }
+
+        /**
+         * Gets the position of the first record with an id greater than the given id.
+         */
+        private int indexAfter(final long id, final int segmentSize) {
+            int low = 0;
+            int high = segmentSize;
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (getId(middle) <= id) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private int offsetOf(final int position) {
+            return FILE_HEADER_BYTES + position * recordBytes;
+        }
+
+        private void close() {
+            try {
+                channel.close();
+            } catch (final IOException exception) {
+                LOG.warn("Cannot close journal segment {}", path, exception);
+            }
+        }
+    }
+
+    /**
+     * Walks the records of a list of segments, reading each segment through its own duplicate of the mapping.
+     */
+    private static final class JournalIterator implements Iterator<MetaData> {
+
+        private final List<Segment> segments;
+
+        private final long upTo;
+
+        private final Predicate<MetaData> filter;
+
+        private int segmentIndex;
+
+        private int position;
+
+        private int segmentSize;
+
+        private ByteBuffer view;
+
+        private MetaData next;
+
+        private boolean done;
+
+        private JournalIterator(final List<Segment> segments, final long id, final long upTo,
+                                final Predicate<MetaData> filter) {
+            this.segments = segments;
+            this.upTo = upTo;
+            this.filter = filter;
+            // skip the segments older than the id, their newest record is at most the id
+            while (segmentIndex < segments.size() && (segments.get(segmentIndex).size == 0
+                    || segments.get(segmentIndex).getId(segments.get(segmentIndex).size - 1) <= id)) {
+                segmentIndex++;
+            }
+            if (segmentIndex < segments.size()) {
+                openSegment();
+                position = segments.get(segmentIndex).indexAfter(id, segmentSize);
+            }
+            done = upTo <= id;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !done) {
+                if (segmentIndex >= segments.size()) {
+                    done = true;
+                } else if (position >= segmentSize) {
+                    segmentIndex++;
+                    position = 0;
+                    if (segmentIndex < segments.size()) {
+                        openSegment();
+                    }
+                } else {
+                    final Segment segment = segments.get(segmentIndex);
+                    if (segment.getId(position) > upTo) {
+                        done = true;
+                    } else {
+                        final MetaData metaData = segment.read(view, position);
+                        if (filter == null || filter.test(metaData)) {
+                            next = metaData;
+                        }
+                        position++;
+                    }
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public MetaData next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final MetaData metaData = next;
+            next = null;
+            return metaData;
+        }
+
+        private void openSegment() {
+            final Segment segment = segments.get(segmentIndex);
+            segmentSize = segment.size;
+            view = segment.buffer.duplicate();
+        }
+    }
+}
@@ -0,0 +1,299 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.models;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import com.ericsson.oss.adc.enums.MetaDataField;
+import com.fasterxml.jackson.core.SerializableString;
+
+/**
+ * Fixed capacity block of notifications held by a {@link NotificationStore}, ordered by id.
+ * <p>
+ * Notifications are stored by column rather than as {@link MetaData} objects: ids as longs,
+ * dataType and nodeType as one byte dictionary codes, nodeName and the directory of the file location
+ * as dictionary codes, and only the file name as bytes of its own. {@link MetaData} views are built
+ * when a notification is read, sharing the strings and JSON fragments of the dictionaries. The file
+ * location fragment extends the escaped one of its directory with the file name.
+ * <p>
+ * Each segment keeps a bitmap of row positions per dataType and per nodeType dictionary code, so a
+ * filter is resolved once to a set of codes and then applied as a bitmap intersection.
+ * <p>
+ * A segment is written by a single writer and read concurrently. Readers only look at the positions
+ * below the size published to them by the store, which are never written again. The bitmaps change
+ * with every append, so they are only read once the segment is full; until then readers scan the
+ * per row codes instead.
+ */
+class NotificationSegment {
+
+    // the largest dataType or nodeType code held in a byte, whose all ones value stands for none
+    static final int MAX_TYPE_CODE = 0xFE;
+
+    private static final byte NO_TYPE = (byte) 0xFF;
+
+    // id (8), dataType and nodeType codes (1 + 1), nodeName and directory codes (4 + 4), file name
+    // reference (4) and append time (4) slots, plus the header of the file name byte array (16)
+    private static final long ROW_BYTES = 26 + 16;
+
+    private final long[] ids;
+
+    private final byte[] dataTypeCodes;
+
+    private final byte[] nodeTypeCodes;
+
+    private final int[] nodeNameCodes;
+
+    private final int[] directoryCodes;
+
+    private final byte[][] fileNames;
+
+    // seconds after the append time of the first notification
+    private final int[] appendSeconds;
+
+    private long firstAppendMillis;
+
+    private final ValueDictionary dataTypes;
+
+    private final ValueDictionary nodeTypes;
+
+    private final ValueDictionary nodeNames;
+
+    private final ValueDictionary directories;
+
+    private final List<BitSet> dataTypeIndex = new ArrayList<>();
+
+    private final List<BitSet> nodeTypeIndex = new ArrayList<>();
+
+    // only read by the writer, readers use the size published by the store
+    private int size;
+
+    /**
+     * Creates an empty segment.
+     *
+     * @param capacity the number of notifications the segment holds
+     * @param dataTypes the dictionary of the dataType codes
+     * @param nodeTypes the dictionary of the nodeType codes
+     * @param nodeNames the dictionary of the nodeNames, shared by the segments of the store
+     * @param directories the dictionary of the file location directories, shared by the segments of the store
+     */
+    NotificationSegment(final int capacity, final ValueDictionary dataTypes, final ValueDictionary nodeTypes,
+                        final ValueDictionary nodeNames, final ValueDictionary directories) {
+        ids = new long[capacity];
+        dataTypeCodes = new byte[capacity];
+        nodeTypeCodes = new byte[capacity];
+        nodeNameCodes = new int[capacity];
+        directoryCodes = new int[capacity];
+        fileNames = new byte[capacity][];
+        appendSeconds = new int[capacity];
+        this.dataTypes = dataTypes;
+        this.nodeTypes = nodeTypes;
+        this.nodeNames = nodeNames;
+        this.directories = directories;
+    }
+
+    /**
+     * Appends a notification.
+     *
+     * @param metaData the notification
+     * @param dataTypeCode the dictionary code of its dataType, negative if it has none
+     * @param nodeTypeCode the dictionary code of its nodeType, negative if it has none
+     * @param appendMillis when the notification is appended
+     * @throws IllegalArgumentException if a code is above {@link #MAX_TYPE_CODE}
+     */
+    void append(final MetaData metaData, final int dataTypeCode, final int nodeTypeCode, final long appendMillis) {
+        if (dataTypeCode > MAX_TYPE_CODE || nodeTypeCode > MAX_TYPE_CODE) {
+            throw new IllegalArgumentException("More than " + (MAX_TYPE_CODE + 1) + " distinct dataType or nodeType values");
+        }
+        if (size == 0) {
+            firstAppendMillis = appendMillis;
+        }
+        appendSeconds[size] = (int) Math.max(0, (appendMillis - firstAppendMillis) / 1000);
+        ids[size] = metaData.getId();
+        dataTypeCodes[size] = dataTypeCode < 0 ? NO_TYPE : (byte) dataTypeCode;
+        nodeTypeCodes[size] = nodeTypeCode < 0 ? NO_TYPE : (byte) nodeTypeCode;
+        nodeNameCodes[size] = metaData.getNodeName() == null ? -1 : nodeNames.encode(metaData.getNodeName());
+        final String fileLocation = metaData.getFileLocation();
+        if (fileLocation == null) {
+            directoryCodes[size] = -1;
+        } else {
+            final int fileNameStart = fileLocation.lastIndexOf('/') + 1;
+            directoryCodes[size] = directories.encode(fileLocation.substring(0, fileNameStart));
+            fileNames[size] = fileLocation.substring(fileNameStart).getBytes(StandardCharsets.UTF_8);
+        }
+        index(dataTypeIndex, dataTypeCode);
+        index(nodeTypeIndex, nodeTypeCode);
+        size++;
+    }
+
+    /**
+     * Selects the positions, in the given range, of the notifications whose dataType and nodeType
+     * codes are in the given sets. A notification without a dataType or nodeType is never selected.
+     *
+     * @param fromPosition the first position to consider
+     * @param toPosition the position after the last one to consider, at most the published size
+     * @param dataTypeCodeSet the matching dataType codes
+     * @param nodeTypeCodeSet the matching nodeType codes
+     * @return the selected positions
+     */
+    BitSet select(final int fromPosition, final int toPosition, final BitSet dataTypeCodeSet, final BitSet nodeTypeCodeSet) {
+        if (toPosition < capacity()) {
+            return scan(fromPosition, toPosition, dataTypeCodeSet, nodeTypeCodeSet);
+        }
+        final BitSet selected = union(dataTypeIndex, dataTypeCodeSet);
+        selected.and(union(nodeTypeIndex, nodeTypeCodeSet));
+        selected.clear(0, fromPosition);
+        return selected;
+    }
+
+    /**
+     * Builds the view of a notification.
+     *
+     * @param position the position of the notification
+     * @return the notification
+     */
+    MetaData get(final int position) {
+        final int dataTypeCode = typeCode(dataTypeCodes[position]);
+        final int nodeTypeCode = typeCode(nodeTypeCodes[position]);
+        final int nodeNameCode = nodeNameCodes[position];
+        final SerializableString[] jsonFragments = new SerializableString[MetaDataField.values().length];
+        String dataType = null;
+        String nodeType = null;
+        String nodeName = null;
+        String fileLocation = null;
+        if (dataTypeCode >= 0) {
+            dataType = dataTypes.decode(dataTypeCode);
+            jsonFragments[MetaDataField.DATA_TYPE.ordinal()] = dataTypes.getJsonFragment(dataTypeCode);
+        }
+        if (nodeTypeCode >= 0) {
+            nodeType = nodeTypes.decode(nodeTypeCode);
+            jsonFragments[MetaDataField.NODE_TYPE.ordinal()] = nodeTypes.getJsonFragment(nodeTypeCode);
+        }
+        if (nodeNameCode >= 0) {
+            nodeName = nodeNames.decode(nodeNameCode);
+            jsonFragments[MetaDataField.NODE_NAME.ordinal()] = nodeNames.getJsonFragment(nodeNameCode);
+        }
+        final int directoryCode = directoryCodes[position];
+        if (directoryCode >= 0) {
+            final String fileName = new String(fileNames[position], StandardCharsets.UTF_8);
+            fileLocation = directories.decode(directoryCode) + fileName;
+            // the directory is escaped once in its dictionary, only the file name on each read
+            jsonFragments[MetaDataField.FILE_LOCATION.ordinal()] = MetaData.extendJsonFragment(directories.getJsonFragment(directoryCode),
+                    fileName);
+        }
+        // the id fragment is left to be built when written, it needs no escaping
+        return new MetaData(ids[position], nodeName, dataType, nodeType, fileLocation, jsonFragments);
+    }
+
+    long getId(final int position) {
+        return ids[position];
+    }
+
+    /**
+     * Gets when a notification was appended, to the second.
+     *
+     * @param position the position of the notification
+     * @return the append time in milliseconds
+     */
+    long getAppendMillis(final int position) {
+        return firstAppendMillis + appendSeconds[position] * 1000L;
+    }
+
+    /**
+     * Gets the position of the first notification with an id greater than the given id.
+     *
+     * @param id the id to start after
+     * @param toPosition the published size
+     * @return the position, or toPosition if no notification is newer
+     */
+    int indexAfter(final long id, final int toPosition) {
+        if (toPosition == 0 || ids[0] > id) {
+            return 0;
+        }
+        final int found = Arrays.binarySearch(ids, 0, toPosition, id);
+        return found >= 0 ? found + 1 : -(found + 1);
+    }
+
+    /**
+     * Estimates the heap held by the notifications in the given range of positions.
+     *
+     * @param fromPosition the first position
+     * @param toPosition the position after the last one
+     * @return the estimated number of bytes
+     */
+    long estimateBytes(final int fromPosition, final int toPosition) {
+        long bytes = 0;
+        for (int position = fromPosition; position < toPosition; position++) {
+            final byte[] fileName = fileNames[position];
+            // the byte array is padded to 8 bytes, assuming compressed references
+            bytes += ROW_BYTES + (fileName == null ? 0 : (fileName.length + 7) & ~7);
+        }
+        return bytes;
+    }
+
+    private BitSet scan(final int fromPosition, final int toPosition, final BitSet dataTypeCodeSet, final BitSet nodeTypeCodeSet) {
+        final BitSet selected = new BitSet(toPosition);
+        for (int position = fromPosition; position < toPosition; position++) {
+            if (isIn(dataTypeCodes[position], dataTypeCodeSet) && isIn(nodeTypeCodes[position], nodeTypeCodeSet)) {
+                selected.set(position);
+            }
+        }
+        return selected;
+    }
+
+    private static boolean isIn(final byte code, final BitSet codeSet) {
+        return code != NO_TYPE && codeSet.get(typeCode(code));
+    }
+
+    private static int typeCode(final byte code) {
+        return code == NO_TYPE ? -1 : code & 0xFF;
+    }
+
+    private void index(final List<BitSet> index, final int code) {
+        if (code < 0) {
+            return;
+        }
+        while (index.size() <= code) {
+            index.add(null);
+        }
+        if (index.get(code) == null) {
+            index.set(code, new BitSet(ids.length));
+        }
+        index.get(code).set(size);
+    }
+
+    private static BitSet union(final List<BitSet> index, final BitSet codes) {
+        final BitSet union = new BitSet();
+        for (int code = codes.nextSetBit(0); code >= 0 && code < index.size(); code = codes.nextSetBit(code + 1)) {
+            if (index.get(code) != null) {
+                union.or(index.get(code));
+            }
+        }
+        return union;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return ids.length;
+    }
+}
@@ -0,0 +1,650 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import com.ericsson.oss.adc.enums.DataType;
+import com.ericsson.oss.adc.enums.MetaDataField;
+
+/**
+ * Append-only store of file notifications, split into segments ordered by id.
+ * <p>
+ * Ids are handed out in increasing order, so a query for everything after a given id
+ * is a binary search to the first newer notification followed by a walk over the newer
+ * notifications only, instead of a scan of the whole history. Filtering on dataType and nodeType
+ * goes through per segment bitmap indexes, so its cost follows the size of the result rather than
+ * the size of the history.
+ * <p>
+ * Notifications are stored by column, see {@link NotificationSegment}, and the {@link MetaData} returned
+ * by queries are views built as they are read. dataType, nodeType and nodeName values and the
+ * directories of the file locations are kept in {@link ValueDictionary}s shared by all segments, which
+ * only grow and are not counted in {@link #getRetainedBytes()}. The dataType dictionary is seeded
+ * with {@link DataType}, so the code of a known dataType is its ordinal.
+ * <p>
+ * Old notifications are evicted by id. Whole segments are dropped from the head of the store and a
+ * partly evicted head segment is hidden from queries until all of it is evicted, so eviction costs
+ * follow the number of evicted notifications and not the size of the store.
+ * <p>
+ * A {@link NotificationJournal} can be attached, which then journals every appended notification before
+ * it is stored and serves as the cold tier of the store: paged queries reaching back past the oldest
+ * retained notification are answered from the journal first, so the heap only holds the hot window.
+ * <p>
+ * Writers are serialized, readers take no lock at all: after each change the writer publishes an
+ * immutable {@link State} through a volatile field, and readers work on the state they read.
+ */
+public class NotificationStore {
+
+    public static final int DEFAULT_SEGMENT_CAPACITY = 4096;
+
+    private final int segmentCapacity;
+
+    private final ValueDictionary dataTypes = new ValueDictionary(MetaDataField.DATA_TYPE,
+            Arrays.stream(DataType.values()).map(DataType::name).collect(Collectors.toList()));
+
+    private final ValueDictionary nodeTypes = new ValueDictionary(MetaDataField.NODE_TYPE);
+
+    private final ValueDictionary nodeNames = new ValueDictionary(MetaDataField.NODE_NAME);
+
+    private final ValueDictionary directories = new ValueDictionary(MetaDataField.FILE_LOCATION);
+
+    private volatile State state = new State(new NotificationSegment[0], 0, Long.MIN_VALUE, 0, 0);
+
+    // number of evicted notifications still held by the head segment, only used by the writer
+    private int headEvicted;
+
+    private final List<Runnable> appendListeners = new CopyOnWriteArrayList<>();
+
+    // id of the newest notification per dataType code, replaced as a whole when it grows
+    private volatile long[] lastIdByDataType = new long[0];
+
+    private volatile NotificationJournal journal;
+
+    public NotificationStore() {
+        this(DEFAULT_SEGMENT_CAPACITY);
+    }
+
+    public NotificationStore(final int segmentCapacity) {
+        if (segmentCapacity <= 0) {
+            throw new IllegalArgumentException("Segment capacity must be positive: " + segmentCapacity);
+        }
+        this.segmentCapacity = segmentCapacity;
+    }
+
+    /**
+     * Appends a notification to the end of the store.
+     *
+     * @param metaData the notification, its id must be greater than the id of every stored notification;
+     *                 its fields are copied into the store
+     */
+    public void append(final MetaData metaData) {
+        append(metaData, System.currentTimeMillis());
+    }
+
+    /**
+     * Appends a notification to the end of the store, recording a given append time.
+     *
+     * @param metaData the notification, its id must be greater than the id of every stored notification;
+     *                 its fields are copied into the store
+     * @param appendMillis when the notification is appended
+     * @throws IllegalArgumentException if the id is not greater than the last stored id, or the notification
+     *         would add a dataType or nodeType beyond the {@value NotificationSegment#MAX_TYPE_CODE} codes a
+     *         segment holds; it is then neither stored nor journaled
+     */
+    public synchronized void append(final MetaData metaData, final long appendMillis) {
+        final State current = state;
+        if (current.segments.length > 0 && metaData.getId() <= current.getLastId()) {
+            throw new IllegalArgumentException("Notification id " + metaData.getId()
+                    + " is not greater than the last stored id " + current.getLastId());
+        }
+        // checked before journaling, so that the journal never holds a notification the store cannot take
+        final int dataTypeCode = encode(dataTypes, metaData.getDataType());
+        final int nodeTypeCode = encode(nodeTypes, metaData.getNodeType());
+        if (dataTypeCode > NotificationSegment.MAX_TYPE_CODE || nodeTypeCode > NotificationSegment.MAX_TYPE_CODE) {
+            throw new IllegalArgumentException("More than " + (NotificationSegment.MAX_TYPE_CODE + 1)
+                    + " distinct dataType or nodeType values, notification id " + metaData.getId() + " not stored");
+        }
+        final NotificationJournal currentJournal = journal;
+        if (currentJournal != null) {
+            currentJournal.append(metaData, appendMillis);
+        }
+        NotificationSegment[] segments = current.segments;
+        int tailSize = current.tailSize;
+        if (segments.length == 0 || tailSize == segmentCapacity) {
+            segments = Arrays.copyOf(segments, segments.length + 1);
+            segments[segments.length - 1] = new NotificationSegment(segmentCapacity, dataTypes, nodeTypes, nodeNames, directories);
+            tailSize = 0;
+        }
+        final NotificationSegment tail = segments[segments.length - 1];
+        tail.append(metaData, dataTypeCode, nodeTypeCode, appendMillis);
+        state = new State(segments, tailSize + 1, current.evictedUpTo, current.size + 1,
+                current.retainedBytes + tail.estimateBytes(tailSize, tailSize + 1));
+        // published after the state, so that a reader seeing the id of a dataType also sees its notification
+        if (dataTypeCode >= 0) {
+            long[] lastIds = lastIdByDataType;
+            if (dataTypeCode >= lastIds.length) {
+                final int length = lastIds.length;
+                lastIds = Arrays.copyOf(lastIds, Math.max(dataTypes.size(), dataTypeCode + 1));
+                Arrays.fill(lastIds, length, lastIds.length, Long.MIN_VALUE);
+            }
+            lastIds[dataTypeCode] = metaData.getId();
+            lastIdByDataType = lastIds;
+        }
+        appendListeners.forEach(Runnable::run);
+    }
+
+    /**
+     * Adds a listener which is run by the writer after each append, once the new notification is
+     * visible to readers. Listeners must return quickly.
+     *
+     * @param listener the listener
+     */
+    public void addAppendListener(final Runnable listener) {
+        appendListeners.add(listener);
+    }
+
+    /**
+     * Attaches a journal, which journals the notifications appended from now on and answers the
+     * paged queries for notifications older than the store. Notifications already in the journal are
+     * not stored again, see {@link NotificationJournal#replay} to load them.
+     *
+     * @param journal the journal, null to detach it
+     */
+    public void setJournal(final NotificationJournal journal) {
+        this.journal = journal;
+    }
+
+    public NotificationJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Evicts the notifications with an id up to and including the given id.
+     *
+     * @param id the id of the newest notification to evict
+     * @return the number of evicted notifications
+     */
+    public synchronized int evictUpTo(final long id) {
+        final State current = state;
+        if (id <= current.evictedUpTo) {
+            return 0;
+        }
+        NotificationSegment[] segments = current.segments;
+        int size = current.size;
+        long retainedBytes = current.retainedBytes;
+        int removedSegments = 0;
+        while (removedSegments < segments.length && current.getLastId(removedSegments) <= id) {
+            final int firstRetained = removedSegments == 0 ? headEvicted : 0;
+            final int segmentSize = current.sizeOf(removedSegments);
+            size -= segmentSize - firstRetained;
+            retainedBytes -= segments[removedSegments].estimateBytes(firstRetained, segmentSize);
+            removedSegments++;
+        }
+        if (removedSegments > 0) {
+            segments = Arrays.copyOfRange(segments, removedSegments, segments.length);
+            headEvicted = 0;
+        }
+        if (segments.length > 0) {
+            final int headSize = segments.length == 1 ? current.tailSize : segmentCapacity;
+            final int firstRetained = segments[0].indexAfter(id, headSize);
+            size -= firstRetained - headEvicted;
+            retainedBytes -= segments[0].estimateBytes(headEvicted, firstRetained);
+            headEvicted = firstRetained;
+        }
+        state = new State(segments, segments.length == 0 ? 0 : current.tailSize, id, size, retainedBytes);
+        return current.size - size;
+    }
+
+    /**
+     * Gets the notifications with an id greater than the given id, in id order.
+     *
+     * @param id the id to start after
+     * @return the newer notifications
+     */
+    public List<MetaData> getFilesAfter(final long id) {
+        final State current = state;
+        final long startAfter = Math.max(id, current.evictedUpTo);
+        final List<MetaData> files = new ArrayList<>();
+        for (int segmentIndex = current.findFirstSegmentAfter(startAfter); segmentIndex < current.segments.length; segmentIndex++) {
+            final NotificationSegment segment = current.segments[segmentIndex];
+            final int segmentSize = current.sizeOf(segmentIndex);
+            for (int position = segment.indexAfter(startAfter, segmentSize); position < segmentSize; position++) {
+                files.add(segment.get(position));
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Gets the notifications with an id greater than the given id whose dataType and nodeType are
+     * accepted by the given filters, in id order. Each filter is evaluated once per distinct value
+     * in the dictionaries, not once per notification.
+     *
+     * @param id the id to start after
+     * @param dataTypeFilter decides whether a dataType value matches
+     * @param nodeTypeFilter decides whether a nodeType value matches
+     * @return the newer matching notifications
+     */
+    public List<MetaData> getFilesAfter(final long id, final Predicate<String> dataTypeFilter,
+                                        final Predicate<String> nodeTypeFilter) {
+        return getFilesAfter(id, dataTypeFilter, nodeTypeFilter, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Gets a page of the notifications with an id greater than the given id whose dataType and
+     * nodeType are accepted by the given filters, in id order. Stops walking the store as soon as
+     * the page is full.
+     *
+     * @param id the id to start after
+     * @param dataTypeFilter decides whether a dataType value matches
+     * @param nodeTypeFilter decides whether a nodeType value matches
+     * @param offset the number of matching notifications to skip
+     * @param limit the maximum number of notifications to return
+     * @return the page of newer matching notifications
+     */
+    public List<MetaData> getFilesAfter(final long id, final Predicate<String> dataTypeFilter,
+                                        final Predicate<String> nodeTypeFilter, final int offset, final int limit) {
+        final List<MetaData> files = new ArrayList<>();
+        iterateFilesAfter(id, dataTypeFilter, nodeTypeFilter, offset, limit).forEachRemaining(files::add);
+        return files;
+    }
+
+    /**
+     * Iterates over a page of the notifications with an id greater than the given id whose dataType
+     * and nodeType are accepted by the given filters, in id order.
+     * <p>
+     * The iterator works on the state of the store when it is created: notifications appended
+     * later are not returned, notifications evicted later still are.
+     *
+     * @param id the id to start after
+     * @param dataTypeFilter decides whether a dataType value matches
+     * @param nodeTypeFilter decides whether a nodeType value matches
+     * @param offset the number of matching notifications to skip
+     * @param limit the maximum number of notifications to return
+     * @return the iterator over the page of newer matching notifications
+     */
+    public Iterator<MetaData> iterateFilesAfter(final long id, final Predicate<String> dataTypeFilter,
+                                                final Predicate<String> nodeTypeFilter, final int offset, final int limit) {
+        return iterateFilesBetween(id, Long.MAX_VALUE, dataTypeFilter, nodeTypeFilter, null, offset, limit);
+    }
+
+    /**
+     * Iterates over a page of the notifications with an id greater than one id and up to another
+     * whose dataType and nodeType are accepted by the given filters, and which pass a filter on the
+     * whole notification, in id order.
+     * <p>
+     * The id range and the dataType and nodeType filters are answered from the id order and the
+     * indexes; the notification filter is only evaluated on the notifications they select. The iterator
+     * works on the state of the store when it is created, like {@link #iterateFilesAfter}.
+     * <p>
+     * With a journal attached, the part of the range older than the oldest retained notification is
+     * read from the journal, where every filter is evaluated on each journaled notification.
+     *
+     * @param id the id to start after
+     * @param upTo the id of the newest notification to return
+     * @param dataTypeFilter decides whether a dataType value matches
+     * @param nodeTypeFilter decides whether a nodeType value matches
+     * @param notificationFilter decides whether a selected notification matches, null if all do
+     * @param offset the number of matching notifications to skip
+     * @param limit the maximum number of notifications to return
+     * @return the iterator over the page of matching notifications
+     */
+    public Iterator<MetaData> iterateFilesBetween(final long id, final long upTo, final Predicate<String> dataTypeFilter,
+                                                  final Predicate<String> nodeTypeFilter,
+                                                  final Predicate<MetaData> notificationFilter, final int offset, final int limit) {
+        // the state is read before the dictionaries, so they hold every code the state refers to
+        final State current = state;
+        final BitSet dataTypeCodes = dataTypes.matching(dataTypeFilter);
+        final BitSet nodeTypeCodes = nodeTypes.matching(nodeTypeFilter);
+        final NotificationJournal currentJournal = journal;
+        // an empty store leaves the whole range to the journal
+        final long coldUpTo = current.size == 0 ? upTo : Math.min(upTo, current.getFirstId() - 1);
+        if (currentJournal == null || coldUpTo <= id) {
+            return new SnapshotIterator(current, Math.max(id, current.evictedUpTo), upTo, dataTypeCodes, nodeTypeCodes,
+                    notificationFilter, offset, limit);
+        }
+        final Iterator<MetaData> cold = currentJournal.iterateFilesBetween(id, coldUpTo, metaData ->
+                metaData.getDataType() != null && dataTypeFilter.test(metaData.getDataType())
+                        && metaData.getNodeType() != null && nodeTypeFilter.test(metaData.getNodeType())
+                        && (notificationFilter == null || notificationFilter.test(metaData)));
+        return new TieredIterator(cold, offset, limit, (remainingOffset, remainingLimit) -> new SnapshotIterator(current,
+                Math.max(coldUpTo, current.evictedUpTo), upTo, dataTypeCodes, nodeTypeCodes, notificationFilter,
+                remainingOffset, remainingLimit));
+    }
+
+    /**
+     * Gets the id of the newest notification.
+     *
+     * @return the newest id, or {@link Long#MIN_VALUE} if the store is empty
+     */
+    public long getLastId() {
+        final State current = state;
+        return current.segments.length == 0 ? Long.MIN_VALUE : current.getLastId();
+    }
+
+    /**
+     * Gets the id of the oldest retained notification.
+     *
+     * @return the oldest id, or {@link Long#MIN_VALUE} if the store is empty
+     */
+    public long getFirstId() {
+        final State current = state;
+        return current.size == 0 ? Long.MIN_VALUE : current.getFirstId();
+    }
+
+    /**
+     * Gets the id of the newest notification of a dataType, evicted or not.
+     *
+     * @param dataType the dataType
+     * @return the newest id, or {@link Long#MIN_VALUE} if no notification of the dataType was stored
+     */
+    public long getLastId(final String dataType) {
+        final long[] lastIds = lastIdByDataType;
+        final int code = dataTypes.codeOf(dataType);
+        return code < 0 || code >= lastIds.length ? Long.MIN_VALUE : lastIds[code];
+    }
+
+    /**
+     * Gets the id of the newest notification of any dataType a filter matches, evicted or not. Once
+     * the id is seen, the notification is visible to readers.
+     *
+     * @param dataTypeFilter the filter of dataType
+     * @return the newest id, or {@link Long#MIN_VALUE} if no notification of a matching dataType was stored
+     */
+    public long getLastId(final Predicate<String> dataTypeFilter) {
+        final long[] lastIds = lastIdByDataType;
+        final BitSet codes = dataTypes.matching(dataTypeFilter);
+        long lastId = Long.MIN_VALUE;
+        for (int code = codes.nextSetBit(0); code >= 0 && code < lastIds.length; code = codes.nextSetBit(code + 1)) {
+            lastId = Math.max(lastId, lastIds[code]);
+        }
+        return lastId;
+    }
+
+    /**
+     * Gets when the newest notification with an id up to the given id was appended, to the second.
+     * Ids older than the store give the append time of its oldest notification.
+     *
+     * @param id the id
+     * @return the append time in milliseconds, or {@link Long#MIN_VALUE} if the store is empty
+     */
+    public long getAppendMillis(final long id) {
+        final State current = state;
+        if (current.size == 0) {
+            return Long.MIN_VALUE;
+        }
+        final long retainedId = Math.max(id, current.getFirstId());
+        int segmentIndex = Math.min(current.findFirstSegmentAfter(retainedId), current.segments.length - 1);
+        int position = current.segments[segmentIndex].indexAfter(retainedId, current.sizeOf(segmentIndex)) - 1;
+        if (position < 0) {
+            segmentIndex--;
+            position = current.sizeOf(segmentIndex) - 1;
+        }
+        return current.segments[segmentIndex].getAppendMillis(position);
+    }
+
+    public int size() {
+        return state.size;
+    }
+
+    public boolean isEmpty() {
+        return state.size == 0;
+    }
+
+    /**
+     * Gets a rough estimate of the heap held by the retained notifications.
+     *
+     * @return the estimated number of bytes
+     */
+    public long getRetainedBytes() {
+        return state.retainedBytes;
+    }
+
+    public ValueDictionary getDataTypes() {
+        return dataTypes;
+    }
+
+    public ValueDictionary getNodeTypes() {
+        return nodeTypes;
+    }
+
+    private static int encode(final ValueDictionary dictionary, final String value) {
+        return value == null ? -1 : dictionary.encode(value);
+    }
+
+    /**
+     * What readers see of the store: the segments, how much of the tail segment is written and what
+     * has been evicted. Every segment but the tail is full and no longer written.
+     */
+    private static final class State {
+
+        private final NotificationSegment[] segments;
+
+        private final int tailSize;
+
+        private final long evictedUpTo;
+
+        private final int size;
+
+        private final long retainedBytes;
+
+        private State(final NotificationSegment[] segments, final int tailSize, final long evictedUpTo, final int size,
+                      final long retainedBytes) {
+            this.segments = segments;
+            this.tailSize = tailSize;
+            this.evictedUpTo = evictedUpTo;
+            this.size = size;
+            this.retainedBytes = retainedBytes;
+        }
+
+        private int sizeOf(final int segmentIndex) {
+            return segmentIndex == segments.length - 1 ? tailSize : segments[segmentIndex].capacity();
+        }
+
+        private long getLastId(final int segmentIndex) {
+            return segments[segmentIndex].getId(sizeOf(segmentIndex) - 1);
+        }
+
+        private long getLastId() {
+            return getLastId(segments.length - 1);
+        }
+
+        private long getFirstId() {
+            final int segmentIndex = findFirstSegmentAfter(evictedUpTo);
+            return segments[segmentIndex].getId(segments[segmentIndex].indexAfter(evictedUpTo, sizeOf(segmentIndex)));
+        }
+
+        private int findFirstSegmentAfter(final long id) {
+            // binary search for the first segment holding an id greater than the given id
+            int low = 0;
+            int high = segments.length;
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (getLastId(middle) <= id) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Pages over the notifications of the journal followed by the ones of the store, carrying what is
+     * left of the offset and the limit over to the store once the journal is exhausted.
+     */
+    private static final class TieredIterator implements Iterator<MetaData> {
+
+        private final BiFunction<Integer, Integer, Iterator<MetaData>> hotIterators;
+
+        private final int limit;
+
+        private Iterator<MetaData> cold;
+
+        private Iterator<MetaData> hot;
+
+        private int toSkip;
+
+        private int returned;
+
+        private TieredIterator(final Iterator<MetaData> cold, final int offset, final int limit,
+                               final BiFunction<Integer, Integer, Iterator<MetaData>> hotIterators) {
+            this.cold = cold;
+            this.toSkip = offset;
+            this.limit = limit;
+            this.hotIterators = hotIterators;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (returned >= limit) {
+                return false;
+            }
+            while (cold != null) {
+                if (!cold.hasNext()) {
+                    cold = null;
+                    hot = hotIterators.apply(toSkip, limit - returned);
+                } else if (toSkip > 0) {
+                    cold.next();
+                    toSkip--;
+                } else {
+                    return true;
+                }
+            }
+            return hot.hasNext();
+        }
+
+        @Override
+        public MetaData next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            returned++;
+            return cold != null ? cold.next() : hot.next();
+        }
+    }
+
+    /**
+     * Walks the segments of a state, selecting the matching positions of one segment at a time.
+     */
+    private static final class SnapshotIterator implements Iterator<MetaData> {
+
+        private final State state;
+
+        private final long id;
+
+        private final long upTo;
+
+        private final BitSet dataTypeCodes;
+
+        private final BitSet nodeTypeCodes;
+
+        private final Predicate<MetaData> notificationFilter;
+
+        private final int limit;
+
+        private int toSkip;
+
+        private int returned;
+
+        private int segmentIndex;
+
+        private NotificationSegment segment;
+
+        private BitSet selected;
+
+        private int position = -1;
+
+        private SnapshotIterator(final State state, final long id, final long upTo, final BitSet dataTypeCodes,
+                                 final BitSet nodeTypeCodes, final Predicate<MetaData> notificationFilter, final int offset,
+                                 final int limit) {
+            this.state = state;
+            this.id = id;
+            this.upTo = upTo;
+            this.dataTypeCodes = dataTypeCodes;
+            this.nodeTypeCodes = nodeTypeCodes;
+            this.notificationFilter = notificationFilter;
+            this.segmentIndex = upTo <= id ? state.segments.length : state.findFirstSegmentAfter(id);
+            this.toSkip = offset;
+            this.limit = limit;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (returned >= limit) {
+                return false;
+            }
+            while (position < 0 && segmentIndex < state.segments.length) {
+                selectNextSegment();
+            }
+            return position >= 0;
+        }
+
+        @Override
+        public MetaData next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final MetaData metaData = segment.get(position);
+            position = selected.nextSetBit(position + 1);
+            returned++;
+            return metaData;
+        }
+
+        private void selectNextSegment() {
+            segment = state.segments[segmentIndex];
+            final int segmentSize = state.sizeOf(segmentIndex);
+            selected = segment.select(segment.indexAfter(id, segmentSize), segmentSize, dataTypeCodes, nodeTypeCodes);
+            segmentIndex++;
+            final int end = segment.indexAfter(upTo, segmentSize);
+            if (end < segmentSize) {
+                // the rest of the store is newer than the range
+                selected.clear(end, segmentSize);
+                segmentIndex = state.segments.length;
+            }
+            if (notificationFilter != null) {
+                for (int selectedPosition = selected.nextSetBit(0); selectedPosition >= 0;
+                     selectedPosition = selected.nextSetBit(selectedPosition + 1)) {
+                    if (!notificationFilter.test(segment.get(selectedPosition))) {
+                        selected.clear(selectedPosition);
+                    }
+                }
+            }
+            final int cardinality = selected.cardinality();
+            if (cardinality <= toSkip) {
+                // the whole segment is covered by the offset
+                toSkip -= cardinality;
+                position = -1;
+                return;
+            }
+            position = selected.nextSetBit(0);
+            for (; toSkip > 0; toSkip--) {
+                position = selected.nextSetBit(position + 1);
+            }
+        }
+    }
+}
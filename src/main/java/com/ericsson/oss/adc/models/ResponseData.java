@@ -17,6 +17,7 @@
 package com.ericsson.oss.adc.models;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -29,5 +30,15 @@ import java.util.List;
 @AllArgsConstructor
 public class ResponseData {
 
-    private List<Object> files;
+    private List<MetaData> files;
+
+    /**
+     * Opaque cursor of the next page, only present when more files match the query.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
+
+    public ResponseData(final List<MetaData> files) {
+        this.files = files;
+    }
 }
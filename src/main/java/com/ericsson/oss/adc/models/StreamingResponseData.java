@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.models;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.function.LongFunction;
+
+import com.ericsson.oss.adc.enums.MetaDataField;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Response of a /file/v1/files query which is written straight from a {@link NotificationStore}
+ * iterator, in the same {@code {"files":[...],"nextCursor":"..."}} shape as {@link ResponseData}.
+ * The files are never collected into a list, so memory use does not grow with the page size, and
+ * each file is written from its pre-encoded JSON fragments rather than serialized.
+ */
+@Getter
+@AllArgsConstructor
+@JsonSerialize(using = StreamingResponseDataSerializer.class)
+public class StreamingResponseData {
+
+    /**
+     * The files of the page, followed by at most one more file if there is a next page.
+     */
+    private final Iterator<MetaData> files;
+
+    /**
+     * The fields to write for each file.
+     */
+    private final Set<MetaDataField> fields;
+
+    /**
+     * The maximum number of files to write.
+     */
+    private final int limit;
+
+    /**
+     * Encodes the nextCursor from the id of the last file written.
+     */
+    private final LongFunction<String> cursorEncoder;
+}
@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.models;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+import com.ericsson.oss.adc.enums.MetaDataField;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+/**
+ * Writes a {@link StreamingResponseData} file by file. The start of the response is flushed before
+ * the first file is looked up, so the client gets the first byte without waiting for the page.
+ * <p>
+ * Each file is written as the raw bytes of the JSON fragments of its selected fields, which gives
+ * the same output as serializing the {@link MetaData} but without going through its properties.
+ */
+public class StreamingResponseDataSerializer extends JsonSerializer<StreamingResponseData> {
+
+    private static final SerializableString START_OBJECT = new SerializedString("{");
+
+    @Override
+    public void serialize(final StreamingResponseData responseData, final JsonGenerator gen,
+                          final SerializerProvider serializers) throws IOException {
+        final Iterator<MetaData> files = responseData.getFiles();
+        gen.writeStartObject();
+        gen.writeArrayFieldStart("files");
+        gen.flush();
+        int written = 0;
+        long lastId = 0;
+        while (written < responseData.getLimit() && files.hasNext()) {
+            final MetaData metaData = files.next();
+            writeFile(metaData, responseData.getFields(), gen);
+            lastId = metaData.getId();
+            written++;
+        }
+        gen.writeEndArray();
+        if (written > 0 && files.hasNext()) {
+            gen.writeStringField("nextCursor", responseData.getCursorEncoder().apply(lastId));
+        }
+        gen.writeEndObject();
+    }
+
+    private static void writeFile(final MetaData metaData, final Iterable<MetaDataField> fields, final JsonGenerator gen)
+            throws IOException {
+        // a raw value, so the generator still separates the files with commas
+        gen.writeRawValue(START_OBJECT);
+        boolean first = true;
+        for (final MetaDataField field : fields) {
+            final SerializableString fragment = metaData.getJsonFragment(field);
+            if (fragment != null) {
+                if (!first) {
+                    gen.writeRaw(',');
+                }
+                gen.writeRaw(fragment);
+                first = false;
+            }
+        }
+        gen.writeRaw('}');
+    }
+}
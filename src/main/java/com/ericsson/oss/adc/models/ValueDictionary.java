@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.models;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import com.ericsson.oss.adc.enums.MetaDataField;
+import com.fasterxml.jackson.core.SerializableString;
+
+/**
+ * Append-only dictionary of the distinct values of a notification column.
+ * Each value gets a small integer code, in order of first appearance, which never changes.
+ * <p>
+ * A dictionary of a {@link MetaDataField} also keeps the JSON fragment of each value, so the
+ * notifications sharing a value share its fragment.
+ * <p>
+ * New values are added under a lock, lookups take none: a value is written before the size that
+ * makes it visible, and the size is read before the values.
+ */
+public class ValueDictionary {
+
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+
+    private volatile String[] values = new String[16];
+
+    private volatile int size;
+
+    private final MetaDataField field;
+
+    private volatile SerializableString[] jsonFragments;
+
+    public ValueDictionary() {
+        this((MetaDataField) null);
+    }
+
+    /**
+     * Creates an empty dictionary of a field, keeping the JSON fragment of each value.
+     *
+     * @param field the field, null to keep no fragments
+     */
+    public ValueDictionary(final MetaDataField field) {
+        this.field = field;
+        this.jsonFragments = field == null ? null : new SerializableString[values.length];
+    }
+
+    /**
+     * Creates a dictionary seeded with the given values, so the code of each value is its position.
+     *
+     * @param seedValues the values to seed the dictionary with
+     */
+    public ValueDictionary(final Iterable<String> seedValues) {
+        this(null, seedValues);
+    }
+
+    /**
+     * Creates a dictionary of a field seeded with the given values, so the code of each value is its position.
+     *
+     * @param field the field, null to keep no fragments
+     * @param seedValues the values to seed the dictionary with
+     */
+    public ValueDictionary(final MetaDataField field, final Iterable<String> seedValues) {
+        this(field);
+        seedValues.forEach(this::encode);
+    }
+
+    /**
+     * Gets the code of a value, adding the value to the dictionary if it is new.
+     *
+     * @param value the value
+     * @return the code of the value
+     */
+    public int encode(final String value) {
+        final Integer code = codes.get(value);
+        return code != null ? code : add(value);
+    }
+
+    /**
+     * Gets the code of a value without adding it.
+     *
+     * @param value the value
+     * @return the code of the value, or -1 if it is not in the dictionary
+     */
+    public int codeOf(final String value) {
+        final Integer code = value == null ? null : codes.get(value);
+        return code != null ? code : -1;
+    }
+
+    public String decode(final int code) {
+        return values[code];
+    }
+
+    /**
+     * Gets the JSON fragment of a value, for example '"nodeType":"RadioNode"'.
+     *
+     * @param code the code of the value
+     * @return the fragment, or null if the dictionary keeps no fragments
+     */
+    public SerializableString getJsonFragment(final int code) {
+        final SerializableString[] fragments = jsonFragments;
+        return fragments == null ? null : fragments[code];
+    }
+
+    /**
+     * Gets the codes of all the values accepted by a filter.
+     *
+     * @param filter decides whether a value matches
+     * @return the codes of the matching values
+     */
+    public BitSet matching(final Predicate<String> filter) {
+        final int count = size;
+        final String[] known = values;
+        final BitSet matching = new BitSet(count);
+        for (int code = 0; code < count; code++) {
+            if (filter.test(known[code])) {
+                matching.set(code);
+            }
+        }
+        return matching;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private synchronized int add(final String value) {
+        final Integer existing = codes.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        final int code = size;
+        if (jsonFragments != null) {
+            // written before the value, which is published by the size
+            if (code == jsonFragments.length) {
+                jsonFragments = Arrays.copyOf(jsonFragments, code * 2);
+            }
+            jsonFragments[code] = MetaData.encodeJsonFragment(field, value);
+        }
+        if (code == values.length) {
+            values = Arrays.copyOf(values, code * 2);
+        }
+        values[code] = value;
+        size = code + 1;
+        codes.put(value, code);
+        return code;
+    }
+}
@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.services;
+
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.ericsson.oss.adc.handler.FileHandler;
+import com.ericsson.oss.adc.models.NotificationStore;
+import com.ericsson.oss.adc.models.ValueDictionary;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Tracks how far each FLS consumer has read, per dataType.
+ * <p>
+ * A consumer acknowledges every file up to the id it polls after. For each consumer and dataType it
+ * has polled, two gauges tagged with the consumer and the dataType tell how far it is behind the
+ * newest notification of the dataType: in ids, and in seconds between when that notification and
+ * the last acknowledged one were stored.
+ * <p>
+ * Consumer ids come from the clients, so they are not kept forever: a consumer which has not polled
+ * for fls.consumer.idleExpiryMs is forgotten together with its gauges, and when fls.consumer.maxConsumers
+ * are tracked, a new consumer makes the one which polled least recently forgotten.
+ * <p>
+ * Every poll acknowledges, so no lock is taken: consumers and cursors are kept in concurrent maps,
+ * and the cap on consumers may be overshot by the few consumers added at the same time.
+ */
+@Component
+public class ConsumerTracker {
+
+    private static final String METRIC_PREFIX = "eric.oss.file.notification.enm.stub:fls.consumer.";
+
+    // how often, at most, idle consumers are looked for
+    private static final long EXPIRY_INTERVAL_MS = 60_000;
+
+    private final Map<String, Consumer> consumers = new ConcurrentHashMap<>();
+
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicLong nextExpiryMillis = new AtomicLong();
+
+    @Autowired
+    private FileHandler fileHandler;
+
+    @Value("${fls.consumer.idleExpiryMs:3600000}")
+    private long idleExpiryMs;
+
+    @Value("${fls.consumer.maxConsumers:1000}")
+    private int maxConsumers;
+
+    public ConsumerTracker(final MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Records that a consumer has read every file of the matching dataTypes up to the given id.
+     *
+     * @param consumer identifies the consumer
+     * @param dataTypeFilter decides which dataTypes the consumer polls
+     * @param id the id the consumer polls after
+     */
+    public void acknowledge(final String consumer, final Predicate<String> dataTypeFilter, final long id) {
+        acknowledge(consumer, dataTypeFilter, id, System.currentTimeMillis());
+    }
+
+    void acknowledge(final String consumer, final Predicate<String> dataTypeFilter, final long id, final long nowMillis) {
+        expireIdle(nowMillis);
+        Consumer state = consumers.get(consumer);
+        if (state == null) {
+            if (maxConsumers > 0 && consumers.size() >= maxConsumers) {
+                consumers.values().stream().min(Comparator.comparingLong(idle -> idle.lastSeenMillis)).ifPresent(this::forget);
+            }
+            state = consumers.computeIfAbsent(consumer, Consumer::new);
+        }
+        state.lastSeenMillis = nowMillis;
+        final ValueDictionary dataTypes = fileHandler.getNotificationStore().getDataTypes();
+        final BitSet matching = dataTypes.matching(dataTypeFilter);
+        final Consumer polling = state;
+        for (int code = matching.nextSetBit(0); code >= 0; code = matching.nextSetBit(code + 1)) {
+            final String dataType = dataTypes.decode(code);
+            state.cursors.computeIfAbsent(dataType, key -> register(polling, dataType)).set(id);
+        }
+    }
+
+    /**
+     * Gets the id of the last file of a dataType acknowledged by a consumer.
+     *
+     * @param consumer identifies the consumer
+     * @param dataType the dataType
+     * @return the acknowledged id, or {@link Long#MIN_VALUE} if the consumer never polled the dataType
+     */
+    public long getCursor(final String consumer, final String dataType) {
+        final Consumer state = consumers.get(consumer);
+        final AtomicLong cursor = state == null ? null : state.cursors.get(dataType);
+        return cursor == null ? Long.MIN_VALUE : cursor.get();
+    }
+
+    /**
+     * Gets how many ids a consumer is behind the newest notification of a dataType. Acknowledged ids
+     * older than the store count from its oldest notification.
+     *
+     * @param consumer identifies the consumer
+     * @param dataType the dataType
+     * @return the lag in ids, zero when the consumer is up to date
+     */
+    public long getLagIds(final String consumer, final String dataType) {
+        final NotificationStore notificationStore = fileHandler.getNotificationStore();
+        final long lastId = notificationStore.getLastId(dataType);
+        final long firstId = notificationStore.getFirstId();
+        if (lastId == Long.MIN_VALUE || firstId == Long.MIN_VALUE) {
+            return 0;
+        }
+        final long cursor = Math.max(getCursor(consumer, dataType), firstId - 1);
+        return Math.max(0, lastId - cursor);
+    }
+
+    /**
+     * Gets how many seconds the newest notification of a dataType was stored after the last one a
+     * consumer acknowledged.
+     *
+     * @param consumer identifies the consumer
+     * @param dataType the dataType
+     * @return the lag in seconds, zero when the consumer is up to date
+     */
+    public long getLagSeconds(final String consumer, final String dataType) {
+        if (getLagIds(consumer, dataType) == 0) {
+            return 0;
+        }
+        final NotificationStore notificationStore = fileHandler.getNotificationStore();
+        final long newest = notificationStore.getAppendMillis(notificationStore.getLastId(dataType));
+        final long acknowledged = notificationStore.getAppendMillis(getCursor(consumer, dataType));
+        return Math.max(0, (newest - acknowledged) / 1000);
+    }
+
+    public int getConsumerCount() {
+        return consumers.size();
+    }
+
+    private void expireIdle(final long nowMillis) {
+        final long next = nextExpiryMillis.get();
+        // a single poll looks for idle consumers, the others go on
+        if (idleExpiryMs <= 0 || nowMillis < next
+                || !nextExpiryMillis.compareAndSet(next, nowMillis + Math.min(idleExpiryMs, EXPIRY_INTERVAL_MS))) {
+            return;
+        }
+        consumers.values().stream()
+                .filter(state -> nowMillis - state.lastSeenMillis >= idleExpiryMs)
+                .collect(Collectors.toList())
+                .forEach(this::forget);
+    }
+
+    private void forget(final Consumer state) {
+        if (consumers.remove(state.name, state)) {
+            state.forgotten = true;
+            state.gauges.forEach(meterRegistry::remove);
+        }
+    }
+
+    private AtomicLong register(final Consumer state, final String dataType) {
+        final String consumer = state.name;
+        state.gauges.add(Gauge.builder(METRIC_PREFIX + "lag.ids", this, tracker -> tracker.getLagIds(consumer, dataType))
+                .tag("consumer", consumer)
+                .tag("dataType", dataType)
+                .register(meterRegistry));
+        state.gauges.add(Gauge.builder(METRIC_PREFIX + "lag.seconds", this, tracker -> tracker.getLagSeconds(consumer, dataType))
+                .tag("consumer", consumer)
+                .tag("dataType", dataType)
+                .register(meterRegistry));
+        if (state.forgotten) {
+            // forgotten by another poll meanwhile, which may have missed these gauges
+            state.gauges.forEach(meterRegistry::remove);
+        }
+        return new AtomicLong(Long.MIN_VALUE);
+    }
+
+    private static final class Consumer {
+        private final String name;
+        // dataType -> id of the last acknowledged file
+        private final Map<String, AtomicLong> cursors = new ConcurrentHashMap<>();
+        private final List<Gauge> gauges = new CopyOnWriteArrayList<>();
+        private volatile long lastSeenMillis;
+        private volatile boolean forgotten;
+
+        private Consumer(final String name) {
+            this.name = name;
+        }
+    }
+}
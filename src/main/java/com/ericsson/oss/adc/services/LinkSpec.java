@@ -0,0 +1,34 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.services;
+
+/**
+ * A symlink to create on the SFTP server with {@link SftpService#symlinkAll}, or the hardlink or copy of
+ * {@link SftpService#linkAll} with another {@link com.ericsson.oss.adc.enums.LinkStrategy}.
+ */
+public interface LinkSpec {
+
+    /**
+     * @return the remote file the symlink points to, or which is linked or copied
+     */
+    String getSourceFile();
+
+    /**
+     * @return the remote path of the symlink, hardlink or copy
+     */
+    String getLinkedFile();
+}
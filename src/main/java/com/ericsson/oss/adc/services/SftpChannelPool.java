@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.services;
+
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ericsson.oss.adc.exceptions.NoSftpConnectionException;
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+
+/**
+ * Fixed pool of connected SFTP channels, spread over one or more SSH sessions.
+ * <p>
+ * A channel is used by one thread at a time: it is borrowed, used for one operation and released.
+ * The working directory of a channel is never changed, so any channel can serve any operation.
+ * A channel found disconnected when it is released is dropped from the pool.
+ */
+public class SftpChannelPool implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SftpChannelPool.class);
+
+    private final Set<ChannelSftp> channels = ConcurrentHashMap.newKeySet();
+
+    private final BlockingQueue<ChannelSftp> idleChannels;
+
+    private final long borrowTimeoutMs;
+
+    private volatile boolean closed;
+
+    /**
+     * Creates a pool of connected channels.
+     *
+     * @param channels the channels
+     * @param borrowTimeoutMs how long a borrower waits for a free channel
+     */
+    public SftpChannelPool(final Collection<ChannelSftp> channels, final long borrowTimeoutMs) {
+        this.idleChannels = new ArrayBlockingQueue<>(Math.max(1, channels.size()), false, channels);
+        this.channels.addAll(channels);
+        this.borrowTimeoutMs = borrowTimeoutMs;
+    }
+
+    /**
+     * Borrows a channel, waiting for one to be released if they are all in use.
+     *
+     * @return the channel, to be released after use
+     * @throws NoSftpConnectionException if the pool is closed or empty, or no channel is free in time
+     */
+    public ChannelSftp borrow() throws NoSftpConnectionException {
+        if (closed || channels.isEmpty()) {
+            throw new NoSftpConnectionException("NoSftpConnectionException: SFTP Connection not present");
+        }
+        final ChannelSftp channel;
+        try {
+            channel = idleChannels.poll(borrowTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new NoSftpConnectionException("NoSftpConnectionException: Interrupted waiting for an SFTP channel");
+        }
+        if (channel == null) {
+            throw new NoSftpConnectionException("NoSftpConnectionException: No SFTP channel free within "
+                    + borrowTimeoutMs + " ms, " + channels.size() + " channels in the pool");
+        }
+        return channel;
+    }
+
+    /**
+     * Returns a borrowed channel to the pool.
+     *
+     * @param channel the channel
+     */
+    public void release(final ChannelSftp channel) {
+        if (closed || !channel.isConnected()) {
+            channels.remove(channel);
+            channel.disconnect();
+            if (!closed) {
+                LOG.warn("SFTP channel disconnected, removed from the pool, {} channels left", channels.size());
+            }
+            return;
+        }
+        idleChannels.offer(channel);
+    }
+
+    /**
+     * Checks whether the pool has a connected channel.
+     *
+     * @return true if a channel is connected
+     */
+    public boolean isConnected() {
+        return !closed && channels.stream().anyMatch(ChannelSftp::isConnected);
+    }
+
+    public int size() {
+        return channels.size();
+    }
+
+    /**
+     * Gets the session of a connected channel, without borrowing the channel, to open a channel of another
+     * kind on it.
+     *
+     * @return the session
+     * @throws NoSftpConnectionException if the pool is closed or no channel is connected
+     */
+    public Session getSession() throws NoSftpConnectionException {
+        if (!closed) {
+            for (final ChannelSftp channel : channels) {
+                try {
+                    if (channel.isConnected()) {
+                        return channel.getSession();
+                    }
+                } catch (final JSchException exception) {
+                    // disconnected meanwhile, try the next one
+                }
+            }
+        }
+        throw new NoSftpConnectionException("NoSftpConnectionException: SFTP Connection not present");
+    }
+
+    public int getIdleCount() {
+        return idleChannels.size();
+    }
+
+    /**
+     * Disconnects every channel and their sessions. Channels borrowed at the time are disconnected as well.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        final Set<Session> sessions = new LinkedHashSet<>();
+        for (final ChannelSftp channel : channels) {
+            try {
+                sessions.add(channel.getSession());
+            } catch (final JSchException exception) {
+                // not connected, no session to disconnect
+            }
+            channel.disconnect();
+        }
+        sessions.forEach(Session::disconnect);
+        channels.clear();
+        idleChannels.clear();
+    }
+}
@@ -0,0 +1,460 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.services;
+
+import static com.ericsson.oss.adc.utils.Utilities.toUnixPathSeparator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.ericsson.oss.adc.enums.LinkStrategy;
+import com.ericsson.oss.adc.exceptions.NoSftpConnectionException;
+import com.ericsson.oss.adc.handler.SymlinkResult;
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSchException;
+
+/**
+ * Creates and removes the files of a ROP with one shell script run on the SFTP host, over an SSH exec
+ * channel on the session of a pooled SFTP channel, instead of one SFTP request per file.
+ * <p>
+ * The files are created with the {@link LinkStrategy} of {@link SftpService}, as symlinks, hardlinks or
+ * copies. The script reports the result of each file on a line of its own. When the server does not permit
+ * exec, as with an sftp only account, the first attempt finds out and the files are handled by
+ * {@link SftpService} from then on. When a script is cut short, the results it reported before are kept.
+ */
+@Service
+public class SftpExecService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SftpExecService.class);
+
+    static final String READY = "FLS-EXEC-READY";
+
+    private static final String DONE = "FLS-EXEC-DONE";
+
+    private static final int PATHS_PER_COMMAND = 200;
+
+    // what JSch throws when the server answers the exec request with a failure
+    private static final String EXEC_REFUSED = "failed to send channel request";
+
+    // disconnects the scripts running for too long
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "exec-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // writes the scripts, so that the output is read as a script runs and never fills its window
+    private final ExecutorService scriptWriter = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, "exec-script-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    private SftpService sftpService;
+
+    @Value("${sftp.connection.timeoutInMs:10000}")
+    private int connectionTimeoutInMs;
+
+    @Value("${sftp.generation.execTimeoutMs:300000}")
+    private long execTimeoutMs;
+
+    private volatile boolean execPermitted = true;
+
+    /**
+     * Thrown when the server does not run the script, and never will.
+     */
+    private static class ExecNotPermittedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        ExecNotPermittedException(final String message, final Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * The output of a script, which may have been cut short.
+     */
+    private static final class ExecOutput {
+        private final List<String> lines;
+        private final String failure;
+
+        private ExecOutput(final List<String> lines, final String failure) {
+            this.lines = lines;
+            this.failure = failure;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+        scriptWriter.shutdownNow();
+    }
+
+    /**
+     * Creates the files of a ROP from remote files, maintaining the directory structure.
+     *
+     * @param links the files to create
+     * @param permissions the permission pattern of the directories and copies created
+     * @return the result of each file, in the order of the links, null for those not attempted after a
+     *         failure
+     */
+    public List<SymlinkResult> linkAll(final List<? extends LinkSpec> links, final String permissions) {
+        if (execPermitted && !links.isEmpty()) {
+            final LinkStrategy strategy = sftpService.getLinkStrategy();
+            try {
+                final long startTime = System.nanoTime();
+                final ExecOutput output = exec(buildLinkScript(strategy, links, permissions));
+                if (output.failure != null) {
+                    // the files reported are there all the same, only those not reported failed
+                    LOG.error("{}: Exec creating {} files ended early, after {} results", output.failure, links.size(),
+                            output.lines.size());
+                }
+                final List<SymlinkResult> results = parseLinkResults(output.lines, links.size());
+                sftpService.incrementFilesCreated(strategy, results.stream().filter(result -> result == SymlinkResult.SUCCESS).count(),
+                        startTime);
+                return results;
+            } catch (final ExecNotPermittedException exception) {
+                LOG.warn("{}: Exec not permitted on the SFTP server, files are created over SFTP", exception.getMessage());
+                execPermitted = false;
+            } catch (final IOException | NoSftpConnectionException exception) {
+                LOG.error("{}: Error creating {} files with exec", exception.getMessage(), links.size());
+                final SymlinkResult[] results = new SymlinkResult[links.size()];
+                Arrays.fill(results, SymlinkResult.FAILED);
+                return Arrays.asList(results);
+            }
+        }
+        return sftpService.linkAll(links, permissions);
+    }
+
+    /**
+     * Removes files on the remote server, ignoring those already gone.
+     *
+     * @param remotePaths the files
+     * @return the paths not removed, files not there count as removed
+     */
+    public List<String> rmAll(final Collection<String> remotePaths) {
+        if (execPermitted && !remotePaths.isEmpty()) {
+            try {
+                final List<String> requested = new ArrayList<>(remotePaths);
+                final ExecOutput output = exec(buildRemoveScript(requested));
+                // the files are checked at the end, so the output only tells which are left once complete
+                if (output.lines.contains(DONE)) {
+                    final List<String> notRemoved = parseRemoveResults(output.lines, requested);
+                    LOG.info("Removed {} remote files", requested.size() - notRemoved.size());
+                    return notRemoved;
+                }
+                LOG.error("{}: Error removing {} remote files with exec, removing them over SFTP", output.failure,
+                        remotePaths.size());
+            } catch (final ExecNotPermittedException exception) {
+                LOG.warn("{}: Exec not permitted on the SFTP server, files are removed over SFTP", exception.getMessage());
+                execPermitted = false;
+            } catch (final IOException | NoSftpConnectionException exception) {
+                LOG.error("{}: Error removing {} remote files with exec, removing them over SFTP", exception.getMessage(),
+                        remotePaths.size());
+            }
+        }
+        return sftpService.rmAll(remotePaths);
+    }
+
+    public boolean isExecPermitted() {
+        return execPermitted;
+    }
+
+    /**
+     * Builds the script creating the files, which prints '{@value #READY}' and then a line
+     * '&lt;index&gt; &lt;0 created|1 existed|2 failed&gt;' for each link.
+     */
+    static String buildLinkScript(final LinkStrategy strategy, final List<? extends LinkSpec> links, final String permissions) {
+        final StringBuilder script = new StringBuilder(links.size() * 160);
+        script.append("exec 2>/dev/null\n");
+        script.append("echo ").append(READY).append('\n');
+        // the directories and copies created get the permissions, as sftp mkdir followed by chmod would give them
+        script.append("umask ").append(String.format("%03o", ~Integer.parseInt(permissions, 8) & 0777)).append('\n');
+        final Set<String> directories = new LinkedHashSet<>();
+        links.forEach(link -> {
+            final Path parent = Paths.get(link.getLinkedFile()).getParent();
+            if (parent != null) {
+                directories.add(toUnixPathSeparator(parent.toString()));
+            }
+        });
+        appendCommands(script, "mkdir -p --", directories);
+        // an existing file is left as it is and reported, so that it is not notified again
+        switch (strategy) {
+            case HARDLINK:
+                // -L links the file a symlinked bin file resolves to, not the symlink
+                script.append("l() { if ln -L -- \"$1\" \"$2\"; then echo \"$3 0\"; elif [ -f \"$2\" ] && [ ! -L \"$2\" ];"
+                        + " then echo \"$3 1\"; else echo \"$3 2\"; fi; }\n");
+                break;
+            case COPY:
+                // cp overwrites, so the file is checked first, and a partial copy is removed
+                script.append("l() { if [ -f \"$2\" ] && [ ! -L \"$2\" ]; then echo \"$3 1\"; elif cp -- \"$1\" \"$2\"; then echo \"$3 0\";"
+                        + " else rm -f -- \"$2\"; echo \"$3 2\"; fi; }\n");
+                break;
+            default:
+                script.append("l() { if ln -s -- \"$1\" \"$2\"; then echo \"$3 0\"; elif [ -L \"$2\" ]; then echo \"$3 1\";"
+                        + " else echo \"$3 2\"; fi; }\n");
+                break;
+        }
+        for (int i = 0; i < links.size(); i++) {
+            script.append("l ").append(quote(toUnixPathSeparator(links.get(i).getSourceFile()))).append(' ')
+                    .append(quote(toUnixPathSeparator(links.get(i).getLinkedFile()))).append(' ').append(i).append('\n');
+        }
+        return script.toString();
+    }
+
+    /**
+     * Builds the script removing the files, which prints '{@value #READY}', then the index of each file still
+     * there after the removal on a line of its own, and '{@value #DONE}' at the end.
+     */
+    static String buildRemoveScript(final List<String> remotePaths) {
+        final StringBuilder script = new StringBuilder(remotePaths.size() * 256);
+        script.append("exec 2>/dev/null\n");
+        script.append("echo ").append(READY).append('\n');
+        appendCommands(script, "rm -f --", remotePaths);
+        // test is a builtin, so checking costs no process a file
+        script.append("c() { if [ -e \"$1\" ] || [ -L \"$1\" ]; then echo \"$2\"; fi; }\n");
+        for (int i = 0; i < remotePaths.size(); i++) {
+            script.append("c ").append(quote(toUnixPathSeparator(remotePaths.get(i)))).append(' ').append(i).append('\n');
+        }
+        script.append("echo ").append(DONE).append('\n');
+        return script.toString();
+    }
+
+    /**
+     * Reads the files reported by the script of {@link #buildRemoveScript} as still there.
+     */
+    static List<String> parseRemoveResults(final List<String> output, final List<String> remotePaths) {
+        final List<String> notRemoved = new ArrayList<>();
+        for (final String line : output) {
+            if (DONE.equals(line)) {
+                continue;
+            }
+            try {
+                final int index = Integer.parseInt(line);
+                if (index >= 0 && index < remotePaths.size()) {
+                    notRemoved.add(remotePaths.get(index));
+                }
+            } catch (final NumberFormatException exception) {
+                LOG.warn("Unexpected output of exec '{}'", line);
+            }
+        }
+        return notRemoved;
+    }
+
+    /**
+     * Reads the results printed by the script of {@link #buildLinkScript}, a link without a result failed.
+     */
+    static List<SymlinkResult> parseLinkResults(final List<String> output, final int count) {
+        final SymlinkResult[] results = new SymlinkResult[count];
+        Arrays.fill(results, SymlinkResult.FAILED);
+        for (final String line : output) {
+            final int separator = line.indexOf(' ');
+            try {
+                final int index = Integer.parseInt(line.substring(0, Math.max(0, separator)));
+                if (index >= 0 && index < count) {
+                    final String code = line.substring(separator + 1);
+                    results[index] = "0".equals(code) ? SymlinkResult.SUCCESS
+                            : "1".equals(code) ? SymlinkResult.EXIST : SymlinkResult.FAILED;
+                }
+            } catch (final NumberFormatException exception) {
+                LOG.warn("Unexpected output of exec '{}'", line);
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private static void appendCommands(final StringBuilder script, final String command, final Collection<String> paths) {
+        // a few hundred paths a command keep within the argument limits of the host
+        int pathsInCommand = 0;
+        for (final String path : paths) {
+            if (pathsInCommand == 0) {
+                script.append(command);
+            }
+            script.append(' ').append(quote(toUnixPathSeparator(path)));
+            if (++pathsInCommand == PATHS_PER_COMMAND) {
+                script.append('\n');
+                pathsInCommand = 0;
+            }
+        }
+        if (pathsInCommand > 0) {
+            script.append('\n');
+        }
+    }
+
+    static String quote(final String value) {
+        return "'" + value.replace("'", "'\\''") + "'";
+    }
+
+    /**
+     * Runs a script with sh on the SFTP host.
+     *
+     * @return the lines printed by the script after '{@value #READY}', with why the script was cut short when
+     *         it did not finish within sftp.generation.execTimeoutMs or failed
+     * @throws ExecNotPermittedException if the server refused to run the script
+     * @throws IOException if the script could not run this time
+     */
+    private ExecOutput exec(final String script) throws IOException, NoSftpConnectionException {
+        final SftpChannelPool pool = sftpService.getChannelPool();
+        if (pool == null) {
+            throw new NoSftpConnectionException("NoSftpConnectionException: SFTP Connection not present");
+        }
+        // the borrowed channel is not used, it keeps the session in use and counts against the channels of the session
+        final ChannelSftp channel = pool.borrow();
+        ChannelExec exec = null;
+        try {
+            final InputStream stdout;
+            final OutputStream stdin;
+            try {
+                exec = (ChannelExec) channel.getSession().openChannel("exec");
+                exec.setCommand("sh -s");
+                exec.setInputStream(null);
+                stdout = exec.getInputStream();
+                stdin = exec.getOutputStream();
+                exec.connect(connectionTimeoutInMs);
+            } catch (final JSchException exception) {
+                if (isExecRefused(exception)) {
+                    throw new ExecNotPermittedException(exception.getMessage(), exception);
+                }
+                // no channel free on the session, a timeout or a lost connection, the next script may run
+                throw new IOException(exception.getMessage(), exception);
+            }
+            final ScheduledFuture<?> timeout;
+            try {
+                scriptWriter.execute(() -> writeScript(stdin, script));
+                // disconnecting ends the output, so a script which hangs does not hold up the caller
+                timeout = watchdog.schedule(exec::disconnect, execTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (final RejectedExecutionException exception) {
+                throw new IOException("Shutting down", exception);
+            }
+            final List<String> lines = new ArrayList<>();
+            String failure = null;
+            boolean started;
+            try {
+                started = readOutput(stdout, lines);
+            } catch (final ExecNotPermittedException exception) {
+                throw exception;
+            } catch (final IOException exception) {
+                // the lines read so far are kept
+                started = true;
+                failure = exception.getMessage();
+            }
+            final int exitStatus = awaitExitStatus(exec);
+            if (!timeout.cancel(false)) {
+                failure = "Exec did not finish within " + execTimeoutMs + " ms";
+            }
+            if (!started) {
+                if (exitStatus > 0) {
+                    // the server ran something else than the script, as with ForceCommand internal-sftp
+                    throw new ExecNotPermittedException("Exec exited with status " + exitStatus + " without running the script",
+                            null);
+                }
+                throw new IOException(failure == null ? "Exec ended without output" : failure);
+            }
+            // -1 when the server did not report it, the output tells what was done
+            if (failure == null && exitStatus > 0) {
+                failure = "Exec exited with status " + exitStatus;
+            }
+            return new ExecOutput(lines, failure);
+        } finally {
+            if (exec != null) {
+                exec.disconnect();
+            }
+            pool.release(channel);
+        }
+    }
+
+    /**
+     * Tells whether the server answered the exec request with a failure, rather than the channel not opening
+     * or the request timing out.
+     */
+    static boolean isExecRefused(final JSchException exception) {
+        return EXEC_REFUSED.equals(exception.getMessage());
+    }
+
+    private static int awaitExitStatus(final ChannelExec exec) throws IOException {
+        // the exit status comes just before the channel closes, after the end of the output
+        while (!exec.isClosed()) {
+            try {
+                Thread.sleep(10);
+            } catch (final InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for the exit status of exec");
+            }
+        }
+        return exec.getExitStatus();
+    }
+
+    private static void writeScript(final OutputStream stdin, final String script) {
+        try (OutputStream out = stdin) {
+            out.write(script.getBytes(StandardCharsets.UTF_8));
+        } catch (final IOException exception) {
+            LOG.error("{}: Error writing script to exec channel", exception.getMessage());
+        }
+    }
+
+    /**
+     * Reads the output of the script up to its end, adding the lines after '{@value #READY}' as they are read,
+     * so that they are kept when the output breaks off.
+     *
+     * @param lines the lines read
+     * @return false when there was no output at all
+     * @throws ExecNotPermittedException if the output is not the one of the script
+     */
+    static boolean readOutput(final InputStream stdout, final List<String> lines) throws IOException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(stdout, StandardCharsets.UTF_8));
+        final String first = reader.readLine();
+        if (first == null) {
+            return false;
+        }
+        if (!READY.equals(first)) {
+            throw new ExecNotPermittedException("Unexpected output '" + first + "'", null);
+        }
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            lines.add(line);
+        }
+        return true;
+    }
+}
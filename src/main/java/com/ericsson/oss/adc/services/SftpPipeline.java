@@ -0,0 +1,481 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.services;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.ChannelSubsystem;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+
+/**
+ * A minimal SFTP version 3 client which keeps many requests in flight, matching the responses to the
+ * requests by their id.
+ * <p>
+ * {@link ChannelSftp} waits for the response of each request before sending the next, so
+ * every operation costs a full network round-trip. This client writes up to a given number of requests
+ * before reading any response, so a batch of operations costs little more than one round-trip. Only the
+ * requests needed to create and remove the files of a ROP are supported, hardlinks and server-side copies
+ * through the 'hardlink@openssh.com' and 'copy-data' extensions of OpenSSH.
+ */
+class SftpPipeline implements Closeable {
+
+    static final int SSH_FX_OK = 0;
+
+    private static final int SFTP_VERSION = 3;
+
+    static final String HARDLINK_EXTENSION = "hardlink@openssh.com";
+    static final String COPY_DATA_EXTENSION = "copy-data";
+
+    private static final int SSH_FXP_INIT = 1;
+    private static final int SSH_FXP_VERSION = 2;
+    private static final int SSH_FXP_OPEN = 3;
+    private static final int SSH_FXP_CLOSE = 4;
+    private static final int SSH_FXP_LSTAT = 7;
+    private static final int SSH_FXP_SETSTAT = 9;
+    private static final int SSH_FXP_REMOVE = 13;
+    private static final int SSH_FXP_MKDIR = 14;
+    private static final int SSH_FXP_REALPATH = 16;
+    private static final int SSH_FXP_SYMLINK = 20;
+    private static final int SSH_FXP_EXTENDED = 200;
+    private static final int SSH_FXP_STATUS = 101;
+    private static final int SSH_FXP_HANDLE = 102;
+    private static final int SSH_FXP_NAME = 104;
+    private static final int SSH_FXP_ATTRS = 105;
+
+    private static final int SSH_FXF_READ = 0x01;
+    private static final int SSH_FXF_WRITE = 0x02;
+    private static final int SSH_FXF_CREAT = 0x08;
+    private static final int SSH_FXF_EXCL = 0x20;
+
+    private static final int SSH_FILEXFER_ATTR_SIZE = 0x01;
+    private static final int SSH_FILEXFER_ATTR_UIDGID = 0x02;
+    private static final int SSH_FILEXFER_ATTR_PERMISSIONS = 0x04;
+
+    private static final int MAX_PACKET_BYTES = 256 * 1024;
+
+    private final ChannelSubsystem channel;
+
+    private final DataInputStream in;
+
+    private final DataOutputStream out;
+
+    private final int maxInFlight;
+
+    private final Set<String> extensions = new HashSet<>();
+
+    private int nextId = 1;
+
+    /**
+     * Writes the fields of a request after its id.
+     */
+    @FunctionalInterface
+    private interface RequestBody {
+        void write(DataOutputStream body, int index) throws IOException;
+    }
+
+    SftpPipeline(final InputStream in, final OutputStream out, final int maxInFlight) {
+        this(null, in, out, maxInFlight);
+    }
+
+    private SftpPipeline(final ChannelSubsystem channel, final InputStream in, final OutputStream out, final int maxInFlight) {
+        this.channel = channel;
+        this.in = new DataInputStream(new BufferedInputStream(in));
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    /**
+     * Opens an SFTP subsystem channel of its own on a session.
+     *
+     * @param session the connected session
+     * @param timeoutMs timeout to connect the channel
+     * @param maxInFlight the maximum number of requests sent before their responses are read
+     * @return the initialised pipeline
+     * @throws JSchException if the channel cannot be opened
+     * @throws IOException if the SFTP version cannot be exchanged
+     */
+    static SftpPipeline open(final Session session, final int timeoutMs, final int maxInFlight) throws JSchException, IOException {
+        final ChannelSubsystem channel = (ChannelSubsystem) session.openChannel("subsystem");
+        channel.setSubsystem("sftp");
+        final InputStream in = channel.getInputStream();
+        final OutputStream out = channel.getOutputStream();
+        channel.connect(timeoutMs);
+        final SftpPipeline pipeline = new SftpPipeline(channel, in, out, maxInFlight);
+        try {
+            pipeline.init();
+        } catch (final IOException exception) {
+            pipeline.close();
+            throw exception;
+        }
+        return pipeline;
+    }
+
+    /**
+     * Exchanges the protocol version and the supported extensions with the server.
+     *
+     * @throws IOException if the server does not answer with a version
+     */
+    void init() throws IOException {
+        out.writeInt(5);
+        out.writeByte(SSH_FXP_INIT);
+        out.writeInt(SFTP_VERSION);
+        out.flush();
+        final ByteBuffer packet = ByteBuffer.wrap(readPacket(in.readInt()));
+        final int type = packet.get();
+        if (type != SSH_FXP_VERSION) {
+            throw new IOException("Unexpected SFTP packet type " + type + " in reply to init");
+        }
+        packet.getInt();
+        while (packet.hasRemaining()) {
+            extensions.add(readString(packet));
+            readString(packet); // the version of the extension
+        }
+    }
+
+    /**
+     * Checks whether the server announced an extension.
+     *
+     * @param extension for example '{@value #HARDLINK_EXTENSION}'
+     * @return true if supported
+     */
+    boolean supports(final String extension) {
+        return extensions.contains(extension);
+    }
+
+    /**
+     * Creates directories, with the default permissions of the server.
+     *
+     * @param paths the directories
+     * @return the status code of each directory
+     * @throws IOException on a failure of the channel
+     */
+    int[] mkdir(final List<String> paths) throws IOException {
+        return status(execute(SSH_FXP_MKDIR, paths.size(), (body, index) -> {
+            writeString(body, paths.get(index));
+            body.writeInt(0); // no attributes
+        }));
+    }
+
+    /**
+     * Sets the permissions of files or directories.
+     *
+     * @param paths the files or directories
+     * @param permissions the permissions, for example 0750
+     * @return the status code of each path
+     * @throws IOException on a failure of the channel
+     */
+    int[] chmod(final List<String> paths, final int permissions) throws IOException {
+        return status(execute(SSH_FXP_SETSTAT, paths.size(), (body, index) -> {
+            writeString(body, paths.get(index));
+            body.writeInt(SSH_FILEXFER_ATTR_PERMISSIONS);
+            body.writeInt(permissions);
+        }));
+    }
+
+    /**
+     * Removes files.
+     *
+     * @param paths the files
+     * @return the status code of each file
+     * @throws IOException on a failure of the channel
+     */
+    int[] remove(final List<String> paths) throws IOException {
+        return status(execute(SSH_FXP_REMOVE, paths.size(), (body, index) -> writeString(body, paths.get(index))));
+    }
+
+    /**
+     * Creates symlinks.
+     *
+     * @param links the symlinks
+     * @return the status code of each symlink
+     * @throws IOException on a failure of the channel
+     */
+    int[] symlink(final List<? extends LinkSpec> links) throws IOException {
+        return status(execute(SSH_FXP_SYMLINK, links.size(), (body, index) -> {
+            // the order OpenSSH, and so ChannelSftp, uses, which is the reverse of the draft
+            writeString(body, links.get(index).getSourceFile());
+            writeString(body, links.get(index).getLinkedFile());
+        }));
+    }
+
+    /**
+     * Creates hardlinks, with the '{@value #HARDLINK_EXTENSION}' extension. A source which is a symlink is
+     * linked itself, not the file it points to.
+     *
+     * @param links the hardlinks
+     * @return the status code of each hardlink
+     * @throws IOException on a failure of the channel, or if the server does not support the extension
+     */
+    int[] hardlink(final List<? extends LinkSpec> links) throws IOException {
+        requireExtension(HARDLINK_EXTENSION);
+        return status(execute(SSH_FXP_EXTENDED, links.size(), (body, index) -> {
+            writeString(body, HARDLINK_EXTENSION);
+            writeString(body, links.get(index).getSourceFile());
+            writeString(body, links.get(index).getLinkedFile());
+        }));
+    }
+
+    /**
+     * Copies files on the server, with the '{@value #COPY_DATA_EXTENSION}' extension, so that their content
+     * never crosses the network. The sources are opened once each, the copies are new files and a copy
+     * which fails is removed again.
+     *
+     * @param links the copies, from the source file to the linked file
+     * @param permissions the permissions of the copies, for example 0750
+     * @return the status code of each copy, {@link ChannelSftp#SSH_FX_FAILURE} if the file
+     *         already exists
+     * @throws IOException on a failure of the channel, or if the server does not support the extension
+     */
+    int[] copy(final List<? extends LinkSpec> links, final int permissions) throws IOException {
+        requireExtension(COPY_DATA_EXTENSION);
+        final int[] results = new int[links.size()];
+        final Map<String, byte[]> sourceHandles = new LinkedHashMap<>();
+        links.forEach(link -> sourceHandles.put(link.getSourceFile(), null));
+        final List<String> sources = new ArrayList<>(sourceHandles.keySet());
+        final ByteBuffer[] opened = execute(SSH_FXP_OPEN, sources.size(), (body, index) -> {
+            writeString(body, sources.get(index));
+            body.writeInt(SSH_FXF_READ);
+            body.writeInt(0); // no attributes
+        });
+        for (int i = 0; i < opened.length; i++) {
+            sourceHandles.put(sources.get(i), handle(opened[i]));
+        }
+        try {
+            final List<Integer> copies = new ArrayList<>(links.size());
+            for (int i = 0; i < links.size(); i++) {
+                if (sourceHandles.get(links.get(i).getSourceFile()) == null) {
+                    results[i] = ChannelSftp.SSH_FX_NO_SUCH_FILE;
+                } else {
+                    copies.add(i);
+                }
+            }
+            final ByteBuffer[] created = execute(SSH_FXP_OPEN, copies.size(), (body, index) -> {
+                writeString(body, links.get(copies.get(index)).getLinkedFile());
+                body.writeInt(SSH_FXF_WRITE | SSH_FXF_CREAT | SSH_FXF_EXCL);
+                body.writeInt(SSH_FILEXFER_ATTR_PERMISSIONS);
+                body.writeInt(permissions);
+            });
+            final List<Integer> written = new ArrayList<>(copies.size());
+            final List<byte[]> targetHandles = new ArrayList<>(copies.size());
+            for (int i = 0; i < created.length; i++) {
+                final byte[] handle = handle(created[i]);
+                if (handle == null) {
+                    results[copies.get(i)] = created[i].getInt();
+                } else {
+                    written.add(copies.get(i));
+                    targetHandles.add(handle);
+                }
+            }
+            final int[] copyStatus = status(execute(SSH_FXP_EXTENDED, written.size(), (body, index) -> {
+                writeString(body, COPY_DATA_EXTENSION);
+                writeBytes(body, sourceHandles.get(links.get(written.get(index)).getSourceFile()));
+                body.writeLong(0); // from the start
+                body.writeLong(0); // to the end of the file
+                writeBytes(body, targetHandles.get(index));
+                body.writeLong(0);
+            }));
+            close(targetHandles);
+            final List<String> incomplete = new ArrayList<>();
+            for (int i = 0; i < copyStatus.length; i++) {
+                results[written.get(i)] = copyStatus[i];
+                if (copyStatus[i] != SSH_FX_OK) {
+                    incomplete.add(links.get(written.get(i)).getLinkedFile());
+                }
+            }
+            remove(incomplete);
+        } finally {
+            final List<byte[]> handles = new ArrayList<>(sourceHandles.values());
+            handles.removeAll(Collections.singleton(null));
+            close(handles);
+        }
+        return results;
+    }
+
+    /**
+     * Resolves paths to their canonical form on the server, following symlinks.
+     *
+     * @param paths the paths
+     * @return for each path, the canonical path, null if it cannot be resolved
+     * @throws IOException on a failure of the channel
+     */
+    String[] realpath(final List<String> paths) throws IOException {
+        final ByteBuffer[] responses = execute(SSH_FXP_REALPATH, paths.size(), (body, index) -> writeString(body, paths.get(index)));
+        final String[] resolved = new String[paths.size()];
+        for (int i = 0; i < responses.length; i++) {
+            if (responses[i].get(0) == SSH_FXP_NAME && responses[i].getInt() == 1) {
+                resolved[i] = readString(responses[i]);
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * Gets the permissions of paths, file type included, without following symlinks.
+     *
+     * @param paths the paths
+     * @return for each path, its permissions, -1 if it does not exist or has none
+     * @throws IOException on a failure of the channel
+     */
+    int[] lstat(final List<String> paths) throws IOException {
+        final ByteBuffer[] responses = execute(SSH_FXP_LSTAT, paths.size(), (body, index) -> writeString(body, paths.get(index)));
+        final int[] permissions = new int[paths.size()];
+        for (int i = 0; i < responses.length; i++) {
+            permissions[i] = responses[i].get(0) == SSH_FXP_ATTRS ? readPermissions(responses[i]) : -1;
+        }
+        return permissions;
+    }
+
+    private void close(final List<byte[]> handles) throws IOException {
+        execute(SSH_FXP_CLOSE, handles.size(), (body, index) -> writeBytes(body, handles.get(index)));
+    }
+
+    private void requireExtension(final String extension) throws IOException {
+        if (!supports(extension)) {
+            throw new IOException("SFTP server does not support the " + extension + " extension");
+        }
+    }
+
+    /**
+     * Sends the requests, keeping at most maxInFlight without a response.
+     *
+     * @return for each request, its response positioned after the id, the type is its first byte
+     */
+    private ByteBuffer[] execute(final int type, final int count, final RequestBody requestBody) throws IOException {
+        final ByteBuffer[] results = new ByteBuffer[count];
+        final int firstId = nextId;
+        nextId += count;
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream body = new DataOutputStream(bytes);
+        int sent = 0;
+        int receivedCount = 0;
+        while (receivedCount < count) {
+            while (sent < count && sent - receivedCount < maxInFlight) {
+                bytes.reset();
+                body.writeByte(type);
+                body.writeInt(firstId + sent);
+                requestBody.write(body, sent);
+                out.writeInt(bytes.size());
+                bytes.writeTo(out);
+                sent++;
+            }
+            out.flush();
+
+            final ByteBuffer response = ByteBuffer.wrap(readPacket(in.readInt()));
+            response.get();
+            final int index = response.getInt() - firstId;
+            if (index < 0 || index >= count || results[index] != null) {
+                throw new IOException("Unexpected SFTP response id " + (index + firstId));
+            }
+            results[index] = response;
+            receivedCount++;
+        }
+        return results;
+    }
+
+    /**
+     * Gets the status codes of responses which can only be a STATUS.
+     */
+    private static int[] status(final ByteBuffer[] responses) throws IOException {
+        final int[] status = new int[responses.length];
+        for (int i = 0; i < responses.length; i++) {
+            if (responses[i].get(0) != SSH_FXP_STATUS) {
+                throw new IOException("Unexpected SFTP packet type " + responses[i].get(0));
+            }
+            status[i] = responses[i].getInt();
+        }
+        return status;
+    }
+
+    /**
+     * Gets the handle of an OPEN response, null for a STATUS, which is left to read.
+     */
+    private static byte[] handle(final ByteBuffer response) throws IOException {
+        if (response.get(0) == SSH_FXP_STATUS) {
+            return null;
+        }
+        if (response.get(0) != SSH_FXP_HANDLE) {
+            throw new IOException("Unexpected SFTP packet type " + response.get(0));
+        }
+        final byte[] handle = new byte[response.getInt()];
+        response.get(handle);
+        return handle;
+    }
+
+    private static int readPermissions(final ByteBuffer attrs) {
+        final int flags = attrs.getInt();
+        if ((flags & SSH_FILEXFER_ATTR_PERMISSIONS) == 0) {
+            return -1;
+        }
+        if ((flags & SSH_FILEXFER_ATTR_SIZE) != 0) {
+            attrs.getLong();
+        }
+        if ((flags & SSH_FILEXFER_ATTR_UIDGID) != 0) {
+            attrs.getLong();
+        }
+        return attrs.getInt();
+    }
+
+    private byte[] readPacket(final int length) throws IOException {
+        if (length < 5 || length > MAX_PACKET_BYTES) {
+            throw new IOException("Invalid SFTP packet length " + length);
+        }
+        final byte[] packet = new byte[length];
+        in.readFully(packet);
+        return packet;
+    }
+
+    private static void writeString(final DataOutputStream body, final String value) throws IOException {
+        writeBytes(body, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeBytes(final DataOutputStream body, final byte[] bytes) throws IOException {
+        body.writeInt(bytes.length);
+        body.write(bytes);
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() {
+        if (channel != null) {
+            channel.disconnect();
+        }
+    }
+}
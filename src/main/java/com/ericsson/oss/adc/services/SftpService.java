@@ -19,18 +19,40 @@ package com.ericsson.oss.adc.services;
 import static com.ericsson.oss.adc.utils.Utilities.UNIX_PATH_SEPARATOR;
 import static com.ericsson.oss.adc.utils.Utilities.toUnixPathSeparator;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import com.ericsson.oss.adc.enums.LinkStrategy;
 import com.ericsson.oss.adc.exceptions.NoSftpConnectionException;
 import com.ericsson.oss.adc.handler.SymlinkResult;
 import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.SftpATTRS;
 import com.jcraft.jsch.SftpException;
 
@@ -39,17 +61,49 @@ import io.micrometer.core.instrument.MeterRegistry;
 
 /**
  * Service class to do SFTP work
+ * <p>
+ * Operations run on channels borrowed from a {@link SftpChannelPool}, one channel per operation, so
+ * they can run concurrently. No operation changes the remote working directory: paths are absolute,
+ * or relative to the SFTP home directory, and directories are created by their full path.
  */
 @Service
 public class SftpService {
 
     private static final Logger LOG = LoggerFactory.getLogger(SftpService.class);
 
+    public static final long DEFAULT_BORROW_TIMEOUT_MS = 30000;
+
+    // the OpenSSH extension renaming over an existing file, which ChannelSftp#rename uses when the server offers it
+    private static final String POSIX_RENAME = "posix-rename@openssh.com";
+
     private final Counter numSftpFilesRenamed;
 
     private final Counter numSftpFilesUploaded;
 
-    private ChannelSftp sftpConnection;
+    private final Map<LinkStrategy, Counter> numSftpFilesCreated = new EnumMap<>(LinkStrategy.class);
+
+    private final Map<LinkStrategy, AtomicLong> numSftpFilesCreatedPerSecond = new EnumMap<>(LinkStrategy.class);
+
+    private LinkStrategy linkStrategy = LinkStrategy.SYMLINK;
+
+    private volatile SftpChannelPool channelPool;
+
+    @Value("${sftp.pipeline.maxInFlight:1}")
+    private int pipelineMaxInFlight;
+
+    @Value("${sftp.connection.timeoutInMs:10000}")
+    private int connectionTimeoutInMs;
+
+    // remote directories known to exist, so creating them again costs no round-trip
+    private final Set<String> knownDirectories = ConcurrentHashMap.newKeySet();
+
+    /**
+     * An SFTP operation on a borrowed channel.
+     */
+    @FunctionalInterface
+    private interface SftpOperation<T> {
+        T apply(ChannelSftp channel) throws SftpException;
+    }
 
     /**
      * Constructor to build the metrics
@@ -59,43 +113,84 @@ public class SftpService {
     public SftpService(final MeterRegistry meterRegistry) {
         numSftpFilesRenamed = meterRegistry.counter("eric.oss.file.notification.enm.stub:sftp.files.renamed");
         numSftpFilesUploaded = meterRegistry.counter("eric.oss.file.notification.enm.stub:sftp.files.uploaded");
+        // per strategy, so that the throughput of each can be compared
+        for (final LinkStrategy strategy : LinkStrategy.values()) {
+            numSftpFilesCreated.put(strategy,
+                    meterRegistry.counter("eric.oss.file.notification.enm.stub:sftp.files.created." + strategy.getName()));
+            numSftpFilesCreatedPerSecond.put(strategy, meterRegistry.gauge(
+                    "eric.oss.file.notification.enm.stub:sftp.files.created." + strategy.getName() + ".per.second", new AtomicLong(0)));
+        }
     }
 
     /**
-     * Returns a true if the sftp connection is not a null, false if it is a null
+     * Sets how {@link #linkAll} creates the files of a ROP.
      *
-     * @return if the sftpConnection is a null
+     * @param linkStrategy symlink, hardlink or copy
+     */
+    @Value("${sftp.generation.linkStrategy:symlink}")
+    public void setLinkStrategy(final String linkStrategy) {
+        this.linkStrategy = LinkStrategy.fromName(linkStrategy);
+        LOG.info("Files of a ROP are created with strategy {}", this.linkStrategy.getName());
+    }
+
+    public LinkStrategy getLinkStrategy() {
+        return linkStrategy;
+    }
+
+    /**
+     * Returns true if the sftp connection pool has a connected channel, false if it has none or there is no pool
+     *
+     * @return if a sftpConnection is present
      */
     public boolean sftpConnectionPresent() {
-        if (sftpConnection != null) {
-            LOG.debug("SFTP Connection is available, isConnected = '{}'", sftpConnection.isConnected());
-            return sftpConnection.isConnected();
+        final SftpChannelPool pool = channelPool;
+        if (pool != null) {
+            LOG.debug("SFTP Connection pool is available, {} of {} channels idle", pool.getIdleCount(), pool.size());
+            return pool.isConnected();
         }
-        LOG.error("ERROR: No SFTP Connection available,  sftpConnection is '{}'", sftpConnection);
+        LOG.error("ERROR: No SFTP Connection available,  sftpConnection is '{}'", pool);
         return false;
     }
 
-    private ChannelSftp getSftpConnection() throws NoSftpConnectionException {
-        // get the ChannelSftp instance if present, else throw NoSftpConnectionException
-        if (sftpConnectionPresent()){
-            return sftpConnection;
+    private <T> T withChannel(final SftpOperation<T> operation) throws SftpException, NoSftpConnectionException {
+        // borrow a channel if present, else throw NoSftpConnectionException
+        final SftpChannelPool pool = channelPool;
+        if (pool == null) {
+            throw new NoSftpConnectionException("NoSftpConnectionException: SFTP Connection not present");
+        }
+        final ChannelSftp channel = pool.borrow();
+        try {
+            return operation.apply(channel);
+        } finally {
+            pool.release(channel);
         }
-        throw new NoSftpConnectionException("NoSftpConnectionException: SFTP Connection not present");
     }
 
     /**
      * Changes the permissions of one or several remote files.
      *
      * @param permissions The new permission pattern. This may be modified by a current mask before being applied.
-     * @param path A glob pattern of the files to be reowned, relative to the current remote directory.
+     * @param path A glob pattern of the files to be reowned, absolute or relative to the home directory.
      */
     public void chmodRemoteFile(final String permissions, String path) {
         path = toUnixPathSeparator(path);
-        LOG.info("Performing chmod '{}' on '{}'", permissions, path);
+        final String remotePath = path;
         try {
-            getSftpConnection().chmod(Integer.parseInt(permissions, 8), path);
+            withChannel(channel -> {
+                chmod(channel, permissions, remotePath);
+                return null;
+            });
         } catch (final SftpException | NoSftpConnectionException exception) {
             LOG.error("{}: ERROR changing file permissons '{}' on '{}'", exception.getMessage(), permissions, path);
+        }
+    }
+
+    private void chmod(final ChannelSftp channel, final String permissions, final String path) {
+        LOG.info("Performing chmod '{}' on '{}'", permissions, path);
+        try {
+            channel.chmod(Integer.parseInt(permissions, 8), path);
+        } catch (final SftpException exception) {
+            LOG.error("{}: ERROR changing file permissons '{}' on '{}'", exception.getMessage(), permissions, path);
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Error: Exception caught while changing file permissons: ", exception);
             }
@@ -103,69 +198,84 @@ public class SftpService {
     }
 
     /**
-     * Change directory to specified remote directory
+     * Checks that the specified remote directory exists. The remote working directory is not changed,
+     * operations take full paths.
      *
      * @param remotePath Full path of remote directory
+     * @deprecated the pooled channels share no working directory, use full paths instead
      */
+    @Deprecated
     public void cdToRemotePath(String remotePath) throws SftpException, NoSftpConnectionException {
         // do NOT catch here
         remotePath = toUnixPathSeparator(remotePath);
-        LOG.debug("Changing directory to '{}'", remotePath);
-        getSftpConnection().cd(remotePath);
+        final String directory = remotePath;
+        if (!withChannel(channel -> isDirectory(channel, directory))) {
+            throw new SftpException(ChannelSftp.SSH_FX_NO_SUCH_FILE, "No such directory: " + remotePath);
+        }
     }
 
-    private int cdToHighestCommonDirAndGetStartingIndexForDirCreation(
-                                                                      final List<String> remotePathDirs, final List<String> existingDirs)
-                                                                              throws SftpException, NoSftpConnectionException {
-        // move to the highest common dir and find starting index to start creating new directories from
-        int startingRemotePathDirIndex = 0;
-        for (final String existingDir: existingDirs) {
-            for (int remotePathDirIndex = startingRemotePathDirIndex;
-                    remotePathDirIndex < remotePathDirs.size(); remotePathDirIndex++) {
-
-                final String remotePathDir = remotePathDirs.get(remotePathDirIndex);
-                if (!existingDir.equals(remotePathDir)) {
-                    break;
-                }
-                cdToRemotePath(existingDir);
+    private static boolean isDirectory(final ChannelSftp channel, final String path) throws SftpException {
+        try {
+            return channel.stat(path).isDir();
+        } catch (final SftpException exception) {
+            if (exception.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                return false;
             }
-            startingRemotePathDirIndex++;
+            throw exception;
         }
-        return startingRemotePathDirIndex;
     }
 
-    private void createRequiredRemoteDirs(final List<String> remotePathDirs, final int remotePathDirStartingIndex, final String permissions)
-            throws SftpException, NoSftpConnectionException {
-        // create missing directories with the specified permissions
-        for (int remotePathDirIndex = remotePathDirStartingIndex;
-                remotePathDirIndex < remotePathDirs.size(); remotePathDirIndex++) {
-
-            final String directory = remotePathDirs.get(remotePathDirIndex);
-            if (directory.equalsIgnoreCase("")) {
-                continue;
+    private void mkdirs(final ChannelSftp channel, final String path, final String permissions) throws SftpException {
+        if (path.isEmpty() || knownDirectories.contains(path)) {
+            return;
+        }
+        final Path parent = Paths.get(path).getParent();
+        final String parentPath = parent == null ? null : toUnixPathSeparator(parent.toString());
+        if (parentPath != null && !parentPath.isEmpty() && !knownDirectories.contains(parentPath)) {
+            // not seen before, one stat when the directory exists, which is the common case, else the missing parents first
+            if (isDirectory(channel, path)) {
+                addKnownDirectory(path);
+                return;
             }
-            try {
-                cdToRemotePath(directory);
-            } catch (final SftpException | NoSftpConnectionException exception) {
-                // No such folder yet so create it and move to it for the next dir to be possibly created
-                LOG.info("{}: Remote directory '{}' does not exist, creating...",
-                        exception.getMessage() ,directory);
-                getSftpConnection().mkdir(directory);
-                chmodRemoteFile(permissions, directory);
-                cdToRemotePath(directory);
+            mkdirs(channel, parentPath, permissions);
+        }
+        // the parent exists, a single mkdir creates the directory
+        try {
+            LOG.info("Remote directory '{}' does not exist, creating...", path);
+            channel.mkdir(path);
+            chmod(channel, permissions, path);
+        } catch (final SftpException exception) {
+            if (!isDirectory(channel, path)) {
+                throw exception;
             }
+            // created before or by a concurrent operation
         }
+        knownDirectories.add(path);
     }
 
-    private List<String> getPathComponents(String path) {
-        path = toUnixPathSeparator(path);
-        final List<String> components = new ArrayList<>();
-        Paths.get(path).iterator().forEachRemaining(e -> components.add(String.valueOf(e)));
-        return components;
+    private void addKnownDirectory(final String path) {
+        // the parents of an existing directory exist too
+        Path directory = Paths.get(path);
+        while (directory != null && knownDirectories.add(toUnixPathSeparator(directory.toString()))) {
+            directory = directory.getParent();
+        }
     }
 
     /**
-     * Create a directory at remote path with the given permissions.
+     * Forgets that a remote directory and the directories below it exist, after an operation in it failed,
+     * so that they are checked and created again by the next operation.
+     *
+     * @param path the remote directory
+     */
+    private void invalidateKnownDirectory(final String path) {
+        if (path != null) {
+            final String prefix = path + UNIX_PATH_SEPARATOR;
+            knownDirectories.removeIf(directory -> directory.equals(path) || directory.startsWith(prefix));
+        }
+    }
+
+    /**
+     * Create a directory at remote path with the given permissions, and its missing parent directories.
      *
      * @param remotePath path of the directory to create.
      * @param permissions permissions for the directory.
@@ -173,24 +283,14 @@ public class SftpService {
     public void mkdirRemotePath(String remotePath, final String permissions) {
         remotePath = toUnixPathSeparator(remotePath);
         LOG.info("Creating remote directory '{}'", remotePath);
+        final String directory = remotePath;
         try {
-            final String originalWorkingDir = getSftpConnection().pwd();
-
-            // go to root if path provided is absolute
-            if (remotePath.startsWith(UNIX_PATH_SEPARATOR)) {
-                cdToRemotePath(UNIX_PATH_SEPARATOR);
-            }
-
-            // split path into a List of the path components
-            final List<String> remotePathDirs = getPathComponents(remotePath);
-            final List<String> existingDirs = getPathComponents(originalWorkingDir);
-
-            final int remotePathDirStartingIndex =
-                    cdToHighestCommonDirAndGetStartingIndexForDirCreation(remotePathDirs, existingDirs);
-            createRequiredRemoteDirs(remotePathDirs, remotePathDirStartingIndex, permissions);
-
-            cdToRemotePath(originalWorkingDir); //reset to the dir you were in already
+            withChannel(channel -> {
+                mkdirs(channel, directory, permissions);
+                return null;
+            });
         } catch (final SftpException | NoSftpConnectionException exception) {
+            invalidateKnownDirectory(remotePath);
             LOG.error("{}: Error creating remote directory '{}'", exception.getMessage(), remotePath);
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Error: Exception caught while creating remote directory: ", exception);
@@ -200,7 +300,8 @@ public class SftpService {
 
     /**
      * Uploads a file, maintaining the directory structure, from local path to the remote path and sets the
-     * permissions of the file.
+     * permissions of the file. The remote file gets the modification time of the local file, so that it can
+     * be told later whether the local file changed since.
      *
      * @param localPath The local source file name, absolute or relative to the current local directory.
      * @param remotePath The remote destination file name, absolute or relative to the current remote
@@ -211,14 +312,21 @@ public class SftpService {
         localPath = toUnixPathSeparator(localPath);
         remotePath = toUnixPathSeparator(remotePath);
         LOG.info("Uploading '{}' to '{}'", localPath, remotePath);
+        final String source = localPath;
+        final String destination = remotePath;
         try {
             final String remotePathBase = toUnixPathSeparator(new File(remotePath).getParent());
-            mkdirRemotePath(remotePathBase, permissions);
-            getSftpConnection().put(localPath, remotePath);
-            chmodRemoteFile(permissions, remotePath);
+            withChannel(channel -> {
+                mkdirs(channel, remotePathBase, permissions);
+                channel.put(source, destination);
+                chmod(channel, permissions, destination);
+                channel.setMtime(destination, (int) (new File(source).lastModified() / 1000));
+                return null;
+            });
             numSftpFilesUploaded.increment();
             return true;
         } catch (final SftpException | NoSftpConnectionException exception) {
+            invalidateKnownDirectory(toUnixPathSeparator(new File(remotePath).getParent()));
             LOG.error("{}: Error uploading file from '{}' to '{}'", exception.getMessage(), localPath, remotePath);
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Exception caught while uploading file: ", exception);
@@ -227,6 +335,62 @@ public class SftpService {
         }
     }
 
+    /**
+     * Uploads content to a remote file, maintaining the directory structure, and sets the permissions of the file.
+     *
+     * @param content The content of the file.
+     * @param remotePath The remote destination file name.
+     * @param permissions The new permission pattern. This may be modified by a current mask before being applied.
+     * @return true, if successful
+     */
+    public boolean upload(final byte[] content, String remotePath, final String permissions) {
+        remotePath = toUnixPathSeparator(remotePath);
+        LOG.info("Uploading {} bytes to '{}'", content.length, remotePath);
+        final String destination = remotePath;
+        try {
+            final String remotePathBase = getParent(remotePath);
+            withChannel(channel -> {
+                if (remotePathBase != null) {
+                    mkdirs(channel, remotePathBase, permissions);
+                }
+                channel.put(new ByteArrayInputStream(content), destination);
+                chmod(channel, permissions, destination);
+                return null;
+            });
+            return true;
+        } catch (final SftpException | NoSftpConnectionException exception) {
+            invalidateKnownDirectory(getParent(remotePath));
+            LOG.error("{}: Error uploading to '{}'", exception.getMessage(), remotePath);
+            return false;
+        }
+    }
+
+    /**
+     * Downloads a remote file.
+     *
+     * @param remotePath The remote file name.
+     * @return the content of the file, null if it is not there or cannot be read
+     */
+    public byte[] download(String remotePath) {
+        remotePath = toUnixPathSeparator(remotePath);
+        LOG.info("Downloading '{}'", remotePath);
+        final String source = remotePath;
+        try {
+            return withChannel(channel -> {
+                final ByteArrayOutputStream content = new ByteArrayOutputStream();
+                channel.get(source, content);
+                return content.toByteArray();
+            });
+        } catch (final SftpException exception) {
+            if (exception.id != ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                LOG.error("{}: Error downloading '{}'", exception.getMessage(), remotePath);
+            }
+        } catch (final NoSftpConnectionException exception) {
+            LOG.error("{}: Error downloading '{}'", exception.getMessage(), remotePath);
+        }
+        return null;
+    }
+
     /**
      * Creates a symlink between remote files, maintaining the directory structure and sets the
      * permissions of the file.
@@ -239,26 +403,44 @@ public class SftpService {
      * @param permissions
      *            The new permission pattern. This may be modified by a current mask before being applied.
      *
-     * @return true, if successful
+     * @return SUCCESS if created, EXIST if the symlink was already there, else FAILED
      */
     public SymlinkResult symlink(String sourceFile, String linkedFile, final String permissions) {
         sourceFile = toUnixPathSeparator(sourceFile);
         linkedFile = toUnixPathSeparator(linkedFile);
         LOG.info("Creating symlink from '{}' to '{}'", sourceFile, linkedFile);
-        // IN manual mode, the ROP generation may be triggered, multiple times in the same ROP.
-        // No need to re-create the symlink if its already there.
-        if (doesSymLinkExists(linkedFile)) {
-            LOG.info("Symlink Already exists, will not re-create");
-            return SymlinkResult.EXIST;
-        }
+        final String source = sourceFile;
+        final String link = linkedFile;
         try {
-            final String parentDirectory = String.valueOf(Paths.get(linkedFile).getParent());
-            mkdirRemotePath(parentDirectory, permissions);
-            getSftpConnection().symlink(sourceFile, linkedFile); // no need to chmod, sourceFile perms apply
-            numSftpFilesRenamed.increment();
-            LOG.info("Symlink created successfully");
-            return SymlinkResult.SUCCESS;
+            return withChannel(channel -> {
+                final String parent = getParent(link);
+                if (parent != null) {
+                    mkdirs(channel, parent, permissions);
+                }
+                try {
+                    // created optimistically, the symlink almost never exists, so it is not checked first
+                    channel.symlink(source, link); // no need to chmod, sourceFile perms apply
+                } catch (final SftpException exception) {
+                    // IN manual mode, the ROP generation may be triggered, multiple times in the same ROP.
+                    // No need to re-create the symlink if its already there.
+                    if (exception.id == ChannelSftp.SSH_FX_FAILURE && doesSymLinkExists(channel, link)) {
+                        LOG.info("Symlink Already exists, will not re-create");
+                        return SymlinkResult.EXIST;
+                    }
+                    if (exception.id != ChannelSftp.SSH_FX_NO_SUCH_FILE || parent == null) {
+                        throw exception;
+                    }
+                    // the parent directory was removed since it was known, created again for one more attempt
+                    invalidateKnownDirectory(parent);
+                    mkdirs(channel, parent, permissions);
+                    channel.symlink(source, link);
+                }
+                numSftpFilesRenamed.increment();
+                LOG.info("Symlink created successfully");
+                return SymlinkResult.SUCCESS;
+            });
         } catch (final SftpException sftpException) {
+            invalidateKnownDirectory(getParent(linkedFile));
             LOG.error("{} {}: Error, Sftp Exception when creating symlink from '{}' to '{}'", sftpException.getMessage(), sftpException.id,
                     sourceFile,
                     linkedFile);
@@ -274,6 +456,195 @@ public class SftpService {
     }
 
 
+    /**
+     * Creates the files of a ROP from remote files with the configured {@link LinkStrategy}, maintaining the
+     * directory structure. Hardlinks and copies are always created with SFTP requests in flight on a channel
+     * of their own, as {@link ChannelSftp} cannot copy on the server.
+     *
+     * @param links
+     *            The files to create.
+     * @param permissions
+     *            The permission pattern of the directories and copies created.
+     *
+     * @return the result of each file, in the order of the links, null for those not attempted after a
+     *         failure
+     */
+    public List<SymlinkResult> linkAll(final List<? extends LinkSpec> links, final String permissions) {
+        final LinkStrategy strategy = linkStrategy;
+        if (strategy == LinkStrategy.SYMLINK || links.isEmpty()) {
+            return symlinkAll(links, permissions);
+        }
+        return createAll(strategy, links, permissions);
+    }
+
+    /**
+     * Creates symlinks between remote files, maintaining the directory structure, keeping many SFTP requests
+     * in flight on a channel of its own rather than waiting for each symlink before sending the next.
+     * Without sftp.pipeline.maxInFlight above one, the symlinks are created one at a time.
+     *
+     * @param links
+     *            The symlinks to create.
+     * @param permissions
+     *            The permission pattern of the directories created.
+     *
+     * @return the result of each symlink, in the order of the links, null for those not attempted after a
+     *         failure
+     */
+    public List<SymlinkResult> symlinkAll(final List<? extends LinkSpec> links, final String permissions) {
+        if (pipelineMaxInFlight <= 1 || links.size() <= 1) {
+            final long startTime = System.nanoTime();
+            final List<SymlinkResult> results = new ArrayList<>(links.size());
+            for (final LinkSpec link : links) {
+                final SymlinkResult result = symlink(link.getSourceFile(), link.getLinkedFile(), permissions);
+                results.add(result);
+                if (result == SymlinkResult.FAILED) {
+                    break;
+                }
+            }
+            recordFilesCreated(LinkStrategy.SYMLINK, results.stream().filter(result -> result == SymlinkResult.SUCCESS).count(),
+                    startTime);
+            return Arrays.asList(results.toArray(new SymlinkResult[links.size()]));
+        }
+        return createAll(LinkStrategy.SYMLINK, links, permissions);
+    }
+
+    private List<SymlinkResult> createAll(final LinkStrategy strategy, final List<? extends LinkSpec> links, final String permissions) {
+        LOG.info("Creating {} files with strategy {}", links.size(), strategy.getName());
+        final SymlinkResult[] results = new SymlinkResult[links.size()];
+        Arrays.fill(results, SymlinkResult.FAILED);
+        try {
+            withChannel(channel -> {
+                try (SftpPipeline pipeline = SftpPipeline.open(channel.getSession(), connectionTimeoutInMs, pipelineMaxInFlight)) {
+                    createAll(channel, pipeline, strategy, links, permissions, results);
+                } catch (final JSchException | IOException exception) {
+                    throw new SftpException(ChannelSftp.SSH_FX_CONNECTION_LOST, exception.getMessage(), exception);
+                }
+                return null;
+            });
+        } catch (final SftpException | NoSftpConnectionException exception) {
+            LOG.error("{}: Error creating {} files with strategy {}", exception.getMessage(), links.size(), strategy.getName());
+            logException(exception);
+        }
+        return Arrays.asList(results);
+    }
+
+    private void createAll(final ChannelSftp channel, final SftpPipeline pipeline, final LinkStrategy strategy,
+            final List<? extends LinkSpec> links, final String permissions, final SymlinkResult[] results) throws SftpException, IOException {
+        // the parents of the missing directories are few and shared, created as usual, the directories in one pass
+        final Set<String> missingDirectories = new LinkedHashSet<>();
+        links.forEach(link -> {
+            final String parent = getParent(link.getLinkedFile());
+            if (parent != null && !knownDirectories.contains(parent)) {
+                missingDirectories.add(parent);
+            }
+        });
+        for (final String directory : missingDirectories) {
+            final String parent = getParent(directory);
+            if (parent != null) {
+                mkdirs(channel, parent, permissions);
+            }
+        }
+        final List<String> directories = new ArrayList<>(missingDirectories);
+        final int[] mkdirStatus = pipeline.mkdir(directories);
+        final List<String> createdDirectories = new ArrayList<>();
+        for (int i = 0; i < mkdirStatus.length; i++) {
+            if (mkdirStatus[i] == SftpPipeline.SSH_FX_OK) {
+                createdDirectories.add(directories.get(i));
+            } // else most likely there already, the files in it tell
+        }
+        pipeline.chmod(createdDirectories, Integer.parseInt(permissions, 8));
+        knownDirectories.addAll(createdDirectories);
+
+        final long startTime = System.nanoTime();
+        final int[] status;
+        switch (strategy) {
+            case HARDLINK:
+                status = pipeline.hardlink(resolveSources(pipeline, links));
+                break;
+            case COPY:
+                status = pipeline.copy(links, Integer.parseInt(permissions, 8));
+                break;
+            default:
+                status = pipeline.symlink(links);
+                break;
+        }
+        final List<Integer> maybeExisting = new ArrayList<>();
+        int created = 0;
+        for (int i = 0; i < status.length; i++) {
+            if (status[i] == SftpPipeline.SSH_FX_OK) {
+                results[i] = SymlinkResult.SUCCESS;
+                created++;
+            } else if (status[i] == ChannelSftp.SSH_FX_FAILURE) {
+                maybeExisting.add(i);
+            } else {
+                LOG.error("{}: Error creating {} from '{}' to '{}'", status[i], strategy.getName(), links.get(i).getSourceFile(),
+                        links.get(i).getLinkedFile());
+                invalidateKnownDirectory(getParent(links.get(i).getLinkedFile()));
+            }
+        }
+        numSftpFilesRenamed.increment(created);
+        recordFilesCreated(strategy, created, startTime);
+
+        // IN manual mode, the ROP generation may be triggered, multiple times in the same ROP.
+        final List<String> maybeExistingFiles = new ArrayList<>(maybeExisting.size());
+        maybeExisting.forEach(i -> maybeExistingFiles.add(links.get(i).getLinkedFile()));
+        final int[] existing = pipeline.lstat(maybeExistingFiles);
+        int alreadyExisting = 0;
+        for (int i = 0; i < existing.length; i++) {
+            if (strategy.isCreatedFile(existing[i])) {
+                results[maybeExisting.get(i)] = SymlinkResult.EXIST;
+                alreadyExisting++;
+            } else {
+                LOG.error("Error creating {} '{}'", strategy.getName(), maybeExistingFiles.get(i));
+            }
+        }
+
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] != SymlinkResult.FAILED) {
+                final String parent = getParent(links.get(i).getLinkedFile());
+                if (parent != null) {
+                    knownDirectories.add(parent);
+                }
+            }
+        }
+        LOG.info("Created {} files with strategy {}, {} already existed", created, strategy.getName(), alreadyExisting);
+    }
+
+    /**
+     * Replaces the sources by the files they resolve to, so that a hardlink to a symlinked bin file is a
+     * hardlink to its content rather than to the symlink.
+     */
+    private static List<LinkSpec> resolveSources(final SftpPipeline pipeline, final List<? extends LinkSpec> links) throws IOException {
+        final List<String> sources = links.stream().map(LinkSpec::getSourceFile).distinct().collect(Collectors.toList());
+        final String[] resolved = pipeline.realpath(sources);
+        final Map<String, String> resolvedSources = new LinkedHashMap<>();
+        for (int i = 0; i < resolved.length; i++) {
+            resolvedSources.put(sources.get(i), resolved[i] == null ? sources.get(i) : resolved[i]);
+        }
+        final List<LinkSpec> resolvedLinks = new ArrayList<>(links.size());
+        for (final LinkSpec link : links) {
+            final String source = resolvedSources.get(link.getSourceFile());
+            final String linkedFile = link.getLinkedFile();
+            resolvedLinks.add(new LinkSpec() {
+                @Override
+                public String getSourceFile() {
+                    return source;
+                }
+
+                @Override
+                public String getLinkedFile() {
+                    return linkedFile;
+                }
+            });
+        }
+        return resolvedLinks;
+    }
+
+    private static String getParent(final String path) {
+        final Path parent = Paths.get(path).getParent();
+        return parent == null ? null : toUnixPathSeparator(parent.toString());
+    }
+
     /**
      * Return a List of {@link ChannelSftp.LsEntry} of everything in the specified remote path
      *
@@ -284,8 +655,13 @@ public class SftpService {
         remotePath = toUnixPathSeparator(remotePath);
         LOG.info("Getting list of items on remote path '{}'", remotePath);
         List<ChannelSftp.LsEntry> list = new ArrayList<>();
+        final String path = remotePath;
         try {
-            list = new ArrayList<>(getSftpConnection().ls(remotePath));
+            list = withChannel(channel -> {
+                @SuppressWarnings("unchecked")
+                final List<ChannelSftp.LsEntry> entries = new ArrayList<>(channel.ls(path));
+                return entries;
+            });
         } catch (final SftpException | NoSftpConnectionException exception) {
             LOG.error("{}: Error getting list of items on remote path '{}'", exception.getMessage(), remotePath);
             if (LOG.isDebugEnabled()) {
@@ -304,22 +680,127 @@ public class SftpService {
     public List<String> listRemoteFilePaths(String remotePath){
         remotePath = toUnixPathSeparator(remotePath);
         LOG.info("Getting list of file paths on remote path '{}'", remotePath);
-        return listDirectoryRecursive(remotePath, new ArrayList<>());
+        return new ArrayList<>(listDirectoryRecursive(remotePath).keySet());
+    }
+
+    /**
+     * Return the attributes of the files in the specified remote path, keyed by file path, as read by the
+     * directory listing. Symlinks are listed as symlinks, not followed, so no file is stat-ed on its own.
+     * The directories of a level of the tree are listed in parallel on the channels of the pool.
+     *
+     * @param remotePath The remote path.
+     * @return Map of file paths to their attributes, in listing order, a level of the tree at a time.
+     */
+    public Map<String, SftpATTRS> listRemoteFiles(String remotePath){
+        remotePath = toUnixPathSeparator(remotePath);
+        LOG.info("Getting list of files on remote path '{}'", remotePath);
+        return listDirectoryRecursive(remotePath);
+    }
+
+    /**
+     * Tells whether {@link #rename} replaces an existing file, as the server offers the {@value #POSIX_RENAME}
+     * extension.
+     *
+     * @return true if a rename replaces the file at the new path
+     */
+    public boolean isPosixRenameSupported() {
+        try {
+            return withChannel(channel -> "1".equals(channel.getExtension(POSIX_RENAME)));
+        } catch (final SftpException | NoSftpConnectionException e) {
+            LOG.error("Error checking the SFTP extensions with logs: {}", e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Renames a file on the remote server. Unless {@link #isPosixRenameSupported}, fails if the new path exists.
+     *
+     * @param remotePath The remote path.
+     * @param newRemotePath The new remote path.
+     * @return true if renamed
+     */
+    public boolean rename(String remotePath, String newRemotePath) {
+        remotePath = toUnixPathSeparator(remotePath);
+        newRemotePath = toUnixPathSeparator(newRemotePath);
+        LOG.info("Renaming remote file '{}' to '{}'", remotePath, newRemotePath);
+        final String path = remotePath;
+        final String newPath = newRemotePath;
+        try {
+            withChannel(channel -> {
+                channel.rename(path, newPath);
+                return null;
+            });
+            return true;
+        } catch (final SftpException | NoSftpConnectionException e) {
+            LOG.error("Error renaming file {} to {} with logs: {}", remotePath, newRemotePath, e);
+        }
+        return false;
     }
 
     /**
      * Remove a file on the remote server
      *
      * @param remotePath The remote path.
+     * @return true if removed or not there
      */
-    public void rm(String remotePath){
+    public boolean rm(String remotePath){
         remotePath = toUnixPathSeparator(remotePath);
         LOG.info("Removing remote file '{}'", remotePath);
+        final String path = remotePath;
         try {
-            sftpConnection.rm(remotePath);
+            withChannel(channel -> {
+                channel.rm(path);
+                return null;
+            });
+            return true;
         } catch (final SftpException e) {
+            if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                return true;
+            }
             LOG.error("Error removing file {} with logs: {}", remotePath, e);
+        } catch (final NoSftpConnectionException e) {
+            LOG.error("Error removing file {} with logs: {}", remotePath, e);
+        }
+        return false;
+    }
+
+    /**
+     * Removes files on the remote server, keeping many SFTP requests in flight on a channel of its own, which
+     * is not taken from the channels of the other operations. Without sftp.pipeline.maxInFlight above one,
+     * the files are removed one at a time.
+     *
+     * @param remotePaths The remote paths.
+     * @return the paths not removed, files not there count as removed
+     */
+    public List<String> rmAll(final Collection<String> remotePaths) {
+        if (pipelineMaxInFlight <= 1 || remotePaths.size() <= 1) {
+            return remotePaths.stream().filter(path -> !rm(path)).collect(Collectors.toList());
         }
+        final List<String> requested = new ArrayList<>(remotePaths);
+        final List<String> paths = requested.stream().map(path -> toUnixPathSeparator(path)).collect(Collectors.toList());
+        try (SftpPipeline pipeline = openPipeline()) {
+            final int[] status = pipeline.remove(paths);
+            final List<String> notRemoved = new ArrayList<>();
+            for (int i = 0; i < status.length; i++) {
+                if (status[i] != SftpPipeline.SSH_FX_OK && status[i] != ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                    LOG.error("{}: Error removing file {}", status[i], paths.get(i));
+                    notRemoved.add(requested.get(i));
+                }
+            }
+            LOG.info("Removed {} remote files", paths.size() - notRemoved.size());
+            return notRemoved;
+        } catch (final JSchException | IOException | NoSftpConnectionException exception) {
+            LOG.error("{}: Error removing {} remote files", exception.getMessage(), paths.size());
+            return requested;
+        }
+    }
+
+    private SftpPipeline openPipeline() throws JSchException, IOException, NoSftpConnectionException {
+        final SftpChannelPool pool = channelPool;
+        if (pool == null) {
+            throw new NoSftpConnectionException("NoSftpConnectionException: SFTP Connection not present");
+        }
+        return SftpPipeline.open(pool.getSession(), connectionTimeoutInMs, pipelineMaxInFlight);
     }
 
     /**
@@ -327,15 +808,17 @@ public class SftpService {
      * check the 'stats' of the remote symlink. If the link does not exist, it throws exception, so
      * symlink does not exist.
      *
+     * @param channel
+     *            the borrowed channel
      * @param pathToSymLink
      *            the path to sym link
      *
      * @return true, if successful
      */
-    private boolean doesSymLinkExists(final String pathToSymLink) {
+    private boolean doesSymLinkExists(final ChannelSftp channel, final String pathToSymLink) {
         SftpATTRS symLinkStats = null;
         try {
-            symLinkStats = getSftpConnection().lstat(pathToSymLink);
+            symLinkStats = channel.lstat(pathToSymLink);
         } catch (final SftpException sftpException) {
             if (sftpException.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
                 return false;
@@ -343,10 +826,6 @@ public class SftpService {
             LOG.error("{} {}: Error, Sftp Exception when checking if symlink exists:'{}'", sftpException.getMessage(), sftpException.id,
                     pathToSymLink);
             logException(sftpException);
-        } catch (final NoSftpConnectionException noSftpConnectionException) {
-            LOG.error("{}: Error, No Sftp Connection Exception when checking if symlink exists:'{}'", noSftpConnectionException.getMessage(),
-                    pathToSymLink);
-            logException(noSftpConnectionException);
         }
         LOG.debug("SFTP_ATTRIBUTES {}: isSymLink {}:  {}", symLinkStats,
                 (symLinkStats == null ? "null" : symLinkStats.isLink()), pathToSymLink);
@@ -360,28 +839,99 @@ public class SftpService {
         }
     }
 
-    private List<String> listDirectoryRecursive(String remotePath, final List<String> list) {
-        // gets absolute paths for every file under the given remotePath
+    /**
+     * Gets the absolute paths and attributes of every file under a remote path. The directories are listed a
+     * level at a time, each level in parallel on the channels of the pool, as one listing is a round-trip and a
+     * ROP tree holds a directory per node.
+     */
+    private Map<String, SftpATTRS> listDirectoryRecursive(String remotePath) {
         remotePath = toUnixPathSeparator(remotePath);
         if (!remotePath.endsWith(UNIX_PATH_SEPARATOR)) {
             remotePath += UNIX_PATH_SEPARATOR;
         }
-        final List<ChannelSftp.LsEntry> files = new ArrayList<>(listRemotePath(remotePath));
-
-        for (final ChannelSftp.LsEntry entry : files) {
-            if (!entry.getAttrs().isDir()) {
-                list.add(remotePath + entry.getFilename());
-            } else {
-                if (!entry.getFilename().equals(".") && !entry.getFilename().equals("..")) {
-                    listDirectoryRecursive(remotePath + entry.getFilename(), list);
+        final Map<String, SftpATTRS> files = new LinkedHashMap<>();
+        final SftpChannelPool pool = channelPool;
+        final int listers = pool == null ? 1 : pool.size();
+        final ExecutorService executor = listers > 1 ? Executors.newFixedThreadPool(listers, runnable -> {
+            final Thread thread = new Thread(runnable, "sftp-list");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+        try {
+            List<String> directories = Collections.singletonList(remotePath);
+            while (!directories.isEmpty()) {
+                final List<String> subdirectories = new ArrayList<>();
+                final List<Future<List<ChannelSftp.LsEntry>>> listings = new ArrayList<>(directories.size());
+                if (executor != null) {
+                    directories.forEach(directory -> listings.add(executor.submit(() -> listRemotePath(directory))));
+                }
+                for (int i = 0; i < directories.size(); i++) {
+                    final String directory = directories.get(i);
+                    final List<ChannelSftp.LsEntry> entries = executor == null ? listRemotePath(directory) : listings.get(i).get();
+                    for (final ChannelSftp.LsEntry entry : entries) {
+                        if (!entry.getAttrs().isDir()) {
+                            files.put(directory + entry.getFilename(), entry.getAttrs());
+                        } else if (!entry.getFilename().equals(".") && !entry.getFilename().equals("..")) {
+                            subdirectories.add(directory + entry.getFilename() + UNIX_PATH_SEPARATOR);
+                        }
+                    }
                 }
+                directories = subdirectories;
+            }
+        } catch (final ExecutionException exception) {
+            LOG.error("Error getting list of files on remote path '{}'", remotePath, exception.getCause());
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            LOG.error("Interrupted getting list of files on remote path '{}'", remotePath);
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
             }
         }
-        return list;
+        return files;
     }
 
     public void setSftpConnection(final ChannelSftp sftpConnection) {
-        this.sftpConnection = sftpConnection;
+        setChannelPool(new SftpChannelPool(Collections.singletonList(sftpConnection), DEFAULT_BORROW_TIMEOUT_MS));
+    }
+
+    /**
+     * Replaces the pool of channels the operations run on, closing the previous pool. The remote directories
+     * known to exist are forgotten.
+     *
+     * @param channelPool the new pool
+     */
+    public void setChannelPool(final SftpChannelPool channelPool) {
+        final SftpChannelPool previous = this.channelPool;
+        this.channelPool = channelPool;
+        knownDirectories.clear(); // possibly another server
+        if (previous != null && previous != channelPool) {
+            previous.close();
+        }
+    }
+
+    public SftpChannelPool getChannelPool() {
+        return channelPool;
+    }
+
+    /**
+     * Counts the files of a ROP created outside the SFTP operations of this service.
+     *
+     * @param strategy how they were created
+     * @param count the number of files created
+     * @param startTime the {@link System#nanoTime()} their creation started
+     */
+    void incrementFilesCreated(final LinkStrategy strategy, final long count, final long startTime) {
+        numSftpFilesRenamed.increment(count);
+        recordFilesCreated(strategy, count, startTime);
+    }
+
+    private void recordFilesCreated(final LinkStrategy strategy, final long count, final long startTime) {
+        if (count > 0) {
+            numSftpFilesCreated.get(strategy).increment(count);
+            final long elapsedNanos = Math.max(1, System.nanoTime() - startTime);
+            numSftpFilesCreatedPerSecond.get(strategy).set(count * 1_000_000_000L / elapsedNanos);
+        }
     }
 
 }
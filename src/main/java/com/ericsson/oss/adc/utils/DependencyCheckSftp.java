@@ -15,6 +15,10 @@
  ******************************************************************************/
 package com.ericsson.oss.adc.utils;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,7 +26,10 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import com.ericsson.oss.adc.config.SftpServer;
+import com.ericsson.oss.adc.controller.health.HealthCheck;
+import com.ericsson.oss.adc.services.SftpChannelPool;
 import com.ericsson.oss.adc.services.SftpService;
+import com.jcraft.jsch.ChannelSftp;
 import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.Session;
 
@@ -30,12 +37,33 @@ import com.jcraft.jsch.Session;
  * The Class DependencyCheckSftp.
  * This class will force the STUB to wait for the SFTP-Server to come on line.
  * It retries connection until it succeeds.
- *
+ * <p>
+ * The session which found the server reachable becomes the first session of the channel pool, so a
+ * reconnect costs one SSH handshake. Sessions send keepalives, so a server gone silently is noticed. Retries
+ * back off exponentially with jitter, and after a number of failed deployments in a row a circuit breaker
+ * stops further attempts for a while, failing the {@link HealthCheck} until a connection is made again.
  */
 @Component
 public class DependencyCheckSftp {
     private static final Logger LOGGER = LoggerFactory.getLogger(DependencyCheckSftp.class);
 
+    static final String CIRCUIT_OPEN_MESSAGE = "SFTP Server unreachable, connection attempts suspended";
+
+    /**
+     * The state of the circuit breaker around the connection attempts.
+     */
+    public enum CircuitState {
+        /** Connections attempted with every retry. */
+        CLOSED,
+        /** Too many failed deployments, no attempt until the circuit was open long enough. */
+        OPEN,
+        /** Open long enough, the next deployment tries once. */
+        HALF_OPEN
+    }
+
+    @Autowired(required = false)
+    private HealthCheck healthCheck;
+
     @Autowired
     private SftpService sftpService;
 
@@ -51,6 +79,46 @@ public class DependencyCheckSftp {
     @Value("${sftp.password}")
     private String sftpPassword;
 
+    @Value("${sftp.pool.sessions:1}")
+    private int poolSessions = 1;
+
+    @Value("${sftp.pool.channelsPerSession:4}")
+    private int poolChannelsPerSession = 4;
+
+    @Value("${sftp.pool.maxChannelsPerSession:10}")
+    private int poolMaxChannelsPerSession = 10;
+
+    @Value("${sftp.generation.workers:1}")
+    private int generationWorkers = 1;
+
+    @Value("${sftp.pool.borrowTimeoutMs:" + SftpService.DEFAULT_BORROW_TIMEOUT_MS + "}")
+    private long poolBorrowTimeoutMs = SftpService.DEFAULT_BORROW_TIMEOUT_MS;
+
+    @Value("${sftp.connection.keepAlive.intervalMs:15000}")
+    private int keepAliveIntervalMs = 15000;
+
+    @Value("${sftp.connection.keepAlive.countMax:3}")
+    private int keepAliveCountMax = 3;
+
+    @Value("${sftp.connection.backoff.initialMs:250}")
+    private long backoffInitialMs = 250;
+
+    @Value("${sftp.connection.backoff.maxMs:8000}")
+    private long backoffMaxMs = 8000;
+
+    @Value("${sftp.connection.circuit.failureThreshold:3}")
+    private int circuitFailureThreshold = 3;
+
+    @Value("${sftp.connection.circuit.openMs:60000}")
+    private long circuitOpenMs = 60000;
+
+    // the connected session of the last successful check, not yet in a pool
+    private Session probeSession;
+
+    private int consecutiveFailures;
+
+    private long circuitOpenUntilMs;
+
     /**
      * Instantiates a new dependency check sftp.
      */
@@ -84,7 +152,9 @@ public class DependencyCheckSftp {
 
     /**
      * Deploy sftp.
-     * Connect to the SFTP Server and make that instance available to the SFTP Service for use elsewhere.
+     * Connect to the SFTP Server and make a pool of channels over the configured number of sessions
+     * available to the SFTP Service for use elsewhere. While the circuit breaker is open nothing is attempted,
+     * and once half open a single connection is attempted.
      *
      * @param connectionTimeoutInMs
      *            the connection timeout in ms
@@ -93,24 +163,55 @@ public class DependencyCheckSftp {
      *
      * @return true, if successful
      */
-    public boolean deploySftp(final int connectionTimeoutInMs, final int connectionRetryCountMax) {
-        if (sftpServerDeployed(connectionTimeoutInMs, connectionRetryCountMax)) {
+    public synchronized boolean deploySftp(final int connectionTimeoutInMs, final int connectionRetryCountMax) {
+        final CircuitState circuitState = getCircuitState();
+        if (circuitState == CircuitState.OPEN) {
+            LOGGER.warn("Dependency Check: SFTP Server connection attempts suspended for another {} ms after {} failed deployments",
+                    circuitOpenUntilMs - System.currentTimeMillis(), consecutiveFailures);
+            return false;
+        }
+        final int retryCountMax = circuitState == CircuitState.HALF_OPEN ? 1 : connectionRetryCountMax;
+        if (sftpServerDeployed(connectionTimeoutInMs, retryCountMax)) {
             LOGGER.info("Dependency Check: SFTP Server is available, trying to establish a connection.");
-            final com.jcraft.jsch.ChannelSftp sftpConnection = SftpServer.getSftpConnection(sftpUser, sftpHost, sftpPort, sftpPassword);
-            if (sftpConnection == null) {
+            final List<ChannelSftp> channels = new ArrayList<>();
+            final int channelsPerSession = getPooledChannelsPerSession(poolChannelsPerSession, generationWorkers,
+                    poolMaxChannelsPerSession);
+            final Session session = probeSession;
+            probeSession = null;
+            if (session != null) {
+                channels.addAll(SftpServer.openChannels(session, channelsPerSession));
+                if (channels.isEmpty()) {
+                    session.disconnect();
+                }
+            }
+            for (int sessions = channels.isEmpty() ? 0 : 1; sessions < Math.max(1, poolSessions); sessions++) {
+                final ChannelSftp sftpConnection = SftpServer.getSftpConnection(sftpUser, sftpHost, sftpPort, sftpPassword);
+                if (sftpConnection == null) {
+                    break;
+                }
+                setKeepAlive(sftpConnection);
+                channels.add(sftpConnection);
+                channels.addAll(SftpServer.openChannels(sftpConnection, channelsPerSession - 1));
+            }
+            if (channels.isEmpty()) {
                 LOGGER.info("Dependency Check: ERROR with SFTP Server: SFTP Server seems to be available but cannot connect;  sftpConnection = {}",
-                        sftpConnection);
+                        (Object) null);
+                recordDeployment(false);
                 return false;
             }
-            sftpService.setSftpConnection(sftpConnection);
+            LOGGER.info("Dependency Check: Connected {} SFTP channels", channels.size());
+            sftpService.setChannelPool(new SftpChannelPool(channels, poolBorrowTimeoutMs));
         }
-        return checkConnected();
+        final boolean connected = checkConnected();
+        recordDeployment(connected);
+        return connected;
     }
 
     /**
      * Sftp server deployed.
      * Check if the SFTP Server is deployed, by attempting to connect.
-     * Retry a configurable number of times.
+     * Retry a configurable number of times, backing off exponentially between attempts.
+     * The connected session is kept for the next deployment.
      *
      * @param connectionTimeoutInMs
      *            the connection timeout in ms
@@ -119,7 +220,7 @@ public class DependencyCheckSftp {
      *
      * @return true, if successful
      */
-    public boolean sftpServerDeployed(final int connectionTimeoutInMs, final int connectionRetryCountMax) {
+    public synchronized boolean sftpServerDeployed(final int connectionTimeoutInMs, final int connectionRetryCountMax) {
         LOGGER.info("Check SFTP Server Deployed:  Check connection using '{}@{}:{}'", sftpUser, sftpHost,
                 sftpPort);
         Session jschSession = null;
@@ -130,7 +231,10 @@ public class DependencyCheckSftp {
                 isReachable = jschSession == null ? false : isJschConnected(jschSession);
                 if (isReachable) {
                     LOGGER.info("Check SFTP Server Deployed: Sftp Server is reachable");
-                    jschSession = removeSession(jschSession);
+                    setKeepAlive(jschSession);
+                    removeSession(probeSession);
+                    probeSession = jschSession;
+                    jschSession = null;
                     return true;
                 }
             } catch (final JSchException jSchException) {
@@ -143,11 +247,112 @@ public class DependencyCheckSftp {
                 jschSession = removeSession(jschSession);
             }
             LOGGER.info("Check SFTP Server Deployed: Retry {}/{}, Sftp Server isReachable = {}", i + 1, connectionRetryCountMax, isReachable);
-            Utilities.waitaBit(1000);
+            if (i + 1 < connectionRetryCountMax) {
+                Utilities.waitaBit(backoffDelayMs(i, backoffInitialMs, backoffMaxMs));
+            }
         }
         return isReachable;
     }
 
+    /**
+     * Gets the state of the circuit breaker.
+     *
+     * @return the state
+     */
+    public synchronized CircuitState getCircuitState() {
+        if (consecutiveFailures < Math.max(1, circuitFailureThreshold)) {
+            return CircuitState.CLOSED;
+        }
+        return System.currentTimeMillis() < circuitOpenUntilMs ? CircuitState.OPEN : CircuitState.HALF_OPEN;
+    }
+
+    /**
+     * Gets the number of channels to pool on each session, leaving room on the session for the channels opened
+     * beside the pool: a pipeline or exec channel for each generation worker, one for the retention cleaner and
+     * one spare. They are opened on the session of any pooled channel, so each session keeps room for all of
+     * them. The server refuses channels beyond its MaxSessions.
+     *
+     * @param channelsPerSession
+     *            the configured channels of the pool per session
+     * @param generationWorkers
+     *            the generation workers
+     * @param maxChannelsPerSession
+     *            the channels the server allows on a session
+     *
+     * @return the channels to pool per session, at least one
+     */
+    static int getPooledChannelsPerSession(final int channelsPerSession, final int generationWorkers, final int maxChannelsPerSession) {
+        final int room = maxChannelsPerSession - Math.max(1, generationWorkers) - 2;
+        final int pooled = Math.max(1, Math.min(channelsPerSession, room));
+        if (pooled < channelsPerSession) {
+            LOGGER.warn("Dependency Check: {} SFTP channels pooled per session instead of {}, the {} generation workers need room"
+                    + " within the {} channels allowed on a session", pooled, channelsPerSession, generationWorkers, maxChannelsPerSession);
+        }
+        if (room < 1) {
+            LOGGER.error("Dependency Check: {} generation workers need more channels than the {} allowed on a session",
+                    generationWorkers, maxChannelsPerSession);
+        }
+        return pooled;
+    }
+
+    /**
+     * Gets the wait before a retry, growing exponentially up to a maximum, with a random jitter of up to
+     * half of it so that clients restarted together do not retry in step.
+     *
+     * @param attempt
+     *            the number of the failed attempt, from 0
+     * @param initialMs
+     *            the wait after the first attempt, without jitter
+     * @param maxMs
+     *            the maximum wait
+     *
+     * @return the wait in ms
+     */
+    static long backoffDelayMs(final int attempt, final long initialMs, final long maxMs) {
+        final long delayMs = Math.min(maxMs, initialMs << Math.min(attempt, 30));
+        return delayMs - ThreadLocalRandom.current().nextLong(delayMs / 2 + 1);
+    }
+
+    private void recordDeployment(final boolean connected) {
+        final boolean wasOpen = getCircuitState() != CircuitState.CLOSED;
+        if (connected) {
+            consecutiveFailures = 0;
+            if (wasOpen) {
+                LOGGER.info("Dependency Check: SFTP Server connected again, circuit closed");
+                if (healthCheck != null) {
+                    healthCheck.clearHealthCheck(CIRCUIT_OPEN_MESSAGE);
+                }
+            }
+            return;
+        }
+        consecutiveFailures++;
+        if (getCircuitState() != CircuitState.CLOSED) {
+            circuitOpenUntilMs = System.currentTimeMillis() + circuitOpenMs;
+            LOGGER.error("Dependency Check: {} failed SFTP Server deployments in a row, circuit open for {} ms", consecutiveFailures,
+                    circuitOpenMs);
+            if (healthCheck != null) {
+                healthCheck.failHealthCheck(CIRCUIT_OPEN_MESSAGE);
+            }
+        }
+    }
+
+    private void setKeepAlive(final Session jschSession) {
+        try {
+            jschSession.setServerAliveInterval(keepAliveIntervalMs);
+            jschSession.setServerAliveCountMax(keepAliveCountMax);
+        } catch (final JSchException jSchException) {
+            LOGGER.warn("{}: Error setting SFTP keepalive", jSchException.getMessage());
+        }
+    }
+
+    private void setKeepAlive(final ChannelSftp sftpConnection) {
+        try {
+            setKeepAlive(sftpConnection.getSession());
+        } catch (final JSchException jSchException) {
+            LOGGER.warn("{}: Error setting SFTP keepalive, no session", jSchException.getMessage());
+        }
+    }
+
     /**
      * Checks if is jsch connected.
      *
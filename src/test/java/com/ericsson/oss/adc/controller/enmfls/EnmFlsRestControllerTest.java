@@ -16,23 +16,30 @@
 
 package com.ericsson.oss.adc.controller.enmfls;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.ericsson.oss.adc.enums.DataType;
+import com.ericsson.oss.adc.handler.FileHandler;
 import com.ericsson.oss.adc.models.FileNotificationDTO;
 import com.ericsson.oss.adc.models.MetaData;
+import com.ericsson.oss.adc.services.AuthenticationService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
 
@@ -46,10 +53,15 @@ public class EnmFlsRestControllerTest {
     private WebApplicationContext webApplicationContext;
 
     @Autowired
-    private EnmFlsRestController enmFlsRC;
+    private AuthenticationService authenticationService;
+
+    @Autowired
+    private FileHandler fileHandler;
 
     private MockMvc mvc;
 
+    private static final String FILES = "/file/v1/files";
+
     @BeforeEach
     public void setUp() {
         mvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
@@ -61,6 +73,98 @@ public class EnmFlsRestControllerTest {
                 .andExpect(content().string("Sample response"));
     }
 
+    @Test
+    public void longPoll_NegativeWaitMs_BadRequest() throws Exception {
+        authenticationService.setLoggedIn(true);
+        final MvcResult result = mvc.perform(get(FILES).param("filter", filterAfter(0)).param("waitMs", "-1"))
+                .andExpect(request().asyncStarted()).andReturn();
+        mvc.perform(asyncDispatch(result)).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void longPoll_WaitMsZero_AnsweredStraightAway() throws Exception {
+        authenticationService.setLoggedIn(true);
+        final long lastId = fileHandler.getNotificationStore().getLastId();
+        final MvcResult result = mvc.perform(get(FILES).param("filter", filterAfter(lastId)).param("orderBy", "id asc")
+                .param("waitMs", "0")).andReturn();
+        mvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+                .andExpect(content().json("{\"files\":[]}"));
+    }
+
+    @Test
+    public void longPoll_NewFile_Answered() throws Exception {
+        authenticationService.setLoggedIn(true);
+        final long lastId = fileHandler.getNotificationStore().getLastId();
+        final MvcResult result = mvc.perform(get(FILES).param("filter", filterAfter(lastId)).param("orderBy", "id asc")
+                .param("waitMs", "10000")).andExpect(request().asyncStarted()).andReturn();
+        storeFile("longPollNode");
+        mvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+                .andExpect(content().string(containsString("longPollNode")));
+    }
+
+    @Test
+    public void stream_NewFile_SentAsEvent() throws Exception {
+        authenticationService.setLoggedIn(true);
+        final long lastId = fileHandler.getNotificationStore().getLastId();
+        final MvcResult result = mvc.perform(get(FILES + "/stream").param("filter", filterAfter(lastId))
+                .accept(MediaType.TEXT_EVENT_STREAM)).andExpect(request().asyncStarted()).andReturn();
+        final long id = storeFile("streamNode");
+        final long deadline = System.currentTimeMillis() + 10_000;
+        String events = result.getResponse().getContentAsString();
+        while (!events.contains("streamNode") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            events = result.getResponse().getContentAsString();
+        }
+        assertTrue(events.contains("id:" + id));
+        assertTrue(events.contains("event:" + FileEventStream.EVENT_NAME));
+        assertTrue(events.contains("streamNode"));
+    }
+
+    @Test
+    public void stream_NotLoggedIn_Unauthorized() throws Exception {
+        authenticationService.setLoggedIn(false);
+        mvc.perform(get(FILES + "/stream").param("filter", filterAfter(0)).accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    public void query_SameETag_NotModifiedUntilNewMatchingFile() throws Exception {
+        authenticationService.setLoggedIn(true);
+        final String filter = filterAfter(fileHandler.getNotificationStore().getLastId());
+        final String eTag = mvc.perform(get(FILES).param("filter", filter).param("orderBy", "id asc"))
+                .andExpect(status().isOk()).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mvc.perform(get(FILES).param("filter", filter).param("orderBy", "id asc").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+        // a file of another dataType cannot match
+        fileHandler.getNotificationStore().append(new MetaData(new FileNotificationDTO("otherNode", DataType.PM_CELLTRACE.toString(),
+                "RadioNode", "Location"), fileHandler.getIdCounter().incrementAndGet()));
+        mvc.perform(get(FILES).param("filter", filter).param("orderBy", "id asc").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+        storeFile("eTagNode");
+        mvc.perform(get(FILES).param("filter", filter).param("orderBy", "id asc").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("eTagNode")));
+    }
+
+    private static boolean isFilterMatch(final String dataType, final String nodeType, final MetaData metaData) {
+        final FilterParams filterParams = new FilterParams("dataType==" + dataType + (nodeType == null ? "" : ";nodeType==" + nodeType)
+                + ";id=gt=0");
+        return filterParams.getDataTypeMatcher().test(metaData.getDataType())
+                && filterParams.getNodeTypeMatcher().test(metaData.getNodeType());
+    }
+
+    private static String filterAfter(final long id) {
+        return "dataType==" + DataType.PM_STATISTICAL + ";id=gt=" + id;
+    }
+
+    private long storeFile(final String nodeName) {
+        final long id = fileHandler.getIdCounter().incrementAndGet();
+        fileHandler.getNotificationStore().append(new MetaData(
+                new FileNotificationDTO(nodeName, DataType.PM_STATISTICAL.toString(), "RadioNode", "Location"), id));
+        return id;
+    }
+
     @Test
     public void dataTypeFilterTest() {
         FileNotificationDTO pm_celltraceDTO = new FileNotificationDTO(
@@ -89,49 +193,48 @@ public class EnmFlsRestControllerTest {
                 "PCC",
                 "Location");
         MetaData nullDataTypeMeta = new MetaData();
-        enmFlsRC = new EnmFlsRestController();
-        assertFalse(enmFlsRC.isFilterMatch("PM_CELLTRACE", "RadioNode", nullDataTypeMeta));
+        assertFalse(isFilterMatch("PM_CELLTRACE", "RadioNode", nullDataTypeMeta));
 
         MetaData pm_celltrace = new MetaData(pm_celltraceDTO, 1);
-        assertFalse(enmFlsRC.isFilterMatch("PM_STATISTICAL", "RadioNode", pm_celltrace));
-        assertTrue(enmFlsRC.isFilterMatch("PM_CELLTRACE", "RadioNode", pm_celltrace));
-        assertFalse(enmFlsRC.isFilterMatch("PM_CELLTRACE_CUUP", "RadioNode", pm_celltrace));
-        assertFalse(enmFlsRC.isFilterMatch("PM_CELLTRACE_*", "RadioNode", pm_celltrace));
-        assertTrue(enmFlsRC.isFilterMatch("*_CELLTRACE", "RadioNode", pm_celltrace));
+        assertFalse(isFilterMatch("PM_STATISTICAL", "RadioNode", pm_celltrace));
+        assertTrue(isFilterMatch("PM_CELLTRACE", "RadioNode", pm_celltrace));
+        assertFalse(isFilterMatch("PM_CELLTRACE_CUUP", "RadioNode", pm_celltrace));
+        assertFalse(isFilterMatch("PM_CELLTRACE_*", "RadioNode", pm_celltrace));
+        assertTrue(isFilterMatch("*_CELLTRACE", "RadioNode", pm_celltrace));
 
         MetaData pm_celltrace_du = new MetaData(pm_celltrace_duDTO, 2);
-        assertFalse(enmFlsRC.isFilterMatch("PM_STATISTICAL", "RadioNode", pm_celltrace_du));
-        assertFalse(enmFlsRC.isFilterMatch("PM_CELLTRACE", "RadioNode", pm_celltrace_du));
-        assertFalse(enmFlsRC.isFilterMatch("PM_CELLTRACE_CUUP", "RadioNode", pm_celltrace_du));
-        assertTrue(enmFlsRC.isFilterMatch("PM_CELLTRACE_*", "RadioNode", pm_celltrace_du));
-        assertTrue(enmFlsRC.isFilterMatch("PM_*", "RadioNode", pm_celltrace_du));
-        assertTrue(enmFlsRC.isFilterMatch("*_CELLTRACE_*", "RadioNode", pm_celltrace_du));
-        assertFalse(enmFlsRC.isFilterMatch("*_CELLTRACE", "RadioNode", pm_celltrace_du));
+        assertFalse(isFilterMatch("PM_STATISTICAL", "RadioNode", pm_celltrace_du));
+        assertFalse(isFilterMatch("PM_CELLTRACE", "RadioNode", pm_celltrace_du));
+        assertFalse(isFilterMatch("PM_CELLTRACE_CUUP", "RadioNode", pm_celltrace_du));
+        assertTrue(isFilterMatch("PM_CELLTRACE_*", "RadioNode", pm_celltrace_du));
+        assertTrue(isFilterMatch("PM_*", "RadioNode", pm_celltrace_du));
+        assertTrue(isFilterMatch("*_CELLTRACE_*", "RadioNode", pm_celltrace_du));
+        assertFalse(isFilterMatch("*_CELLTRACE", "RadioNode", pm_celltrace_du));
 
         MetaData pm_celltrace_cuup = new MetaData(pm_celltrace_cuupDTO, 3);
-        assertFalse(enmFlsRC.isFilterMatch("PM_STATISTICAL", "RadioNode", pm_celltrace_cuup));
-        assertFalse(enmFlsRC.isFilterMatch("PM_CELLTRACE", "RadioNode", pm_celltrace_cuup));
-        assertTrue(enmFlsRC.isFilterMatch("PM_CELLTRACE_CUUP", "RadioNode", pm_celltrace_cuup));
-        assertTrue(enmFlsRC.isFilterMatch("PM_CELLTRACE_*", "RadioNode", pm_celltrace_cuup));
-        assertTrue(enmFlsRC.isFilterMatch("PM_CELLTRACE*", "RadioNode", pm_celltrace_cuup));
+        assertFalse(isFilterMatch("PM_STATISTICAL", "RadioNode", pm_celltrace_cuup));
+        assertFalse(isFilterMatch("PM_CELLTRACE", "RadioNode", pm_celltrace_cuup));
+        assertTrue(isFilterMatch("PM_CELLTRACE_CUUP", "RadioNode", pm_celltrace_cuup));
+        assertTrue(isFilterMatch("PM_CELLTRACE_*", "RadioNode", pm_celltrace_cuup));
+        assertTrue(isFilterMatch("PM_CELLTRACE*", "RadioNode", pm_celltrace_cuup));
 
         MetaData pm_celltrace_cucp = new MetaData(pm_celltrace_cucpDTO, 4);
-        assertFalse(enmFlsRC.isFilterMatch("PM_STATISTICAL", "RadioNode", pm_celltrace_cucp));
-        assertFalse(enmFlsRC.isFilterMatch("PM_CELLTRACE", "RadioNode", pm_celltrace_cucp));
-        assertFalse(enmFlsRC.isFilterMatch("PM_CELLTRACE_CUUCP", "RadioNode", pm_celltrace_cucp));
-        assertTrue(enmFlsRC.isFilterMatch("PM_CELLTRACE*", "RadioNode", pm_celltrace_cucp));
-        assertTrue(enmFlsRC.isFilterMatch("PM_CELLTRACE_*", "RadioNode", pm_celltrace_cucp));
-        assertFalse(enmFlsRC.isFilterMatch("PM_CELLTRACE_*", "PCC", pm_celltrace_cucp));
-        assertTrue(enmFlsRC.isFilterMatch("PM_CELLTRACE_*", null, pm_celltrace_cucp));
-        assertTrue(enmFlsRC.isFilterMatch("*", "RadioNode", pm_celltrace_cucp));
-        assertFalse(enmFlsRC.isFilterMatch("Dummy*", "RadioNode", pm_celltrace_cucp));
+        assertFalse(isFilterMatch("PM_STATISTICAL", "RadioNode", pm_celltrace_cucp));
+        assertFalse(isFilterMatch("PM_CELLTRACE", "RadioNode", pm_celltrace_cucp));
+        assertFalse(isFilterMatch("PM_CELLTRACE_CUUCP", "RadioNode", pm_celltrace_cucp));
+        assertTrue(isFilterMatch("PM_CELLTRACE*", "RadioNode", pm_celltrace_cucp));
+        assertTrue(isFilterMatch("PM_CELLTRACE_*", "RadioNode", pm_celltrace_cucp));
+        assertFalse(isFilterMatch("PM_CELLTRACE_*", "PCC", pm_celltrace_cucp));
+        assertTrue(isFilterMatch("PM_CELLTRACE_*", null, pm_celltrace_cucp));
+        assertTrue(isFilterMatch("*", "RadioNode", pm_celltrace_cucp));
+        assertFalse(isFilterMatch("Dummy*", "RadioNode", pm_celltrace_cucp));
 
         MetaData pm_counter_ran = new MetaData(pm_counter_ranDTO, 5);
-        assertTrue(enmFlsRC.isFilterMatch("PM_STATISTICAL", "PCC", pm_counter_ran));
-        assertFalse(enmFlsRC.isFilterMatch("PM_STATISTICAL", "RadioNode", pm_counter_ran));
-        assertTrue(enmFlsRC.isFilterMatch("PM_STATISTICAL", null, pm_counter_ran));
-        assertFalse(enmFlsRC.isFilterMatch("PM_CELLTRACE", null, pm_counter_ran));
-        assertFalse(enmFlsRC.isFilterMatch("PM_CELLTRACE", "PCC", pm_counter_ran));
+        assertTrue(isFilterMatch("PM_STATISTICAL", "PCC", pm_counter_ran));
+        assertFalse(isFilterMatch("PM_STATISTICAL", "RadioNode", pm_counter_ran));
+        assertTrue(isFilterMatch("PM_STATISTICAL", null, pm_counter_ran));
+        assertFalse(isFilterMatch("PM_CELLTRACE", null, pm_counter_ran));
+        assertFalse(isFilterMatch("PM_CELLTRACE", "PCC", pm_counter_ran));
     }
 
 }
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.controller.enmfls;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.EnumSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.ericsson.oss.adc.enums.MetaDataField;
+import com.ericsson.oss.adc.handler.NewFileNotifier;
+import com.ericsson.oss.adc.models.FileNotificationDTO;
+import com.ericsson.oss.adc.models.MetaData;
+import com.ericsson.oss.adc.models.NotificationStore;
+
+public class FileEventStreamTest {
+    private static final FilterParams FILTER = new FilterParams("dataType==PM_STATISTICAL;id=gt=0");
+
+    NotificationStore notificationStore;
+    ExecutorService sender;
+    CountDownLatch sending;
+    CountDownLatch release;
+    AtomicInteger sends;
+
+    @BeforeEach
+    public void init() {
+        notificationStore = new NotificationStore();
+        append(1);
+        sender = Executors.newSingleThreadExecutor();
+        sending = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+        sends = new AtomicInteger();
+    }
+
+    @AfterEach
+    public void shutdown() {
+        release.countDown();
+        sender.shutdownNow();
+    }
+
+    @Test
+    public void test_onNewFiles_SignalsWhileSendingCoalesced() throws Exception {
+        final FileEventStream stream = stream(new BlockingEmitter(), 60_000, listener -> { });
+        assertFalse(stream.onNewFiles());
+        assertTrue(sending.await(10, TimeUnit.SECONDS));
+        append(2);
+        assertFalse(stream.onNewFiles());
+        assertFalse(stream.onNewFiles());
+
+        release.countDown();
+        sender.shutdown();
+        assertTrue(sender.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(2, sends.get());
+        assertEquals(2, stream.getLastSentId());
+    }
+
+    @Test
+    public void test_onNewFiles_StreamBlockedInSendDropped() throws Exception {
+        final FileEventStream stream = stream(new BlockingEmitter(), 0, listener -> { });
+        assertFalse(stream.onNewFiles());
+        assertTrue(sending.await(10, TimeUnit.SECONDS));
+
+        append(2);
+        assertTrue(stream.onNewFiles());
+    }
+
+    @Test
+    public void test_onNewFiles_StreamWithoutSenderDropped() {
+        final FileEventStream stream = new FileEventStream(new SseEmitter(), command -> {
+            throw new RejectedExecutionException("full");
+        }, 60_000, notificationStore, FILTER, EnumSet.allOf(MetaDataField.class), 10, 0, id -> { }, listener -> { });
+        assertTrue(stream.onNewFiles());
+    }
+
+    @Test
+    public void test_completion_UnregistersStream() {
+        final AtomicReference<Runnable> completion = new AtomicReference<>();
+        final SseEmitter emitter = new SseEmitter() {
+            @Override
+            public synchronized void onCompletion(final Runnable callback) {
+                completion.set(callback);
+            }
+        };
+        final AtomicReference<NewFileNotifier.Listener> unregistered = new AtomicReference<>();
+        final FileEventStream stream = stream(emitter, 60_000, unregistered::set);
+
+        completion.get().run();
+        assertSame(stream, unregistered.get());
+        assertTrue(stream.onNewFiles());
+    }
+
+    private FileEventStream stream(final SseEmitter emitter, final long sendTimeoutMs,
+                                   final Consumer<NewFileNotifier.Listener> closeListener) {
+        return new FileEventStream(emitter, sender, sendTimeoutMs, notificationStore, FILTER, EnumSet.allOf(MetaDataField.class), 10,
+                0, id -> { }, closeListener);
+    }
+
+    private void append(final long id) {
+        notificationStore.append(new MetaData(new FileNotificationDTO("node" + id, "PM_STATISTICAL", "RadioNode", "location" + id), id));
+    }
+
+    /**
+     * Blocks the first send until released, like a client which stopped reading.
+     */
+    private class BlockingEmitter extends SseEmitter {
+        @Override
+        public void send(final SseEventBuilder builder) {
+            sends.incrementAndGet();
+            sending.countDown();
+            try {
+                release.await();
+            } catch (final InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -17,26 +17,142 @@
 package com.ericsson.oss.adc.controller.enmfls;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 
+import com.ericsson.oss.adc.models.FileNotificationDTO;
+import com.ericsson.oss.adc.models.MetaData;
+import com.ericsson.oss.adc.models.NotificationStore;
+
 public class FilterParamsTest {
 
     @Test
     public void test_getFilterParamsDataType() {
         String filter = "dataType==PM_STATISTICAL;id=gt=0";
         FilterParams filterParams = new FilterParams(filter);
-        assertEquals("PM_STATISTICAL", filterParams.getDataType());
-        assertEquals(null, filterParams.getNodeType());
-        assertEquals("0", filterParams.getId());
+        assertTrue(filterParams.isComplete());
+        assertTrue(filterParams.getDataTypeMatcher().test("PM_STATISTICAL"));
+        assertFalse(filterParams.getDataTypeMatcher().test("PM_CELLTRACE"));
+        assertTrue(filterParams.getNodeTypeMatcher().test("RadioNode"));
+        assertEquals(0, filterParams.getStartAfter());
     }
 
     @Test
     public void test_getFilterParamsDataTypeAndNodeType() {
-        String filter = "dataType==PM_STATISTICAL;nodeType==RadioNode;id=gt=43";
+        String filter = "dataType==PM_STATISTICAL;nodeType==RadioNode;id=gt=43;";
+        FilterParams filterParams = new FilterParams(filter);
+        assertTrue(filterParams.getDataTypeMatcher().test("PM_STATISTICAL"));
+        assertTrue(filterParams.getNodeTypeMatcher().test("RadioNode"));
+        assertFalse(filterParams.getNodeTypeMatcher().test("PCC"));
+        assertEquals(43, filterParams.getStartAfter());
+        assertTrue(filterParams.isIndexOnly());
+    }
+
+    @Test
+    public void test_getFilterParamsRequiresDataTypeAndId() {
+        assertFalse(new FilterParams("dataType==PM_STATISTICAL").isComplete());
+        assertFalse(new FilterParams("nodeType==RadioNode;id=gt=0").isComplete());
+        assertFalse(new FilterParams("dataType==PM_STATISTICAL,id=gt=0").isComplete());
+        assertTrue(new FilterParams("id=ge=1;dataType!=PM_STATISTICAL").isComplete());
+    }
+
+    @Test
+    public void test_getFilterParamsRejectsInvalidFilters() {
+        assertThrows(IllegalArgumentException.class, () -> new FilterParams("dataType=PM_STATISTICAL;id=gt=0"));
+        assertThrows(IllegalArgumentException.class, () -> new FilterParams("fileSize==1;id=gt=0"));
+        assertThrows(IllegalArgumentException.class, () -> new FilterParams("dataType=gt=PM;id=gt=0"));
+        assertThrows(IllegalArgumentException.class, () -> new FilterParams("dataType==PM_STATISTICAL;id=gt=x"));
+        assertThrows(IllegalArgumentException.class, () -> new FilterParams("(dataType==PM_STATISTICAL;id=gt=0"));
+        assertThrows(IllegalArgumentException.class, () -> new FilterParams("dataType=in=(A,B"));
+    }
+
+    @Test
+    public void test_getFilterParamsPushesMultipleDataTypesToTheIndex() {
+        for (String filter : new String[] { "dataType=in=(PM_STATISTICAL,PM_CELLTRACE_*);id=gt=7",
+                "(dataType==PM_STATISTICAL,dataType==PM_CELLTRACE_*);id>7", "id=gt=7;(dataType==PM_STATISTICAL , dataType=='PM_CELLTRACE_*')" }) {
+            FilterParams filterParams = new FilterParams(filter);
+            assertTrue(filterParams.isComplete(), filter);
+            assertTrue(filterParams.isIndexOnly(), filter);
+            assertEquals(7, filterParams.getStartAfter(), filter);
+            assertTrue(filterParams.getDataTypeMatcher().test("PM_STATISTICAL"), filter);
+            assertTrue(filterParams.getDataTypeMatcher().test("PM_CELLTRACE_CUUP"), filter);
+            assertFalse(filterParams.getDataTypeMatcher().test("PM_EBM"), filter);
+        }
+    }
+
+    @Test
+    public void test_iterateFilesAppliesIndexAndResidualTerms() {
+        NotificationStore store = new NotificationStore(4);
+        store.append(new MetaData(new FileNotificationDTO("node1", "PM_STATISTICAL", "RadioNode", "/pm/a1"), 1));
+        store.append(new MetaData(new FileNotificationDTO("node2", "PM_CELLTRACE", "RadioNode", "/pm/a2"), 2));
+        store.append(new MetaData(new FileNotificationDTO("node1", "PM_STATISTICAL", "PCC", "/pm/b3"), 3));
+        store.append(new MetaData(new FileNotificationDTO("node2", "PM_STATISTICAL", "RadioNode", "/pm/b4"), 4));
+        store.append(new MetaData(new FileNotificationDTO("node1", "PM_CELLTRACE", "PCC", "/pm/a5"), 5));
+        store.append(new MetaData(new FileNotificationDTO("node3", "PM_STATISTICAL", "RadioNode", "/pm/a6"), 6));
+
+        assertEquals(List.of(1L, 3L), ids(store, "dataType==PM_STATISTICAL;nodeName==node1;id=gt=0"));
+        assertEquals(List.of(3L, 4L, 5L), ids(store, "dataType=in=(PM_STATISTICAL,PM_CELLTRACE);id=gt=2;id=le=5"));
+        assertEquals(List.of(1L, 5L), ids(store,
+                "(dataType==PM_STATISTICAL;nodeType==RadioNode,dataType==PM_CELLTRACE;nodeType==PCC);fileLocation==/pm/a*;id=gt=0;id<6"));
+        assertEquals(List.of(2L, 4L, 6L), ids(store, "dataType=out=(PM_EBM);nodeName!=node1;id=in=(2,4,6)"));
+        assertFalse(new FilterParams("dataType==PM_STATISTICAL;nodeName==node1;id=gt=0").isIndexOnly());
+    }
+
+    private static List<Long> ids(NotificationStore store, String filter) {
+        List<Long> ids = new ArrayList<>();
+        new FilterParams(filter).iterateFiles(store, Long.MIN_VALUE, 0, Integer.MAX_VALUE)
+                .forEachRemaining(metaData -> ids.add(metaData.getId()));
+        return ids;
+    }
+
+    @Test
+    public void test_getFilterParamsCompilesMatchers() {
+        String filter = "dataType==PM_CELLTRACE_*;nodeType==Radio*;id=gt=43";
         FilterParams filterParams = new FilterParams(filter);
-        assertEquals("PM_STATISTICAL", filterParams.getDataType());
-        assertEquals("RadioNode", filterParams.getNodeType());
-        assertEquals("43", filterParams.getId());
+        assertTrue(filterParams.getDataTypeMatcher().test("PM_CELLTRACE_CUUP"));
+        assertFalse(filterParams.getDataTypeMatcher().test("PM_CELLTRACE"));
+        assertTrue(filterParams.getNodeTypeMatcher().test("RadioNode"));
+        assertFalse(filterParams.getNodeTypeMatcher().test("PCC"));
+        assertFalse(filterParams.getNodeTypeMatcher().test(null));
+    }
+
+    @Test
+    public void test_filterParamsCacheReusesAndEvicts() {
+        FilterParamsCache filterParamsCache = new FilterParamsCache(2);
+        FilterParams statistical = filterParamsCache.get("dataType==PM_STATISTICAL;id=gt=0");
+        assertSame(statistical.getDataTypeMatcher(), filterParamsCache.get("dataType==PM_STATISTICAL;id=gt=0").getDataTypeMatcher());
+        filterParamsCache.get("dataType==PM_CELLTRACE;id=gt=0");
+        filterParamsCache.get("dataType==PM_STATISTICAL;id=gt=0");
+        filterParamsCache.get("dataType==PM_CELLTRACE_CUUP;id=gt=0");
+        assertEquals(2, filterParamsCache.size());
+        assertSame(statistical.getDataTypeMatcher(), filterParamsCache.get("dataType==PM_STATISTICAL;id=gt=0").getDataTypeMatcher());
+    }
+
+    @Test
+    public void test_filterParamsCacheKeyedWithoutTheId() {
+        FilterParamsCache filterParamsCache = new FilterParamsCache();
+        FilterParams first = filterParamsCache.get("dataType==PM_STATISTICAL;nodeType==RadioNode;id=gt=0");
+        FilterParams later = filterParamsCache.get("dataType==PM_STATISTICAL;nodeType==RadioNode;id=gt=42;");
+        FilterParams leading = filterParamsCache.get("id=gt=43;dataType==PM_STATISTICAL;nodeType==RadioNode");
+        assertEquals(1, filterParamsCache.size());
+        assertEquals(0, first.getStartAfter());
+        assertEquals(42, later.getStartAfter());
+        assertEquals(43, leading.getStartAfter());
+        assertTrue(later.isComplete());
+        assertSame(first.getDataTypeMatcher(), later.getDataTypeMatcher());
+        assertSame(first.getNodeTypeMatcher(), leading.getNodeTypeMatcher());
+
+        // the id narrows the last alternative only, as when parsed
+        FilterParams alternatives = filterParamsCache.get("dataType==PM_STATISTICAL,dataType==PM_CELLTRACE;id=gt=5");
+        assertEquals(new FilterParams("dataType==PM_STATISTICAL,dataType==PM_CELLTRACE;id=gt=5").getStartAfter(),
+                alternatives.getStartAfter());
+        assertFalse(alternatives.isComplete());
     }
 }
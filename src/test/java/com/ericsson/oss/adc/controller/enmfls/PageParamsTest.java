@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.controller.enmfls;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class PageParamsTest {
+
+    @Test
+    public void test_limitDefaultsToAndIsCappedAtMaxPageSize() {
+        PageParams pageParams = new PageParams("5", null, "id asc", null, 100);
+        assertEquals(5, pageParams.getOffset());
+        assertEquals(100, pageParams.getLimit());
+        assertFalse(pageParams.isDescending());
+        assertNull(pageParams.getCursorId());
+
+        assertEquals(100, new PageParams("0", "500", "id asc", null, 100).getLimit());
+        assertEquals(20, new PageParams("0", "20", "id asc", null, 100).getLimit());
+        assertEquals(Integer.MAX_VALUE, new PageParams(null, null, null, null, 0).getLimit());
+        assertTrue(new PageParams("0", "1", "id desc", null, 100).isDescending());
+    }
+
+    @Test
+    public void test_cursorOverridesOffsetAndAdvancesStartId() {
+        String cursor = PageParams.encodeCursor(42);
+        assertEquals(42, PageParams.decodeCursor(cursor));
+
+        PageParams pageParams = new PageParams("10", "5", "id asc", cursor, 100);
+        assertEquals(0, pageParams.getOffset());
+        assertEquals(42, pageParams.startAfter(0));
+        assertEquals(50, pageParams.startAfter(50));
+        assertEquals(7, new PageParams("10", "5", "id asc", null, 100).startAfter(7));
+    }
+
+    @Test
+    public void test_invalidParametersAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new PageParams("-1", null, "id asc", null, 100));
+        assertThrows(IllegalArgumentException.class, () -> new PageParams(null, "ten", "id asc", null, 100));
+        assertThrows(IllegalArgumentException.class, () -> new PageParams(null, null, "id asc", "not-a-cursor", 100));
+    }
+}
@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.controller.enmfls;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class QueryETagTest {
+    private static final String FILTER = "dataType==PM_STATISTICAL;id=gt=0";
+
+    @Test
+    public void test_eTagChangesWithNewestIdAndQuery() {
+        final String eTag = QueryETag.of(10, FILTER, "id", null);
+        assertEquals(eTag, QueryETag.of(10, FILTER, "id", null));
+        assertNotEquals(eTag, QueryETag.of(11, FILTER, "id", null));
+        assertNotEquals(eTag, QueryETag.of(10, FILTER, "id,nodeName", null));
+        assertTrue(eTag.startsWith("\"") && eTag.endsWith("\""));
+    }
+
+    @Test
+    public void test_eTagTellsApartQueriesOfTheSameHashCode() {
+        // "Aa" and "BB" have the same String hash code
+        assertNotEquals(QueryETag.of(10, "Aa"), QueryETag.of(10, "BB"));
+        assertNotEquals(QueryETag.of(10, "ab", "c"), QueryETag.of(10, "a", "bc"));
+        assertNotEquals(QueryETag.of(10, FILTER, null), QueryETag.of(10, FILTER, ""));
+    }
+
+    @Test
+    public void test_ifNoneMatch() {
+        final String eTag = QueryETag.of(10, FILTER);
+        assertTrue(QueryETag.isMatchedBy(eTag, eTag));
+        assertTrue(QueryETag.isMatchedBy("\"other\", W/" + eTag, eTag));
+        assertTrue(QueryETag.isMatchedBy("*", eTag));
+        assertFalse(QueryETag.isMatchedBy(null, eTag));
+        assertFalse(QueryETag.isMatchedBy(QueryETag.of(9, FILTER), eTag));
+    }
+}
@@ -54,8 +54,10 @@ import org.springframework.test.context.ActiveProfiles;
 
 import com.ericsson.oss.adc.enums.FileType;
 import com.ericsson.oss.adc.exceptions.NoSftpConnectionException;
+import com.ericsson.oss.adc.models.NotificationStore;
 import com.ericsson.oss.adc.models.SizedQueue;
 import com.ericsson.oss.adc.services.SftpService;
+import com.jcraft.jsch.SftpATTRS;
 import com.jcraft.jsch.SftpException;
 
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
@@ -387,6 +389,69 @@ public class FileNotificationHandlerTest {
         return fileNotificationHandler;
     }
 
+    /**
+     * Test that the symlinks found on the SFTP server at startup are taken over by the initial generation of files.
+     *
+     * @throws Exception
+     *             the exception
+     */
+    @Test
+    @Order(9)
+    @DisplayName("Verify That Reconciled Symlinks Are Taken Over And Not Created Again")
+    public void testReconcileSymlinksTakesOverExistingFiles() throws Exception {
+        final int numberOfNodesFileTrans = 10;
+        final Map<String, FileType> map = new HashMap<>();
+        map.put("/sftp/bin/ericsson/pmic1/XML/LTE18dg2ERBS00010/A20210622.0245-0300_LTE18dg2ERBS00010.xml", PMCOUNTER);
+        map.put("/sftp/bin/ericsson/pmic1/XML/NR140gNodeBRadio00010/A20210622.0830-0845_NR140gNodeBRadio00010.xml", PMCOUNTER);
+
+        final FileNotificationHandler firstRun = getFileNotificationHandlerForTest();
+        firstRun.setMapUploadedBinFilePathToFileType(map);
+        firstRun.setNumberOfNodesFileTrans(numberOfNodesFileTrans);
+        firstRun.setSftpRemoteDirectory("/sftp/");
+        firstRun.uploadConfigurableNumberOfFilesWithCurrentRopTime();
+        final Map<String, FileType> generated = firstRun.getMapUploadedFilePathToFileType();
+        Assertions.assertEquals(numberOfNodesFileTrans, generated.size());
+
+        final FileNotificationHandler restarted = getFileNotificationHandlerForTest();
+        restarted.setMapUploadedBinFilePathToFileType(map);
+        restarted.setNumberOfNodesFileTrans(numberOfNodesFileTrans);
+        restarted.setSftpRemoteDirectory("/sftp/");
+        final List<String> remoteSymlinkPaths = new ArrayList<>(generated.keySet());
+        remoteSymlinkPaths.add("/sftp/bin/ericsson/pmic1/XML/LTE18dg2ERBS00010/A20210622.0245-0300_LTE18dg2ERBS00010.xml");
+        restarted.reconcileSymlinks(remoteSymlinkPaths);
+        Assertions.assertEquals(1, restarted.getFilesWindow().size());
+        restarted.uploadConfigurableNumberOfFilesWithCurrentRopTime();
+
+        Assertions.assertEquals(generated.keySet(), restarted.getMapUploadedFilePathToFileType().keySet());
+        Assertions.assertTrue(restarted.isAllFilesUploadedSuccessfully());
+        Mockito.verify(restarted.getSftpService(), Mockito.never()).symlink(anyString(), anyString(), anyString());
+        Mockito.verify(restarted.getSftpService(), Mockito.never()).linkAll(Mockito.anyList(), anyString());
+    }
+
+    @Test
+    @DisplayName("Verify That a remote bin file is only taken for the upload of an unchanged local file")
+    public void testIsUploadOfComparesSizeAndModificationTime() throws Exception {
+        final File localFile = Files.createTempFile("template", ".xml").toFile();
+        localFile.deleteOnExit();
+        Files.write(localFile.toPath(), new byte[100]);
+        final int mtime = (int) (localFile.lastModified() / 1000);
+
+        Assertions.assertTrue(FileNotificationHandler.isUploadOf(remoteFile(100, mtime, false), localFile));
+        Assertions.assertFalse(FileNotificationHandler.isUploadOf(null, localFile));
+        Assertions.assertFalse(FileNotificationHandler.isUploadOf(remoteFile(99, mtime, false), localFile));
+        // changed since the upload, keeping its size
+        Assertions.assertFalse(FileNotificationHandler.isUploadOf(remoteFile(100, mtime - 60, false), localFile));
+        Assertions.assertFalse(FileNotificationHandler.isUploadOf(remoteFile(100, mtime, true), localFile));
+    }
+
+    private static SftpATTRS remoteFile(final long size, final int mtime, final boolean link) {
+        final SftpATTRS attrs = mock(SftpATTRS.class);
+        when(attrs.getSize()).thenReturn(size);
+        when(attrs.getMTime()).thenReturn(mtime);
+        when(attrs.isLink()).thenReturn(link);
+        return attrs;
+    }
+
     private Map<String, FileType> getInputMap(final String[] fileExtn, final FileType fileType) throws IOException {
         final Map<String, FileType> map = new HashMap<>();
 
@@ -420,9 +485,11 @@ public class FileNotificationHandlerTest {
         Mockito.when(sftpService.upload(anyString(), anyString(), anyString())).thenReturn(true);
         Mockito.when(sftpService.symlink(anyString(), anyString(), anyString())).thenReturn(SymlinkResult.SUCCESS);
         Mockito.when(sftpService.symlink(Mockito.isNull(), anyString(), anyString())).thenReturn(SymlinkResult.SUCCESS);
+        Mockito.when(sftpService.linkAll(Mockito.anyList(), anyString())).thenAnswer(
+                invocation -> Collections.nCopies(invocation.<List<?>>getArgument(0).size(), SymlinkResult.SUCCESS));
 
         final FileHandler fileHandler = mock(FileHandler.class);
-        Mockito.when(fileHandler.getAvailableFiles()).thenReturn(new ArrayList<>());
+        Mockito.when(fileHandler.getNotificationStore()).thenReturn(new NotificationStore());
         Mockito.when(fileHandler.getIdCounter()).thenReturn(new AtomicLong());
 
         final FileNotificationHandler fileNotificationHandler = new FileNotificationHandler(new SimpleMeterRegistry());
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.ericsson.oss.adc.models.MetaData;
+import com.ericsson.oss.adc.models.NotificationStore;
+
+public class NewFileNotifierTest {
+    NotificationStore notificationStore;
+    NewFileNotifier newFileNotifier;
+
+    @BeforeEach
+    public void init() {
+        final FileHandler fileHandler = new FileHandler();
+        notificationStore = fileHandler.getNotificationStore();
+        newFileNotifier = new NewFileNotifier();
+        ReflectionTestUtils.setField(newFileNotifier, "fileHandler", fileHandler);
+        newFileNotifier.init();
+    }
+
+    @AfterEach
+    public void shutdown() {
+        newFileNotifier.shutdown();
+    }
+
+    @Test
+    public void test_register_ListenerWokenByAppendAndRemovedWhenDone() throws InterruptedException {
+        final CountDownLatch woken = new CountDownLatch(1);
+        newFileNotifier.register(() -> {
+            if (notificationStore.getFilesAfter(0).isEmpty()) {
+                return false;
+            }
+            woken.countDown();
+            return true;
+        });
+
+        notificationStore.append(new MetaData(1));
+
+        assertTrue(woken.await(5, TimeUnit.SECONDS));
+        awaitListenerCount(0);
+    }
+
+    @Test
+    public void test_register_FailingListenerIsRemoved() throws InterruptedException {
+        newFileNotifier.register(() -> {
+            throw new IllegalStateException("gone");
+        });
+        awaitListenerCount(0);
+    }
+
+    @Test
+    public void test_notifyNewFiles_ChecksCoalescedDuringLargeRop() throws InterruptedException {
+        final AtomicInteger checks = new AtomicInteger();
+        final CountDownLatch allSeen = new CountDownLatch(1);
+        final NewFileNotifier.Listener listener = () -> {
+            checks.incrementAndGet();
+            if (notificationStore.getFilesAfter(9_999).size() == 1) {
+                allSeen.countDown();
+            }
+            return false;
+        };
+        newFileNotifier.register(listener);
+        for (long id = 1; id <= 10_000; id++) {
+            notificationStore.append(new MetaData(id));
+        }
+
+        assertTrue(allSeen.await(5, TimeUnit.SECONDS));
+        assertTrue(checks.get() < 10_000, "checks: " + checks.get());
+        newFileNotifier.unregister(listener);
+        assertEquals(0, newFileNotifier.getListenerCount());
+    }
+
+    private void awaitListenerCount(final int expected) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (newFileNotifier.getListenerCount() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(expected, newFileNotifier.getListenerCount());
+    }
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.ericsson.oss.adc.services.SftpService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class RetentionCleanerTest {
+
+    @Test
+    public void test_submit_RemovesInBatchesAndRetries() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        final TestSftpService sftpService = new TestSftpService("A2.xml", 2, done);
+        final RetentionCleaner retentionCleaner = getRetentionCleaner(sftpService, 3);
+        final List<String> filePaths = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            filePaths.add("A" + i + ".xml");
+        }
+
+        retentionCleaner.submit(filePaths);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(sftpService.batchSizes.stream().allMatch(size -> size <= 4));
+        assertEquals(3, sftpService.getAttempts("A2.xml"));
+        assertEquals(1, sftpService.getAttempts("A3.xml"));
+        assertEquals(0, retentionCleaner.getQueueDepth());
+        retentionCleaner.shutdown();
+    }
+
+    @Test
+    public void test_submit_GivesUpAfterMaxAttempts() throws InterruptedException {
+        final TestSftpService sftpService = new TestSftpService("A0.xml", Integer.MAX_VALUE, new CountDownLatch(1));
+        final RetentionCleaner retentionCleaner = getRetentionCleaner(sftpService, 2);
+
+        retentionCleaner.submit(List.of("A0.xml"));
+
+        for (int i = 0; i < 100 && sftpService.getAttempts("A0.xml") < 2; i++) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100); // no more attempts after the last one
+        assertEquals(2, sftpService.getAttempts("A0.xml"));
+        // nothing kept of a file given up on
+        assertTrue(((Map<?, ?>) ReflectionTestUtils.getField(retentionCleaner, "mapFilePathToFailedAttempts")).isEmpty());
+        retentionCleaner.shutdown();
+    }
+
+    private static RetentionCleaner getRetentionCleaner(final SftpService sftpService, final int maxAttempts) {
+        final RetentionCleaner retentionCleaner = new RetentionCleaner(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(retentionCleaner, "sftpService", sftpService);
+        ReflectionTestUtils.setField(retentionCleaner, "generationBackend", "sftp");
+        ReflectionTestUtils.setField(retentionCleaner, "batchSize", 4);
+        ReflectionTestUtils.setField(retentionCleaner, "maxAttempts", maxAttempts);
+        ReflectionTestUtils.setField(retentionCleaner, "retryDelayMs", 10L);
+        return retentionCleaner;
+    }
+
+    /**
+     * Fails to remove a file a number of times, counting down when it is removed.
+     */
+    private static class TestSftpService extends SftpService {
+        private final Map<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+        private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        private final String failingFile;
+        private final int failures;
+        private final CountDownLatch removed;
+
+        TestSftpService(final String failingFile, final int failures, final CountDownLatch removed) {
+            super(new SimpleMeterRegistry());
+            this.failingFile = failingFile;
+            this.failures = failures;
+            this.removed = removed;
+        }
+
+        int getAttempts(final String remotePath) {
+            final AtomicInteger count = attempts.get(remotePath);
+            return count == null ? 0 : count.get();
+        }
+
+        @Override
+        public List<String> rmAll(final Collection<String> remotePaths) {
+            batchSizes.add(remotePaths.size());
+            final List<String> notRemoved = new ArrayList<>();
+            for (final String remotePath : remotePaths) {
+                final int attempt = attempts.computeIfAbsent(remotePath, path -> new AtomicInteger()).incrementAndGet();
+                if (remotePath.equals(failingFile)) {
+                    if (attempt <= failures) {
+                        notRemoved.add(remotePath);
+                    } else {
+                        removed.countDown();
+                    }
+                }
+            }
+            return notRemoved;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.ericsson.oss.adc.enums.FileType;
+import com.ericsson.oss.adc.handler.RopGenerationEngine.SymlinkTask;
+import com.ericsson.oss.adc.services.SftpService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class RopGenerationEngineTest {
+
+    @Test
+    public void test_split_ByFileTypeAndNodeRange() {
+        final List<SymlinkTask> tasks = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            tasks.add(new SymlinkTask("bin/a", "pm/" + i, FileType.PMCOUNTER, null));
+            tasks.add(new SymlinkTask("bin/b", "ctr/" + i, FileType.EVENT4G, null));
+        }
+        final List<List<SymlinkTask>> units = RopGenerationEngine.split(tasks, 2);
+        assertEquals(6, units.size());
+        assertEquals(List.of(2, 2, 1, 2, 2, 1), units.stream().map(List::size).collect(Collectors.toList()));
+        assertEquals("pm/4", units.get(2).get(0).getLinkedFile());
+        assertTrue(units.get(3).stream().allMatch(task -> task.getFileType() == FileType.EVENT4G));
+    }
+
+    @Test
+    public void test_run_CreatesEverySymlinkOnWorkers() {
+        final Set<String> threads = ConcurrentHashMap.newKeySet();
+        final TestSftpService sftpService = new TestSftpService(threads, null);
+        final List<SymlinkTask> tasks = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            tasks.add(new SymlinkTask("bin/a", "pm/" + i, i % 2 == 0 ? FileType.PMCOUNTER : FileType.EVENT5G, null));
+        }
+        try (RopGenerationEngine engine = new RopGenerationEngine(sftpService, 4, 10)) {
+            assertTrue(engine.run(tasks, "750"));
+        }
+        assertTrue(tasks.stream().allMatch(task -> task.getResult() == SymlinkResult.SUCCESS));
+        assertEquals(100, sftpService.links.size());
+        assertFalse(threads.contains(Thread.currentThread().getName()));
+    }
+
+    @Test
+    public void test_run_StopsAfterFailedSymlink() {
+        final TestSftpService sftpService = new TestSftpService(ConcurrentHashMap.newKeySet(), "pm/2");
+        final List<SymlinkTask> tasks = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            tasks.add(new SymlinkTask("bin/a", "pm/" + i, FileType.PMCOUNTER, null));
+        }
+        try (RopGenerationEngine engine = new RopGenerationEngine(sftpService, 1, 10)) {
+            assertFalse(engine.run(tasks, "750"));
+        }
+        assertEquals(SymlinkResult.SUCCESS, tasks.get(1).getResult());
+        assertEquals(SymlinkResult.FAILED, tasks.get(2).getResult());
+        assertNull(tasks.get(3).getResult());
+    }
+
+    private static class TestSftpService extends SftpService {
+        private final Set<String> threads;
+        private final String failingLink;
+        private final Set<String> links = ConcurrentHashMap.newKeySet();
+
+        TestSftpService(final Set<String> threads, final String failingLink) {
+            super(new SimpleMeterRegistry());
+            this.threads = threads;
+            this.failingLink = failingLink;
+        }
+
+        @Override
+        public SymlinkResult symlink(final String sourceFile, final String linkedFile, final String permissions) {
+            threads.add(Thread.currentThread().getName());
+            if (linkedFile.equals(failingLink)) {
+                return SymlinkResult.FAILED;
+            }
+            return links.add(linkedFile) ? SymlinkResult.SUCCESS : SymlinkResult.EXIST;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+
+public class SymlinkLedgerTest {
+
+    private static final String NODE_DIRECTORY = "/ericsson/pmic1/XML/SubNetwork=Europe,SubNetwork=Ireland,MeContext=NR";
+
+    @Test
+    public void test_contains_LinksAddedInTheRop() {
+        final SymlinkLedger ledger = new SymlinkLedger();
+        ledger.startRop(LocalDateTime.of(2022, 1, 1, 10, 0));
+        for (int i = 0; i < 10000; i++) {
+            ledger.add(NODE_DIRECTORY + i + "/A20220101.1000+0000-1015+0000_NR" + i + ".xml");
+        }
+        assertEquals(10000, ledger.size());
+        assertTrue(ledger.contains(NODE_DIRECTORY + "42/A20220101.1000+0000-1015+0000_NR42.xml"));
+        assertFalse(ledger.contains(NODE_DIRECTORY + "42/A20220101.1015+0000-1030+0000_NR42.xml"));
+
+        ledger.add(NODE_DIRECTORY + "42/A20220101.1000+0000-1015+0000_NR42.xml");
+        assertEquals(10000, ledger.size());
+    }
+
+    @Test
+    public void test_startRop_ForgetsLinksOfPreviousRop() {
+        final SymlinkLedger ledger = new SymlinkLedger();
+        final String link = NODE_DIRECTORY + "1/A20220101.1000+0000-1015+0000_NR1.xml";
+        ledger.startRop(LocalDateTime.of(2022, 1, 1, 10, 0));
+        ledger.add(link);
+
+        ledger.startRop(LocalDateTime.of(2022, 1, 1, 10, 0));
+        assertTrue(ledger.contains(link));
+
+        ledger.startRop(LocalDateTime.of(2022, 1, 1, 10, 15));
+        assertFalse(ledger.contains(link));
+        assertEquals(0, ledger.size());
+    }
+}
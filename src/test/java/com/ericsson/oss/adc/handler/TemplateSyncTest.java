@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.ericsson.oss.adc.services.SftpService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class TemplateSyncTest {
+
+    private static final String BIN = "/sftp/bin/";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void test_sync_UploadsOnlyChangedContentsOnce() throws IOException {
+        final Map<String, File> templates = new TreeMap<>();
+        templates.put("pm/A.xml", write("pm/A.xml", "counters"));
+        templates.put("pm/B.xml", write("pm/B.xml", "counters"));
+        templates.put("ctr/A.bin", write("ctr/A.bin", "events"));
+        final TestSftpService sftpService = new TestSftpService();
+        final TemplateSync templateSync = new TemplateSync(sftpService, 4);
+
+        assertTrue(templateSync.sync(templates, BIN, "750"));
+        assertEquals(2, sftpService.uploads.size());
+        assertEquals(3, sftpService.links.size());
+        assertEquals(sftpService.links.get(BIN + "pm/A.xml"), sftpService.links.get(BIN + "pm/B.xml"));
+        assertEquals(BIN + ".objects/" + TemplateSync.hash(templates.get("ctr/A.bin")), sftpService.links.get(BIN + "ctr/A.bin"));
+
+        sftpService.uploads.clear();
+        sftpService.linkCount = 0;
+        assertTrue(templateSync.sync(templates, BIN, "750"));
+        assertEquals(0, sftpService.uploads.size());
+        assertEquals(0, sftpService.linkCount);
+
+        write("pm/B.xml", "other counters");
+        assertTrue(templateSync.sync(templates, BIN, "750"));
+        assertEquals(1, sftpService.uploads.size());
+        assertEquals(1, sftpService.linkCount);
+        assertEquals(BIN + ".objects/" + TemplateSync.hash(templates.get("pm/B.xml")), sftpService.links.get(BIN + "pm/B.xml"));
+    }
+
+    @Test
+    public void test_sync_PartialUploadNeverTakenForTheContent() throws IOException {
+        final Map<String, File> templates = Map.of("pm/A.xml", write("pm/A.xml", "counters"));
+        final String object = BIN + ".objects/" + TemplateSync.hash(templates.get("pm/A.xml"));
+        final TestSftpService sftpService = new TestSftpService();
+        final TemplateSync templateSync = new TemplateSync(sftpService, 4);
+        sftpService.files.put(object + TemplateSync.PARTIAL_SUFFIX, new byte[0]); // left by a pod gone mid-upload
+
+        sftpService.failRenames = true;
+        assertFalse(templateSync.sync(templates, BIN, "750"));
+        assertFalse(sftpService.files.containsKey(object));
+        assertFalse(sftpService.files.containsKey(object + TemplateSync.PARTIAL_SUFFIX));
+        assertTrue(sftpService.links.isEmpty());
+
+        sftpService.failRenames = false;
+        assertTrue(templateSync.sync(templates, BIN, "750"));
+        assertEquals(2, sftpService.uploads.size());
+        assertTrue(sftpService.files.containsKey(object));
+        assertEquals(object, sftpService.links.get(BIN + "pm/A.xml"));
+    }
+
+    @Test
+    public void test_sync_TemplateLinkedAgainWithoutGoingMissing() throws IOException {
+        final Map<String, File> templates = Map.of("pm/A.xml", write("pm/A.xml", "counters"));
+        final TestSftpService sftpService = new TestSftpService();
+        final TemplateSync templateSync = new TemplateSync(sftpService, 4);
+        assertTrue(templateSync.sync(templates, BIN, "750"));
+
+        write("pm/A.xml", "other counters");
+        assertTrue(templateSync.sync(templates, BIN, "750"));
+        assertEquals(BIN + ".objects/" + TemplateSync.hash(templates.get("pm/A.xml")), sftpService.links.get(BIN + "pm/A.xml"));
+        assertTrue(sftpService.linksRemoved.isEmpty());
+        assertFalse(sftpService.links.containsKey(BIN + "pm/A.xml" + TemplateSync.PARTIAL_SUFFIX));
+
+        // without posix rename, the old link is removed once the new one exists
+        sftpService.posixRename = false;
+        write("pm/A.xml", "more counters");
+        assertTrue(templateSync.sync(templates, BIN, "750"));
+        assertEquals(BIN + ".objects/" + TemplateSync.hash(templates.get("pm/A.xml")), sftpService.links.get(BIN + "pm/A.xml"));
+        assertEquals(List.of(BIN + "pm/A.xml"), sftpService.linksRemoved);
+    }
+
+    @Test
+    public void test_parseManifest_FormatManifest() {
+        final Map<String, String> manifest = Map.of("pm/A B.xml", "ab12", "ctr/A.bin", "cd34");
+        assertEquals(manifest, TemplateSync.parseManifest(TemplateSync.formatManifest(new TreeMap<>(manifest))));
+        assertTrue(TemplateSync.parseManifest(null).isEmpty());
+    }
+
+    private File write(final String relativePath, final String content) throws IOException {
+        final Path file = directory.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        return Files.write(file, content.getBytes(StandardCharsets.UTF_8)).toFile();
+    }
+
+    /**
+     * An SFTP server in memory.
+     */
+    private static class TestSftpService extends SftpService {
+        private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+        private final Map<String, String> links = new ConcurrentHashMap<>();
+        private final List<String> uploads = new CopyOnWriteArrayList<>();
+        private volatile int linkCount;
+        private final List<String> linksRemoved = new CopyOnWriteArrayList<>();
+        private volatile boolean failRenames;
+        private volatile boolean posixRename = true;
+
+        TestSftpService() {
+            super(new SimpleMeterRegistry());
+        }
+
+        @Override
+        public boolean upload(final String localPath, final String remotePath, final String permissions) {
+            uploads.add(remotePath);
+            files.put(remotePath, new byte[0]);
+            return true;
+        }
+
+        @Override
+        public boolean upload(final byte[] content, final String remotePath, final String permissions) {
+            files.put(remotePath, content);
+            return true;
+        }
+
+        @Override
+        public byte[] download(final String remotePath) {
+            return files.get(remotePath);
+        }
+
+        @Override
+        public List<String> listRemoteFilePaths(final String remotePath) {
+            return files.keySet().stream().filter(path -> path.startsWith(remotePath)).collect(Collectors.toList());
+        }
+
+        @Override
+        public boolean isPosixRenameSupported() {
+            return posixRename;
+        }
+
+        @Override
+        public synchronized boolean rename(final String remotePath, final String newRemotePath) {
+            if (failRenames || (!posixRename && (files.containsKey(newRemotePath) || links.containsKey(newRemotePath)))) {
+                return false;
+            }
+            if (links.containsKey(remotePath)) {
+                links.put(newRemotePath, links.remove(remotePath));
+            } else {
+                files.put(newRemotePath, files.remove(remotePath));
+            }
+            return true;
+        }
+
+        @Override
+        public synchronized boolean rm(final String remotePath) {
+            if (links.remove(remotePath) != null && !remotePath.endsWith(TemplateSync.PARTIAL_SUFFIX)) {
+                linksRemoved.add(remotePath);
+            }
+            files.remove(remotePath);
+            return true;
+        }
+
+        @Override
+        public synchronized SymlinkResult symlink(final String sourceFile, final String linkedFile, final String permissions) {
+            linkCount++;
+            return links.putIfAbsent(linkedFile, sourceFile) == null ? SymlinkResult.SUCCESS : SymlinkResult.EXIST;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class NotificationJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void test_replay_RecoversNotificationsAfterReopen() throws IOException {
+        try (NotificationJournal journal = new NotificationJournal(directory, 128, 4, 0)) {
+            journal.append(new MetaData(new FileNotificationDTO("node1", "PM_STATISTICAL", "RadioNode", "/a/b/node1/f1"), 10), 1000);
+            journal.append(new MetaData(new FileNotificationDTO("nod\u00e92", "PM_CELLTRACE", null, "/a/b/nod\u00e92/f2"), 20), 2000);
+        }
+        try (NotificationJournal journal = new NotificationJournal(directory, 128, 4, 0)) {
+            assertEquals(20, journal.getLastId());
+            final List<MetaData> replayed = new ArrayList<>();
+            final List<Long> appendMillis = new ArrayList<>();
+            assertEquals(2, journal.replay(0, (metaData, millis) -> {
+                replayed.add(metaData);
+                appendMillis.add(millis);
+            }));
+            assertEquals(10, replayed.get(0).getId());
+            assertEquals("node1", replayed.get(0).getNodeName());
+            assertEquals("RadioNode", replayed.get(0).getNodeType());
+            assertEquals("nod\u00e92", replayed.get(1).getNodeName());
+            assertEquals("PM_CELLTRACE", replayed.get(1).getDataType());
+            assertNull(replayed.get(1).getNodeType());
+            assertEquals("/a/b/nod\u00e92/f2", replayed.get(1).getFileLocation());
+            assertEquals(List.of(1000L, 2000L), appendMillis);
+
+            // appending continues in the reopened segment
+            journal.append(new MetaData(30), 3000);
+            assertEquals(1, journal.replay(2500, (metaData, millis) -> assertEquals(30, metaData.getId())));
+            assertEquals(1, journal.getSegmentCount());
+            assertThrows(IllegalArgumentException.class, () -> journal.append(new MetaData(30), 4000));
+        }
+    }
+
+    @Test
+    public void test_append_RollsSegmentsAndExpiresOldOnes() throws IOException {
+        try (NotificationJournal journal = new NotificationJournal(directory, 64, 2, 1000)) {
+            for (long id = 1; id <= 5; id++) {
+                journal.append(new MetaData(id), id * 100);
+            }
+            assertEquals(3, journal.getSegmentCount());
+            assertEquals(1, journal.getFirstId());
+
+            // the segment started at 2000 expires the ones whose newest notification is older than 1000
+            journal.append(new MetaData(6), 2000);
+            journal.append(new MetaData(7), 2000);
+            assertEquals(2, journal.getSegmentCount());
+            assertEquals(5, journal.getFirstId());
+            assertEquals(3, journal.size());
+        }
+    }
+
+    @Test
+    public void test_append_SkipsNotificationLargerThanRecord() throws IOException {
+        try (NotificationJournal journal = new NotificationJournal(directory, 32, 2, 0)) {
+            assertFalse(journal.append(new MetaData(new FileNotificationDTO("node1", "PM_STATISTICAL", "RadioNode",
+                    "/a/very/long/location"), 1), 100));
+            assertEquals(Long.MIN_VALUE, journal.getLastId());
+        }
+    }
+
+    @Test
+    public void test_iterateFilesBetween_ReadsEvictedNotificationsFromJournal() throws IOException {
+        try (NotificationJournal journal = new NotificationJournal(directory, 128, 3, 0)) {
+            final NotificationStore store = new NotificationStore(2);
+            store.setJournal(journal);
+            for (long id = 1; id <= 8; id++) {
+                store.append(new MetaData(new FileNotificationDTO("node" + id, id % 2 == 0 ? "PM_CELLTRACE" : "PM_STATISTICAL",
+                        "RadioNode", "/a/b/node" + id + "/f"), id), id * 100);
+            }
+            store.evictUpTo(4);
+
+            assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L), ids(store.iterateFilesBetween(0, Long.MAX_VALUE,
+                    value -> true, value -> true, null, 0, 100)));
+            assertEquals(List.of(2L, 4L, 6L), ids(store.iterateFilesBetween(1, 7, "PM_CELLTRACE"::equals,
+                    value -> true, null, 0, 100)));
+            // the page spans both tiers
+            assertEquals(List.of(4L, 5L, 6L), ids(store.iterateFilesBetween(0, Long.MAX_VALUE, value -> true,
+                    value -> true, null, 3, 3)));
+            assertEquals(List.of(7L), ids(store.iterateFilesBetween(0, Long.MAX_VALUE, value -> true, value -> true,
+                    metaData -> metaData.getId() > 6 || metaData.getId() == 3, 1, 1)));
+            // newer than the oldest retained notification, the journal is not read
+            assertEquals(List.of(6L, 7L, 8L), ids(store.iterateFilesBetween(5, Long.MAX_VALUE, value -> true,
+                    value -> true, null, 0, 100)));
+        }
+    }
+
+    @Test
+    public void test_storeAppend_RejectsNotificationBeyondTypeCodesBeforeJournaling() throws IOException {
+        try (NotificationJournal journal = new NotificationJournal(directory, 128, 512, 0)) {
+            final NotificationStore store = new NotificationStore(64);
+            store.setJournal(journal);
+            for (int id = 1; id <= NotificationSegment.MAX_TYPE_CODE + 1; id++) {
+                store.append(new MetaData(new FileNotificationDTO("node", "PM_STATISTICAL", "Type" + id, "/a/f" + id), id));
+            }
+            assertThrows(IllegalArgumentException.class,
+                    () -> store.append(new MetaData(new FileNotificationDTO("node", "PM_STATISTICAL", "TypeX", "/a/fx"), 1000)));
+            assertEquals(NotificationSegment.MAX_TYPE_CODE + 1, journal.getLastId());
+            assertEquals(NotificationSegment.MAX_TYPE_CODE + 1, store.size());
+        }
+    }
+
+    private static List<Long> ids(final Iterator<MetaData> iterator) {
+        final List<Long> ids = new ArrayList<>();
+        iterator.forEachRemaining(metaData -> ids.add(metaData.getId()));
+        return ids;
+    }
+}
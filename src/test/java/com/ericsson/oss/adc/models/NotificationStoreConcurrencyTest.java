@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Polls the store from several threads while a single writer publishes a large ROP, the way FLS
+ * consumers poll the stub during ROP generation, checks every page is consistent and logs the query
+ * latency.
+ */
+public class NotificationStoreConcurrencyTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(NotificationStoreConcurrencyTest.class);
+
+    private static final int ROP_FILES = 100_000;
+
+    private static final int READERS = 4;
+
+    private static final int PAGE_SIZE = 1000;
+
+    private static final String[] DATA_TYPES = { "PM_STATISTICAL", "PM_CELLTRACE", "PM_CELLTRACE_CUUP" };
+
+    @Test
+    public void test_queriesDuringRopGenerationAreConsistent() throws Exception {
+        final NotificationStore store = new NotificationStore();
+        final AtomicBoolean publishing = new AtomicBoolean(true);
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(READERS + 1);
+
+        final Future<Long> writer = executor.submit(() -> {
+            start.await();
+            final long startTime = System.nanoTime();
+            for (long id = 1; id <= ROP_FILES; id++) {
+                final String dataType = DATA_TYPES[(int) (id % DATA_TYPES.length)];
+                store.append(new MetaData(new FileNotificationDTO("node" + id, dataType, "RadioNode", "/pm/file" + id), id));
+                if (id % 25_000 == 0) {
+                    store.evictUpTo(id - 20_000);
+                }
+            }
+            publishing.set(false);
+            return System.nanoTime() - startTime;
+        });
+
+        final List<Future<List<Long>>> readers = new ArrayList<>();
+        for (int reader = 0; reader < READERS; reader++) {
+            readers.add(executor.submit(() -> {
+                final List<Long> latencies = new ArrayList<>();
+                start.await();
+                long lastSeen = 0;
+                while (publishing.get()) {
+                    final long startTime = System.nanoTime();
+                    final Iterator<MetaData> files = store.iterateFilesAfter(lastSeen, "PM_STATISTICAL"::equals,
+                            "RadioNode"::equals, 0, PAGE_SIZE);
+                    long previous = lastSeen;
+                    while (files.hasNext()) {
+                        final MetaData file = files.next();
+                        assertTrue(file.getId() > previous, "ids out of order");
+                        assertEquals("PM_STATISTICAL", file.getDataType());
+                        previous = file.getId();
+                    }
+                    latencies.add(System.nanoTime() - startTime);
+                    // follow the ROP like a consumer, starting over now and then to read long pages
+                    lastSeen = latencies.size() % 50 == 0 ? 0 : previous;
+                }
+                return latencies;
+            }));
+        }
+        start.countDown();
+
+        final long writerNanos = writer.get(60, TimeUnit.SECONDS);
+        final List<Long> latencies = new ArrayList<>();
+        for (final Future<List<Long>> reader : readers) {
+            latencies.addAll(reader.get(60, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        Collections.sort(latencies);
+        if (latencies.isEmpty()) {
+            LOGGER.info("{} files published in {} ms before any of the {} readers completed a query", ROP_FILES,
+                    TimeUnit.NANOSECONDS.toMillis(writerNanos), READERS);
+        } else {
+            // latency depends on the machine running the build, so it is reported rather than asserted
+            LOGGER.info("{} files published in {} ms while {} readers ran {} queries: p50 {} us, p99 {} us, max {} us",
+                    ROP_FILES, TimeUnit.NANOSECONDS.toMillis(writerNanos), READERS, latencies.size(),
+                    TimeUnit.NANOSECONDS.toMicros(latencies.get(latencies.size() / 2)),
+                    TimeUnit.NANOSECONDS.toMicros(latencies.get((int) (latencies.size() * 0.99))),
+                    TimeUnit.NANOSECONDS.toMicros(latencies.get(latencies.size() - 1)));
+        }
+
+        assertEquals(ROP_FILES, store.getLastId());
+        assertEquals(ROP_FILES - 80_000, store.size());
+    }
+}
@@ -0,0 +1,269 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ericsson.oss.adc.enums.MetaDataField;
+
+public class NotificationStoreTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(NotificationStoreTest.class);
+
+    NotificationStore notificationStore;
+
+    @BeforeEach
+    public void init() {
+        notificationStore = new NotificationStore(4);
+        for (long id = 10; id <= 100; id += 10) {
+            notificationStore.append(new MetaData(id));
+        }
+    }
+
+    @Test
+    public void test_getFilesAfter_ReturnsOnlyNewerFilesInOrder() {
+        final List<MetaData> files = notificationStore.getFilesAfter(45);
+        assertEquals(6, files.size());
+        assertEquals(50, files.get(0).getId());
+        assertEquals(100, files.get(5).getId());
+    }
+
+    @Test
+    public void test_getFilesAfter_ExactIdAtSegmentBoundary() {
+        final List<MetaData> files = notificationStore.getFilesAfter(40);
+        assertEquals(6, files.size());
+        assertEquals(50, files.get(0).getId());
+    }
+
+    @Test
+    public void test_getFilesAfter_OlderAndNewerThanEverything() {
+        assertEquals(10, notificationStore.getFilesAfter(0).size());
+        assertTrue(notificationStore.getFilesAfter(100).isEmpty());
+    }
+
+    @Test
+    public void test_getFilesAfter_FiltersOnDataTypeAndNodeType() {
+        final NotificationStore store = new NotificationStore(4);
+        store.append(new MetaData(new FileNotificationDTO("node1", "PM_STATISTICAL", "RadioNode", "location1"), 1));
+        store.append(new MetaData(new FileNotificationDTO("node2", "PM_CELLTRACE", "RadioNode", "location2"), 2));
+        store.append(new MetaData(new FileNotificationDTO("node3", "PM_STATISTICAL", "PCC", "location3"), 3));
+        store.append(new MetaData(4));
+        store.append(new MetaData(new FileNotificationDTO("node5", "PM_STATISTICAL", "RadioNode", "location5"), 5));
+        store.append(new MetaData(new FileNotificationDTO("node6", "PM_CELLTRACE_CUUP", "RadioNode", "location6"), 6));
+
+        final List<MetaData> statistical = store.getFilesAfter(1, "PM_STATISTICAL"::equals, nodeType -> true);
+        assertEquals(2, statistical.size());
+        assertEquals(3, statistical.get(0).getId());
+        assertEquals(5, statistical.get(1).getId());
+
+        final List<MetaData> radioNodeCelltrace = store.getFilesAfter(0, dataType -> dataType.startsWith("PM_CELLTRACE"),
+                "RadioNode"::equals);
+        assertEquals(2, radioNodeCelltrace.size());
+        assertEquals(2, radioNodeCelltrace.get(0).getId());
+        assertEquals(6, radioNodeCelltrace.get(1).getId());
+
+        assertTrue(store.getFilesAfter(0, "PM_EBM"::equals, nodeType -> true).isEmpty());
+    }
+
+    @Test
+    public void test_getFilesAfter_PagesWithOffsetAndLimit() {
+        final NotificationStore store = new NotificationStore(4);
+        for (long id = 1; id <= 10; id++) {
+            store.append(new MetaData(new FileNotificationDTO("node" + id, "PM_STATISTICAL", "RadioNode", "location" + id), id));
+        }
+        final List<MetaData> page = store.getFilesAfter(1, "PM_STATISTICAL"::equals, "RadioNode"::equals, 4, 3);
+        assertEquals(3, page.size());
+        assertEquals(6, page.get(0).getId());
+        assertEquals(8, page.get(2).getId());
+
+        assertEquals(1, store.getFilesAfter(0, "PM_STATISTICAL"::equals, "RadioNode"::equals, 9, 5).size());
+        assertTrue(store.getFilesAfter(0, "PM_STATISTICAL"::equals, "RadioNode"::equals, 10, 5).isEmpty());
+        assertTrue(store.getFilesAfter(0, "PM_STATISTICAL"::equals, "RadioNode"::equals, 0, 0).isEmpty());
+    }
+
+    @Test
+    public void test_iterateFilesAfter_IgnoresFilesAppendedAfterSnapshot() {
+        final NotificationStore store = new NotificationStore(2);
+        for (long id = 1; id <= 3; id++) {
+            store.append(new MetaData(new FileNotificationDTO("node" + id, "PM_STATISTICAL", "RadioNode", "location" + id), id));
+        }
+        final Iterator<MetaData> files = store.iterateFilesAfter(1, "PM_STATISTICAL"::equals, "RadioNode"::equals, 0,
+                Integer.MAX_VALUE);
+        store.append(new MetaData(new FileNotificationDTO("node4", "PM_STATISTICAL", "RadioNode", "location4"), 4));
+
+        assertEquals(2, files.next().getId());
+        assertEquals(3, files.next().getId());
+        assertFalse(files.hasNext());
+    }
+
+    @Test
+    public void test_evictUpTo_DropsWholeAndPartialSegments() {
+        final long bytesBefore = notificationStore.getRetainedBytes();
+        assertEquals(3, notificationStore.evictUpTo(30));
+        assertEquals(7, notificationStore.size());
+        assertEquals(40, notificationStore.getFilesAfter(0).get(0).getId());
+
+        assertEquals(2, notificationStore.evictUpTo(55));
+        assertEquals(5, notificationStore.size());
+        assertEquals(60, notificationStore.getFilesAfter(0).get(0).getId());
+        assertEquals(0, notificationStore.evictUpTo(50));
+
+        assertEquals(5, notificationStore.evictUpTo(100));
+        assertTrue(notificationStore.isEmpty());
+        assertTrue(notificationStore.getFilesAfter(0).isEmpty());
+        assertTrue(bytesBefore > 0);
+        assertEquals(0, notificationStore.getRetainedBytes());
+
+        notificationStore.append(new MetaData(110));
+        assertEquals(1, notificationStore.getFilesAfter(0).size());
+    }
+
+    @Test
+    public void test_iterateFilesAfter_SnapshotSurvivesEviction() {
+        final NotificationStore store = new NotificationStore(2);
+        for (long id = 1; id <= 4; id++) {
+            store.append(new MetaData(new FileNotificationDTO("node" + id, "PM_STATISTICAL", "RadioNode", "location" + id), id));
+        }
+        final Iterator<MetaData> files = store.iterateFilesAfter(0, "PM_STATISTICAL"::equals, "RadioNode"::equals, 0,
+                Integer.MAX_VALUE);
+        store.evictUpTo(3);
+
+        assertEquals(1, files.next().getId());
+        assertEquals(4, store.iterateFilesAfter(0, "PM_STATISTICAL"::equals, "RadioNode"::equals, 0, 10).next().getId());
+    }
+
+    @Test
+    public void test_append_RejectsOutOfOrderId() {
+        assertThrows(IllegalArgumentException.class, () -> notificationStore.append(new MetaData(100)));
+        assertEquals(10, notificationStore.size());
+        assertEquals(100, notificationStore.getLastId());
+    }
+
+    @Test
+    public void test_getLastId_OfMatchingDataTypes() {
+        final NotificationStore store = new NotificationStore(2);
+        store.append(new MetaData(new FileNotificationDTO("node1", "PM_STATISTICAL", "RadioNode", "location1"), 1));
+        store.append(new MetaData(new FileNotificationDTO("node2", "PM_CELLTRACE", "RadioNode", "location2"), 2));
+        store.append(new MetaData(new FileNotificationDTO("node3", "PM_STATISTICAL", "RadioNode", "location3"), 3));
+        store.append(new MetaData(new FileNotificationDTO("node4", "PM_CELLTRACE_CUUP", "RadioNode", "location4"), 4));
+
+        assertEquals(3, store.getLastId("PM_STATISTICAL"::equals));
+        assertEquals(4, store.getLastId(dataType -> dataType.startsWith("PM_CELLTRACE")));
+        assertEquals(Long.MIN_VALUE, store.getLastId("PM_EBSL"::equals));
+    }
+
+    @Test
+    public void test_append_StoresColumnsAndReadsBackEqualViews() {
+        final NotificationStore store = new NotificationStore(4);
+        final MetaData first = new MetaData(new FileNotificationDTO("node\"1", "PM_STATISTICAL", "RadioNode",
+                "/ericsson/pmic1/XML/SubNetwork=\"Europe\",node1/A20220101.1200+0000-1215+0000_node1_\u00e9\\statsfile.xml"), 1);
+        final MetaData second = new MetaData(new FileNotificationDTO("node\"1", "PM_STATISTICAL", "RadioNode", "no-directory.xml"), 2);
+        final MetaData third = new MetaData(new FileNotificationDTO(null, "PM_CELLTRACE", null, null), 3);
+        store.append(first);
+        store.append(second);
+        store.append(third);
+
+        final List<MetaData> stored = List.of(first, second, third);
+        final List<MetaData> files = store.getFilesAfter(0);
+        assertEquals(3, files.size());
+        for (int index = 0; index < files.size(); index++) {
+            final MetaData expected = stored.get(index);
+            final MetaData file = files.get(index);
+            assertEquals(expected.getId(), file.getId());
+            assertEquals(expected.getNodeName(), file.getNodeName());
+            assertEquals(expected.getDataType(), file.getDataType());
+            assertEquals(expected.getNodeType(), file.getNodeType());
+            assertEquals(expected.getFileLocation(), file.getFileLocation());
+            for (final MetaDataField field : MetaDataField.values()) {
+                assertEquals(String.valueOf(expected.getJsonFragment(field)), String.valueOf(file.getJsonFragment(field)));
+            }
+        }
+        // dictionary values share their fragments
+        assertSame(files.get(0).getJsonFragment(MetaDataField.NODE_NAME), files.get(1).getJsonFragment(MetaDataField.NODE_NAME));
+        assertNull(files.get(2).getJsonFragment(MetaDataField.FILE_LOCATION));
+    }
+
+    @Test
+    public void test_retainedBytes_CompactColumnsAgainstMetaDataObjects() throws InterruptedException {
+        final int count = 50_000;
+        final List<MetaData> notifications = new ArrayList<>(count);
+        final long baseBytes = usedHeapBytes();
+        for (int id = 1; id <= count; id++) {
+            notifications.add(notification(id));
+        }
+        final long objectBytesPerNotification = (usedHeapBytes() - baseBytes) / count;
+        // the characters of the strings alone, with no object headers, are a lower bound of what MetaData objects hold
+        long stringBytes = 0;
+        // a row of fixed columns and the file name padded to 8 bytes
+        long columnBytes = 0;
+        for (final MetaData notification : notifications) {
+            stringBytes += notification.getNodeName().length() + notification.getDataType().length()
+                    + notification.getNodeType().length() + notification.getFileLocation().length();
+            final String fileLocation = notification.getFileLocation();
+            final int fileNameLength = fileLocation.length() - fileLocation.lastIndexOf('/') - 1;
+            columnBytes += 42 + ((fileNameLength + 7) & ~7);
+        }
+        notifications.clear();
+
+        final long storeBaseBytes = usedHeapBytes();
+        final NotificationStore store = new NotificationStore();
+        for (int id = 1; id <= count; id++) {
+            store.append(notification(id));
+        }
+        final long columnBytesPerNotification = (usedHeapBytes() - storeBaseBytes) / count;
+        assertEquals(count, store.size()); // keeps the store reachable until measured
+        // the heap figures depend on the garbage collector, so they are reported rather than asserted
+        LOGGER.info("Heap used per notification: {} bytes as MetaData objects, {} bytes in columns, {} bytes estimated",
+                objectBytesPerNotification, columnBytesPerNotification, store.getRetainedBytes() / count);
+        assertEquals(columnBytes, store.getRetainedBytes());
+        assertTrue(store.getRetainedBytes() < stringBytes);
+    }
+
+    private static MetaData notification(final int id) {
+        final String node = "SubNetwork=Europe,SubNetwork=Ireland,MeContext=NR" + (id % 500) + "gNodeBRadio,ManagedElement=NR"
+                + (id % 500) + "gNodeBRadio";
+        return new MetaData(new FileNotificationDTO(node, "PM_STATISTICAL", "RadioNode",
+                "/ericsson/pmic1/XML/" + node + "/A20220101.1200+0000-1215+0000_" + node + "_statsfile.xml"), id);
+    }
+
+    /**
+     * Gets the heap in use once garbage collection has settled.
+     */
+    private static long usedHeapBytes() throws InterruptedException {
+        final Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(50);
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import org.junit.jupiter.api.Test;
+
+import com.ericsson.oss.adc.enums.MetaDataField;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class StreamingResponseDataSerializerTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void test_serialize_WritesSameShapeAsResponseData() throws Exception {
+        final MetaData file = new MetaData(new FileNotificationDTO("node1", "PM_STATISTICAL", "RadioNode", "location1"), 7);
+        final String streamed = objectMapper.writeValueAsString(
+                new StreamingResponseData(Arrays.asList(file).iterator(), EnumSet.allOf(MetaDataField.class), 10, id -> "cursor" + id));
+        assertEquals(objectMapper.writeValueAsString(new ResponseData(Arrays.asList(file))), streamed);
+    }
+
+    @Test
+    public void test_serialize_AddsNextCursorOnlyWhenMoreFilesRemain() throws Exception {
+        final String streamed = objectMapper.writeValueAsString(new StreamingResponseData(
+                Arrays.asList(new MetaData(1), new MetaData(2), new MetaData(3)).iterator(), EnumSet.allOf(MetaDataField.class), 2,
+                id -> "cursor" + id));
+        assertEquals("{\"files\":[{\"id\":1},{\"id\":2}],\"nextCursor\":\"cursor2\"}", streamed);
+
+        final String empty = objectMapper.writeValueAsString(new StreamingResponseData(
+                Arrays.<MetaData>asList().iterator(), EnumSet.allOf(MetaDataField.class), 2, id -> "cursor" + id));
+        assertEquals("{\"files\":[]}", empty);
+    }
+
+    @Test
+    public void test_serialize_WritesSelectedFieldsOnly() throws Exception {
+        final MetaData file = new MetaData(new FileNotificationDTO("node\"1", "PM_STATISTICAL", null, "/pm/file1"), 7);
+        file.encodeJsonFragments();
+        final String streamed = objectMapper.writeValueAsString(new StreamingResponseData(Arrays.asList(file, file).iterator(),
+                MetaDataField.parseSelect("id, nodeName,nodeType,unknown"), 10, id -> "cursor" + id));
+        assertEquals("{\"files\":[{\"id\":7,\"nodeName\":\"node\\\"1\"},{\"id\":7,\"nodeName\":\"node\\\"1\"}]}", streamed);
+
+        assertEquals(EnumSet.allOf(MetaDataField.class), MetaDataField.parseSelect(null));
+        assertEquals(EnumSet.of(MetaDataField.ID), MetaDataField.parseSelect("id"));
+    }
+}
@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.ericsson.oss.adc.handler.FileHandler;
+import com.ericsson.oss.adc.models.FileNotificationDTO;
+import com.ericsson.oss.adc.models.MetaData;
+import com.ericsson.oss.adc.models.NotificationStore;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ConsumerTrackerTest {
+    private static final String LAG_IDS = "eric.oss.file.notification.enm.stub:fls.consumer.lag.ids";
+    private static final String LAG_SECONDS = "eric.oss.file.notification.enm.stub:fls.consumer.lag.seconds";
+
+    SimpleMeterRegistry meterRegistry;
+    NotificationStore notificationStore;
+    ConsumerTracker consumerTracker;
+
+    @BeforeEach
+    public void init() {
+        final FileHandler fileHandler = new FileHandler();
+        notificationStore = fileHandler.getNotificationStore();
+        meterRegistry = new SimpleMeterRegistry();
+        consumerTracker = new ConsumerTracker(meterRegistry);
+        ReflectionTestUtils.setField(consumerTracker, "fileHandler", fileHandler);
+        // one ROP a minute, statistical then celltrace files
+        for (long id = 1; id <= 30; id++) {
+            final String dataType = id % 3 == 0 ? "PM_CELLTRACE" : "PM_STATISTICAL";
+            notificationStore.append(new MetaData(new FileNotificationDTO("node" + id, dataType, "RadioNode", "location" + id), id),
+                    (id - 1) / 10 * 60_000L);
+        }
+    }
+
+    @Test
+    public void test_acknowledge_TracksCursorPerConsumerAndDataType() {
+        consumerTracker.acknowledge("parser-1", "PM_STATISTICAL"::equals, 10);
+        consumerTracker.acknowledge("parser-2", dataType -> dataType.startsWith("PM_"), 29);
+
+        assertEquals(10, consumerTracker.getCursor("parser-1", "PM_STATISTICAL"));
+        assertEquals(Long.MIN_VALUE, consumerTracker.getCursor("parser-1", "PM_CELLTRACE"));
+        assertEquals(29, consumerTracker.getCursor("parser-2", "PM_CELLTRACE"));
+        assertEquals(2, consumerTracker.getConsumerCount());
+    }
+
+    @Test
+    public void test_lag_InIdsAndSecondsBehindNewestOfDataType() {
+        consumerTracker.acknowledge("parser-1", "PM_STATISTICAL"::equals, 10);
+        consumerTracker.acknowledge("parser-2", "PM_CELLTRACE"::equals, 30);
+
+        // newest statistical file is 29, stored two ROPs after file 10
+        assertEquals(19, consumerTracker.getLagIds("parser-1", "PM_STATISTICAL"));
+        assertEquals(120, consumerTracker.getLagSeconds("parser-1", "PM_STATISTICAL"));
+        assertEquals(0, consumerTracker.getLagIds("parser-2", "PM_CELLTRACE"));
+        assertEquals(0, consumerTracker.getLagSeconds("parser-2", "PM_CELLTRACE"));
+
+        final Gauge lagIds = meterRegistry.find(LAG_IDS).tag("consumer", "parser-1").tag("dataType", "PM_STATISTICAL").gauge();
+        assertNotNull(lagIds);
+        assertEquals(19, lagIds.value());
+        notificationStore.append(new MetaData(new FileNotificationDTO("node31", "PM_STATISTICAL", "RadioNode", "location31"), 31),
+                180_000L);
+        assertEquals(21, lagIds.value());
+        assertEquals(180, meterRegistry.find(LAG_SECONDS).tag("consumer", "parser-1").gauge().value());
+        assertNull(meterRegistry.find(LAG_IDS).tag("consumer", "parser-1").tag("dataType", "PM_CELLTRACE").gauge());
+    }
+
+    @Test
+    public void test_lag_CursorOlderThanStoreCountsFromOldestNotification() {
+        consumerTracker.acknowledge("parser-1", "PM_CELLTRACE"::equals, 0);
+        notificationStore.evictUpTo(15);
+
+        assertEquals(15, consumerTracker.getLagIds("parser-1", "PM_CELLTRACE"));
+        assertEquals(60, consumerTracker.getLagSeconds("parser-1", "PM_CELLTRACE"));
+    }
+
+    @Test
+    public void test_acknowledge_IdleConsumersForgottenWithTheirGauges() {
+        ReflectionTestUtils.setField(consumerTracker, "idleExpiryMs", 600_000L);
+        consumerTracker.acknowledge("parser-1", "PM_STATISTICAL"::equals, 10, 0);
+        consumerTracker.acknowledge("parser-2", "PM_STATISTICAL"::equals, 10, 0);
+        consumerTracker.acknowledge("parser-2", "PM_STATISTICAL"::equals, 20, 300_000);
+
+        consumerTracker.acknowledge("parser-2", "PM_STATISTICAL"::equals, 29, 600_000);
+
+        assertEquals(1, consumerTracker.getConsumerCount());
+        assertEquals(Long.MIN_VALUE, consumerTracker.getCursor("parser-1", "PM_STATISTICAL"));
+        assertNull(meterRegistry.find(LAG_IDS).tag("consumer", "parser-1").gauge());
+        assertNull(meterRegistry.find(LAG_SECONDS).tag("consumer", "parser-1").gauge());
+        assertNotNull(meterRegistry.find(LAG_IDS).tag("consumer", "parser-2").gauge());
+    }
+
+    @Test
+    public void test_acknowledge_LeastRecentlyPollingConsumerForgottenBeyondMax() {
+        ReflectionTestUtils.setField(consumerTracker, "maxConsumers", 2);
+        consumerTracker.acknowledge("parser-1", "PM_STATISTICAL"::equals, 10, 0);
+        consumerTracker.acknowledge("parser-2", "PM_STATISTICAL"::equals, 10, 1_000);
+        consumerTracker.acknowledge("parser-1", "PM_STATISTICAL"::equals, 20, 2_000);
+
+        consumerTracker.acknowledge("parser-3", "PM_STATISTICAL"::equals, 10, 3_000);
+
+        assertEquals(2, consumerTracker.getConsumerCount());
+        assertEquals(20, consumerTracker.getCursor("parser-1", "PM_STATISTICAL"));
+        assertEquals(Long.MIN_VALUE, consumerTracker.getCursor("parser-2", "PM_STATISTICAL"));
+        assertNull(meterRegistry.find(LAG_IDS).tag("consumer", "parser-2").gauge());
+        assertNotNull(meterRegistry.find(LAG_IDS).tag("consumer", "parser-3").gauge());
+    }
+
+    @Test
+    public void test_acknowledge_ConcurrentPollsTrackEveryConsumer() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<Future<?>> pollers = new ArrayList<>();
+        for (int poller = 0; poller < 4; poller++) {
+            final String consumer = "parser-" + poller;
+            pollers.add(executor.submit(() -> {
+                for (long id = 1; id <= 1000; id++) {
+                    consumerTracker.acknowledge(consumer, "PM_STATISTICAL"::equals, id);
+                }
+            }));
+        }
+        for (final Future<?> poller : pollers) {
+            poller.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(4, consumerTracker.getConsumerCount());
+        for (int poller = 0; poller < 4; poller++) {
+            assertEquals(1000, consumerTracker.getCursor("parser-" + poller, "PM_STATISTICAL"));
+            assertNotNull(meterRegistry.find(LAG_IDS).tag("consumer", "parser-" + poller).gauge());
+        }
+    }
+}
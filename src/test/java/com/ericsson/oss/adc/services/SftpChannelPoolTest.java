@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.ericsson.oss.adc.exceptions.NoSftpConnectionException;
+import com.jcraft.jsch.ChannelSftp;
+
+public class SftpChannelPoolTest {
+
+    @Test
+    public void test_borrow_HandsOutEachChannelOnceUntilReleased() throws Exception {
+        final List<ChannelSftp> channels = List.of(new TestChannel(), new TestChannel());
+        final SftpChannelPool pool = new SftpChannelPool(channels, 10);
+        final ChannelSftp first = pool.borrow();
+        final ChannelSftp second = pool.borrow();
+        assertNotSame(first, second);
+        assertThrows(NoSftpConnectionException.class, pool::borrow);
+
+        pool.release(second);
+        assertSame(second, pool.borrow());
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void test_release_DropsDisconnectedChannel() throws Exception {
+        final TestChannel channel = new TestChannel();
+        final SftpChannelPool pool = new SftpChannelPool(List.of(channel), 10);
+        assertTrue(pool.isConnected());
+        pool.borrow();
+        channel.connected = false;
+        pool.release(channel);
+
+        assertEquals(0, pool.size());
+        assertFalse(pool.isConnected());
+        assertThrows(NoSftpConnectionException.class, pool::borrow);
+    }
+
+    @Test
+    public void test_borrow_ConcurrentBorrowersNeverShareChannel() throws Exception {
+        final List<ChannelSftp> channels = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            channels.add(new TestChannel());
+        }
+        final SftpChannelPool pool = new SftpChannelPool(channels, 5000);
+        final Set<ChannelSftp> inUse = ConcurrentHashMap.newKeySet();
+        final AtomicInteger shared = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(16);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int task = 0; task < 16; task++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    final ChannelSftp channel = pool.borrow();
+                    if (!inUse.add(channel)) {
+                        shared.incrementAndGet();
+                    }
+                    inUse.remove(channel);
+                    pool.release(channel);
+                }
+                return null;
+            }));
+        }
+        for (final Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(0, shared.get());
+        assertEquals(4, pool.getIdleCount());
+    }
+
+    private static final class TestChannel extends ChannelSftp {
+
+        private volatile boolean connected = true;
+
+        @Override
+        public boolean isConnected() {
+            return connected;
+        }
+
+        @Override
+        public void disconnect() {
+            connected = false;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.ericsson.oss.adc.enums.LinkStrategy;
+import com.ericsson.oss.adc.handler.SymlinkResult;
+import com.jcraft.jsch.JSchException;
+
+public class SftpExecServiceTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void test_buildLinkScript_ReportsEachLink() throws Exception {
+        final Path source = Files.createFile(directory.resolve("A.xml"));
+        final String nodeDirectory = directory + "/XML/SubNetwork=Europe,MeContext=it's";
+        Files.createDirectories(directory.resolve("blocked"));
+        Files.createFile(directory.resolve("blocked/file"));
+        final List<LinkSpec> links = List.of(
+                link(source.toString(), nodeDirectory + "/A1.xml"),
+                link(source.toString(), nodeDirectory + "/A1.xml"),
+                link(source.toString(), directory + "/blocked/file/A2.xml"),
+                link(source.toString(), directory + "/XML/A 3.xml"));
+
+        final List<String> output = run(SftpExecService.buildLinkScript(LinkStrategy.SYMLINK, links, "0750"));
+        final List<SymlinkResult> results = SftpExecService.parseLinkResults(output, links.size());
+
+        assertEquals(List.of(SymlinkResult.SUCCESS, SymlinkResult.EXIST, SymlinkResult.FAILED, SymlinkResult.SUCCESS), results);
+        assertEquals(source, Files.readSymbolicLink(Path.of(nodeDirectory + "/A1.xml")));
+        assertTrue(Files.isSymbolicLink(directory.resolve("XML/A 3.xml")));
+        assertEquals("rwxr-x---", PosixFilePermissions.toString(Files.getPosixFilePermissions(Path.of(nodeDirectory))));
+    }
+
+    @Test
+    public void test_buildLinkScript_HardlinksAndCopiesRegularFiles() throws Exception {
+        final Path source = Files.write(directory.resolve("A.xml"), "<measData/>".getBytes(StandardCharsets.UTF_8));
+        final Path bin = Files.createSymbolicLink(directory.resolve("bin.xml"), source);
+        final List<LinkSpec> links = List.of(
+                link(bin.toString(), directory + "/XML/A1.xml"),
+                link(bin.toString(), directory + "/XML/A1.xml"),
+                link(directory + "/missing.xml", directory + "/XML/A2.xml"));
+
+        assertEquals(List.of(SymlinkResult.SUCCESS, SymlinkResult.EXIST, SymlinkResult.FAILED), SftpExecService.parseLinkResults(
+                run(SftpExecService.buildLinkScript(LinkStrategy.HARDLINK, links, "0750")), links.size()));
+        assertFalse(Files.isSymbolicLink(directory.resolve("XML/A1.xml")));
+        assertTrue(Files.isSameFile(source, directory.resolve("XML/A1.xml")));
+
+        Files.delete(directory.resolve("XML/A1.xml"));
+        assertEquals(List.of(SymlinkResult.SUCCESS, SymlinkResult.EXIST, SymlinkResult.FAILED), SftpExecService.parseLinkResults(
+                run(SftpExecService.buildLinkScript(LinkStrategy.COPY, links, "0750")), links.size()));
+        assertFalse(Files.isSymbolicLink(directory.resolve("XML/A1.xml")));
+        assertFalse(Files.isSameFile(source, directory.resolve("XML/A1.xml")));
+        assertEquals("<measData/>", Files.readString(directory.resolve("XML/A1.xml")));
+        assertFalse(Files.exists(directory.resolve("XML/A2.xml")));
+    }
+
+    @Test
+    public void test_buildRemoveScript_RemovesFilesIgnoringMissing() throws Exception {
+        final List<String> paths = new ArrayList<>();
+        for (int i = 0; i < 450; i++) {
+            paths.add(Files.createFile(directory.resolve("A" + i + ".xml")).toString());
+        }
+        paths.add(directory + "/missing.xml");
+
+        final List<String> output = run(SftpExecService.buildRemoveScript(paths));
+
+        assertEquals(List.of("FLS-EXEC-DONE"), output);
+        try (Stream<Path> files = Files.list(directory)) {
+            assertFalse(files.findAny().isPresent());
+        }
+    }
+
+    @Test
+    public void test_buildRemoveScript_ReportsFilesNotRemoved() throws Exception {
+        final List<String> paths = List.of(Files.createFile(directory.resolve("A0.xml")).toString(),
+                Files.createDirectory(directory.resolve("B")).toString(), directory + "/missing.xml");
+
+        final List<String> output = run(SftpExecService.buildRemoveScript(paths));
+
+        assertEquals(List.of("1", "FLS-EXEC-DONE"), output);
+        assertEquals(List.of(paths.get(1)), SftpExecService.parseRemoveResults(output, paths));
+        assertFalse(Files.exists(directory.resolve("A0.xml")));
+    }
+
+    @Test
+    public void test_parseLinkResults_MissingLinesFailed() {
+        assertEquals(List.of(SymlinkResult.EXIST, SymlinkResult.FAILED, SymlinkResult.SUCCESS),
+                SftpExecService.parseLinkResults(List.of("2 0", "0 1", "garbage", "7 0"), 3));
+    }
+
+    @Test
+    public void test_isExecRefused_OnlyWhenTheServerFailsTheRequest() {
+        assertTrue(SftpExecService.isExecRefused(new JSchException("failed to send channel request")));
+        // MaxSessions reached, a connect timeout or a lost session may pass
+        assertFalse(SftpExecService.isExecRefused(new JSchException("channel is not opened.")));
+        assertFalse(SftpExecService.isExecRefused(new JSchException("channel request: timeout")));
+        assertFalse(SftpExecService.isExecRefused(new JSchException("session is down")));
+    }
+
+    @Test
+    public void test_readOutput_LinesAfterReady() throws Exception {
+        final List<String> lines = new ArrayList<>();
+        assertTrue(SftpExecService.readOutput(stream("FLS-EXEC-READY\n0 0\nFLS-EXEC-DONE\n"), lines));
+        assertEquals(List.of("0 0", "FLS-EXEC-DONE"), lines);
+        assertFalse(SftpExecService.readOutput(stream(""), new ArrayList<>()));
+        assertThrows(IOException.class, () -> SftpExecService.readOutput(stream("This service allows sftp connections only.\n"),
+                new ArrayList<>()));
+    }
+
+    @Test
+    public void test_readOutput_LinesKeptWhenOutputBreaksOff() {
+        final List<String> lines = new ArrayList<>();
+        final InputStream broken = new SequenceInputStream(stream("FLS-EXEC-READY\n0 0\n1 1\n"), new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Pipe closed");
+            }
+        });
+        assertThrows(IOException.class, () -> SftpExecService.readOutput(broken, lines));
+        assertEquals(List.of("0 0", "1 1"), lines);
+        // the links not reported failed, those reported keep their result
+        assertEquals(List.of(SymlinkResult.SUCCESS, SymlinkResult.EXIST, SymlinkResult.FAILED),
+                SftpExecService.parseLinkResults(lines, 3));
+    }
+
+    private static InputStream stream(final String output) {
+        return new ByteArrayInputStream(output.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> run(final String script) throws IOException, InterruptedException {
+        final Process process = new ProcessBuilder("sh", "-s").start();
+        try (OutputStream stdin = process.getOutputStream()) {
+            stdin.write(script.getBytes(StandardCharsets.UTF_8));
+        }
+        final List<String> output;
+        try (BufferedReader stdout = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            output = stdout.lines().collect(Collectors.toList());
+        }
+        process.waitFor();
+        assertEquals(SftpExecService.READY, output.get(0));
+        return output.subList(1, output.size());
+    }
+
+    private static LinkSpec link(final String sourceFile, final String linkedFile) {
+        return new LinkSpec() {
+            @Override
+            public String getSourceFile() {
+                return sourceFile;
+            }
+
+            @Override
+            public String getLinkedFile() {
+                return linkedFile;
+            }
+        };
+    }
+}
@@ -0,0 +1,302 @@
+/*******************************************************************************
+ * COPYRIGHT Ericsson 2022
+ *
+ *
+ *
+ * The copyright to the computer program(s) herein is the property of
+ *
+ * Ericsson Inc. The programs may be used and/or copied only with written
+ *
+ * permission from Ericsson Inc. or in accordance with the terms and
+ *
+ * conditions stipulated in the agreement/contract under which the
+ *
+ * program(s) have been supplied.
+ ******************************************************************************/
+
+package com.ericsson.oss.adc.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.ericsson.oss.adc.enums.LinkStrategy;
+import com.jcraft.jsch.ChannelSftp;
+
+public class SftpPipelineTest {
+
+    private final TestSftpServer server = new TestSftpServer();
+
+    private SftpPipeline pipeline;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        final PipedInputStream clientIn = new PipedInputStream(64 * 1024);
+        final PipedInputStream serverIn = new PipedInputStream(64 * 1024);
+        final PipedOutputStream clientOut = new PipedOutputStream(serverIn); // connected before the server reads
+        server.start(serverIn, new PipedOutputStream(clientIn));
+        pipeline = new SftpPipeline(clientIn, clientOut, 8);
+        pipeline.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.interrupt();
+    }
+
+    @Test
+    public void test_symlink_MatchesResponsesAnsweredOutOfOrder() throws IOException {
+        final List<LinkSpec> links = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            links.add(link("/bin/A.xml", "/XML/node" + (i % 5) + "/A" + i + ".xml"));
+        }
+        links.add(link("/bin/A.xml", "/missing/A.xml"));
+
+        final int[] mkdirStatus = pipeline.mkdir(List.of("/XML/node0", "/XML/node1", "/XML/node2", "/XML/node3", "/XML/node4", "/XML"));
+        assertArrayEquals(new int[] { 0, 0, 0, 0, 0, ChannelSftp.SSH_FX_FAILURE }, mkdirStatus);
+        assertArrayEquals(new int[] { 0, 0 }, pipeline.chmod(List.of("/XML/node0", "/XML/node1"), 0750));
+        assertEquals(0750, server.permissions.get("/XML/node1"));
+
+        final int[] symlinkStatus = pipeline.symlink(links);
+        for (int i = 0; i < 25; i++) {
+            assertEquals(0, symlinkStatus[i]);
+            assertEquals("/bin/A.xml", server.links.get("/XML/node" + (i % 5) + "/A" + i + ".xml"));
+        }
+        assertEquals(ChannelSftp.SSH_FX_NO_SUCH_FILE, symlinkStatus[25]);
+        assertTrue(server.reordered > 0);
+    }
+
+    @Test
+    public void test_lstat_SymlinksNotFollowed() throws IOException {
+        pipeline.symlink(List.of(link("/bin/A.xml", "/XML/A1.xml"), link("/bin/A.xml", "/XML/A2.xml")));
+        assertEquals(ChannelSftp.SSH_FX_FAILURE, pipeline.symlink(List.of(link("/bin/A.xml", "/XML/A1.xml")))[0]);
+        final int[] permissions = pipeline.lstat(List.of("/XML/A1.xml", "/XML", "/XML/A3.xml", "/bin/A.xml"));
+        assertTrue(LinkStrategy.SYMLINK.isCreatedFile(permissions[0]));
+        assertFalse(LinkStrategy.SYMLINK.isCreatedFile(permissions[1]));
+        assertEquals(-1, permissions[2]);
+        assertTrue(LinkStrategy.HARDLINK.isCreatedFile(permissions[3]));
+    }
+
+    @Test
+    public void test_hardlink_SharesTheFile() throws IOException {
+        assertTrue(pipeline.supports(SftpPipeline.HARDLINK_EXTENSION));
+        final int[] status = pipeline.hardlink(List.of(link("/bin/A.xml", "/XML/A1.xml"), link("/bin/A.xml", "/XML/A1.xml"),
+                link("/bin/missing.xml", "/XML/A2.xml")));
+
+        assertArrayEquals(new int[] { 0, ChannelSftp.SSH_FX_FAILURE, ChannelSftp.SSH_FX_NO_SUCH_FILE }, status);
+        assertSame(server.contents.get("/bin/A.xml"), server.contents.get("/XML/A1.xml"));
+    }
+
+    @Test
+    public void test_copy_CopiesOnTheServer() throws IOException {
+        final List<LinkSpec> links = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            links.add(link(i % 2 == 0 ? "/bin/A.xml" : "/bin/B.xml", "/XML/A" + i + ".xml"));
+        }
+        links.add(link("/bin/A.xml", "/XML/A0.xml"));
+        links.add(link("/bin/missing.xml", "/XML/A20.xml"));
+
+        final int[] status = pipeline.copy(links, 0640);
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals(0, status[i]);
+            assertArrayEquals(server.contents.get(i % 2 == 0 ? "/bin/A.xml" : "/bin/B.xml"), server.contents.get("/XML/A" + i + ".xml"));
+            assertNotSame(server.contents.get("/bin/A.xml"), server.contents.get("/XML/A" + i + ".xml"));
+            assertEquals(0100640, server.permissions.get("/XML/A" + i + ".xml"));
+        }
+        assertEquals(ChannelSftp.SSH_FX_FAILURE, status[20]);
+        assertEquals(ChannelSftp.SSH_FX_NO_SUCH_FILE, status[21]);
+        assertTrue(server.handles.isEmpty());
+    }
+
+    private static LinkSpec link(final String sourceFile, final String linkedFile) {
+        return new LinkSpec() {
+            @Override
+            public String getSourceFile() {
+                return sourceFile;
+            }
+
+            @Override
+            public String getLinkedFile() {
+                return linkedFile;
+            }
+        };
+    }
+
+    /**
+     * An in-memory SFTP server answering pairs of requests in reverse order, the content of a hardlink is the
+     * same array as the content of its source.
+     */
+    private static class TestSftpServer extends Thread {
+        private final Map<String, Integer> permissions = new ConcurrentHashMap<>(
+                Map.of("/", 040755, "/bin", 040755, "/XML", 040755, "/bin/A.xml", 0100640, "/bin/B.xml", 0100640));
+        private final Map<String, String> links = new ConcurrentHashMap<>();
+        private final Map<String, byte[]> contents = new ConcurrentHashMap<>(Map.of(
+                "/bin/A.xml", "<measData>A</measData>".getBytes(StandardCharsets.UTF_8),
+                "/bin/B.xml", "<measData>B</measData>".getBytes(StandardCharsets.UTF_8)));
+        private final Map<String, String> handles = new ConcurrentHashMap<>();
+        private int nextHandle;
+        private volatile int reordered;
+        private DataInputStream in;
+        private DataOutputStream out;
+
+        TestSftpServer() {
+            setDaemon(true);
+        }
+
+        void start(final PipedInputStream in, final PipedOutputStream out) {
+            this.in = new DataInputStream(in);
+            this.out = new DataOutputStream(out);
+            start();
+        }
+
+        @Override
+        public void run() {
+            try {
+                byte[] pending = null;
+                while (!isInterrupted()) {
+                    final byte[] request = new byte[in.readInt()];
+                    in.readFully(request);
+                    final byte[] response = answer(ByteBuffer.wrap(request));
+                    if (pending != null) {
+                        write(response);
+                        write(pending);
+                        pending = null;
+                        reordered++;
+                    } else if (in.available() > 0) {
+                        pending = response;
+                    } else {
+                        write(response);
+                    }
+                }
+            } catch (final IOException exception) {
+                // client gone
+            }
+        }
+
+        private void write(final byte[] packet) throws IOException {
+            out.writeInt(packet.length);
+            out.write(packet);
+            out.flush();
+        }
+
+        private byte[] answer(final ByteBuffer request) {
+            final int type = request.get() & 0xff;
+            if (type == 1) {
+                final ByteBuffer version = ByteBuffer.allocate(64).put((byte) 2).putInt(3);
+                putString(version, SftpPipeline.HARDLINK_EXTENSION);
+                putString(version, "1");
+                putString(version, SftpPipeline.COPY_DATA_EXTENSION);
+                putString(version, "1");
+                return Arrays.copyOf(version.array(), version.position());
+            }
+            final int id = request.getInt();
+            final String path = readString(request);
+            switch (type) {
+                case 3:
+                    final int flags = request.getInt();
+                    if ((flags & 0x08) == 0) {
+                        if (!contents.containsKey(path)) {
+                            return status(id, ChannelSftp.SSH_FX_NO_SUCH_FILE);
+                        }
+                    } else if (permissions.containsKey(path) || links.containsKey(path)) {
+                        return status(id, ChannelSftp.SSH_FX_FAILURE);
+                    } else {
+                        request.getInt();
+                        permissions.put(path, 0100000 | request.getInt());
+                        contents.put(path, new byte[0]);
+                    }
+                    final String handle = "h" + nextHandle++;
+                    handles.put(handle, path);
+                    final ByteBuffer handleResponse = ByteBuffer.allocate(64).put((byte) 102).putInt(id);
+                    putString(handleResponse, handle);
+                    return Arrays.copyOf(handleResponse.array(), handleResponse.position());
+                case 4:
+                    return status(id, handles.remove(path) == null ? ChannelSftp.SSH_FX_FAILURE : 0);
+                case 200:
+                    if (SftpPipeline.HARDLINK_EXTENSION.equals(path)) {
+                        final String source = readString(request);
+                        final String target = readString(request);
+                        if (!contents.containsKey(source)) {
+                            return status(id, ChannelSftp.SSH_FX_NO_SUCH_FILE);
+                        }
+                        if (contents.putIfAbsent(target, contents.get(source)) != null) {
+                            return status(id, ChannelSftp.SSH_FX_FAILURE);
+                        }
+                        permissions.put(target, permissions.get(source));
+                        return status(id, 0);
+                    }
+                    final String from = handles.get(readString(request));
+                    request.getLong();
+                    request.getLong();
+                    final String to = handles.get(readString(request));
+                    contents.put(to, contents.get(from).clone());
+                    return status(id, 0);
+                case 7:
+                    final Integer mode = links.containsKey(path) ? Integer.valueOf(0120777) : permissions.get(path);
+                    if (mode == null) {
+                        return status(id, ChannelSftp.SSH_FX_NO_SUCH_FILE);
+                    }
+                    return ByteBuffer.allocate(13).put((byte) 105).putInt(id).putInt(0x04).putInt(mode).array();
+                case 9:
+                    request.getInt();
+                    permissions.put(path, request.getInt());
+                    return status(id, 0);
+                case 14:
+                    if (!permissions.containsKey(parent(path)) || permissions.containsKey(path)) {
+                        return status(id, ChannelSftp.SSH_FX_FAILURE);
+                    }
+                    permissions.put(path, 040755);
+                    return status(id, 0);
+                case 20:
+                    final String link = readString(request);
+                    if (!permissions.containsKey(parent(link))) {
+                        return status(id, ChannelSftp.SSH_FX_NO_SUCH_FILE);
+                    }
+                    return links.putIfAbsent(link, path) == null ? status(id, 0) : status(id, ChannelSftp.SSH_FX_FAILURE);
+                default:
+                    return status(id, ChannelSftp.SSH_FX_OP_UNSUPPORTED);
+            }
+        }
+
+        private static String parent(final String path) {
+            final int separator = path.lastIndexOf('/');
+            return separator <= 0 ? "/" : path.substring(0, separator);
+        }
+
+        private static byte[] status(final int id, final int code) {
+            return ByteBuffer.allocate(17).put((byte) 101).putInt(id).putInt(code).putInt(0).putInt(0).array();
+        }
+
+        private static void putString(final ByteBuffer buffer, final String value) {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            buffer.putInt(bytes.length).put(bytes);
+        }
+
+        private static String readString(final ByteBuffer buffer) {
+            final byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
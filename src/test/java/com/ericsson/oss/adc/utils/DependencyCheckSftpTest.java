@@ -15,10 +15,12 @@
  ******************************************************************************/
 package com.ericsson.oss.adc.utils;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.when;
 
 import org.junit.jupiter.api.Test;
@@ -26,9 +28,13 @@ import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import com.ericsson.oss.adc.config.SftpServer;
+import com.ericsson.oss.adc.controller.health.HealthCheck;
 import com.ericsson.oss.adc.services.SftpService;
+import com.ericsson.oss.adc.utils.DependencyCheckSftp.CircuitState;
 import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.Session;
@@ -93,6 +99,54 @@ class DependencyCheckSftpTest {
         }
     }
 
+    @Test
+    void test_deploySftp_CircuitOpensAfterRepeatedFailuresAndClosesOnConnection() throws JSchException {
+        try (MockedStatic<SftpServer> sftpServer = Mockito.mockStatic(SftpServer.class)) {
+            final SftpService sftpService = mock(SftpService.class);
+            final HealthCheck healthCheck = new HealthCheck();
+            final TestDependencyCheckSftp dependencyCheckSftp = new TestDependencyCheckSftp(sftpService, sftpHost, sftpPort, sftpUser, sftpPassword,
+                    true);
+            ReflectionTestUtils.setField(dependencyCheckSftp, "healthCheck", healthCheck);
+            ReflectionTestUtils.setField(dependencyCheckSftp, "circuitFailureThreshold", 2);
+
+            assertFalse(dependencyCheckSftp.deploySftp(connectionTimeoutInMs, connectionRetryCountMax));
+            assertEquals(CircuitState.CLOSED, dependencyCheckSftp.getCircuitState());
+            assertFalse(dependencyCheckSftp.deploySftp(connectionTimeoutInMs, connectionRetryCountMax));
+            assertEquals(CircuitState.OPEN, dependencyCheckSftp.getCircuitState());
+            assertEquals(Status.DOWN, healthCheck.health().getStatus());
+
+            // not attempted while open
+            assertFalse(dependencyCheckSftp.deploySftp(connectionTimeoutInMs, connectionRetryCountMax));
+            sftpServer.verify(() -> SftpServer.connect(sftpUser, sftpHost, sftpPort, sftpPassword, connectionTimeoutInMs), times(2));
+
+            ReflectionTestUtils.setField(dependencyCheckSftp, "circuitOpenUntilMs", 0L);
+            assertEquals(CircuitState.HALF_OPEN, dependencyCheckSftp.getCircuitState());
+            when(SftpServer.connect(sftpUser, sftpHost, sftpPort, sftpPassword, connectionTimeoutInMs)).thenReturn(getSession());
+            when(SftpServer.getSftpConnection(sftpUser, sftpHost, sftpPort, sftpPassword)).thenReturn(new com.jcraft.jsch.ChannelSftp());
+            Mockito.doReturn(true).when(sftpService).sftpConnectionPresent();
+            assertTrue(dependencyCheckSftp.deploySftp(connectionTimeoutInMs, connectionRetryCountMax));
+            assertEquals(CircuitState.CLOSED, dependencyCheckSftp.getCircuitState());
+            assertEquals(Status.UP, healthCheck.health().getStatus());
+        }
+    }
+
+    @Test
+    void test_backoffDelayMs_DoublesUpToMaximumWithJitter() {
+        for (int attempt = 0; attempt < 10; attempt++) {
+            final long expectedMs = Math.min(8000, 250L << attempt);
+            final long delayMs = DependencyCheckSftp.backoffDelayMs(attempt, 250, 8000);
+            assertTrue(delayMs >= expectedMs / 2 && delayMs <= expectedMs, "attempt " + attempt + ": " + delayMs);
+        }
+    }
+
+    @Test
+    void test_getPooledChannelsPerSession_LeavesRoomForChannelsBesideThePool() {
+        // 4 pooled, 4 worker channels, the cleaner and a spare fill the 10 of OpenSSH
+        assertEquals(4, DependencyCheckSftp.getPooledChannelsPerSession(4, 4, 10));
+        assertEquals(2, DependencyCheckSftp.getPooledChannelsPerSession(8, 6, 10));
+        assertEquals(1, DependencyCheckSftp.getPooledChannelsPerSession(4, 12, 10));
+    }
+
     @Test
     void test_SftpServerConnectThrowsExceptionWithBadConnection(){
         try {